@@ -0,0 +1,363 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Attendance Archive
+ * A sealed segment compressed for keeping: its records, sorted by Time In, are cut
+ * into blocks of about 64 KB that are each compressed on their own with
+ * {@link Deflater}, so a reader inflates only the blocks whose Time In range it needs
+ * instead of the whole file. Records stay in the segment's format; the text format's
+ * separator lines shrink to a few bytes each.
+ *
+ * Header (8 bytes): magic "ATRZ", u8 format version, u8 record format (0 = text,
+ *   1 = binary), u16 reserved.
+ * Blocks: zlib streams, back to back. A block holds whole entries only: text records
+ *   each followed by their separator line, or length-prefixed binary records.
+ * Block index, 32 bytes a block: i64 file offset, i32 compressed length,
+ *   i32 uncompressed length, i32 records, i32 reserved, u32 first Time In, u32 last Time In.
+ * Signatures: i32 e-signature of every record, sorted, so e-signatures can be
+ *   checked without inflating anything.
+ * Trailer (24 bytes): i64 block index offset, i32 blocks, i32 records,
+ *   i32 reserved, magic "ATRZ".
+ */
+public class AttendanceArchive implements Closeable {
+
+    public static final String SUFFIX = ".arc";
+    public static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final byte[] MAGIC = {'A', 'T', 'R', 'Z'};
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int BLOCK_ENTRY_SIZE = 32;
+    private static final int TRAILER_SIZE = 24;
+
+    private static final String LINE_END = new String(TextRecordFormat.lineEnd(), StandardCharsets.UTF_8);
+
+    private final FileChannel channel;
+    private final boolean binary;
+    private final long[] blockOffsets;
+    private final int[] compressedLengths;
+    private final int[] blockLengths;
+    private final int[] blockRecords;
+    private final long[] firstTimes;
+    private final long[] lastTimes;
+    private final int[] signatures;
+
+    private AttendanceArchive(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        if (size < HEADER_SIZE + TRAILER_SIZE) {
+            throw new IOException("Truncated attendance archive");
+        }
+        ByteBuffer header = read(HEADER_SIZE, 0);
+        if (!hasMagic(header, 0) || header.get(4) != VERSION) {
+            throw new IOException("Not an attendance archive");
+        }
+        this.binary = header.get(5) == 1;
+
+        ByteBuffer trailer = read(TRAILER_SIZE, size - TRAILER_SIZE);
+        long indexOffset = trailer.getLong(0);
+        int blocks = trailer.getInt(8);
+        int records = trailer.getInt(12);
+        if (!hasMagic(trailer, 20) || blocks < 0 || records < 0 || indexOffset < HEADER_SIZE
+                || indexOffset + (long) blocks * BLOCK_ENTRY_SIZE + records * 4L + TRAILER_SIZE != size) {
+            throw new IOException("Damaged attendance archive trailer");
+        }
+
+        ByteBuffer index = read(blocks * BLOCK_ENTRY_SIZE + records * 4, indexOffset);
+        blockOffsets = new long[blocks];
+        compressedLengths = new int[blocks];
+        blockLengths = new int[blocks];
+        blockRecords = new int[blocks];
+        firstTimes = new long[blocks];
+        lastTimes = new long[blocks];
+        for (int i = 0; i < blocks; i++) {
+            blockOffsets[i] = index.getLong();
+            compressedLengths[i] = index.getInt();
+            blockLengths[i] = index.getInt();
+            blockRecords[i] = index.getInt();
+            index.getInt();
+            firstTimes[i] = Integer.toUnsignedLong(index.getInt());
+            lastTimes[i] = Integer.toUnsignedLong(index.getInt());
+        }
+        signatures = new int[records];
+        index.asIntBuffer().get(signatures);
+    }
+
+    /**
+     * Open an archive, reading only its block index and e-signatures
+     * @param file The archive file
+     * @return The open archive
+     * @throws IOException If the file cannot be read or is not an archive
+     */
+    public static AttendanceArchive open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new AttendanceArchive(channel);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Write records into a new archive file
+     * @param file The file to create or replace
+     * @param records The records, sorted by Time In
+     * @param binary Whether to keep them in the binary record format rather than text
+     * @param durability Whether to force the file before returning
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(Path file, List<AttendanceRecord> records, boolean binary, DurabilityMode durability)
+            throws IOException {
+        List<long[]> index = new ArrayList<>();
+        int[] signatures = new int[records.size()];
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.put(MAGIC).put((byte) VERSION).put((byte) (binary ? 1 : 0)).putShort((short) 0);
+            header.flip();
+            long position = writeFully(out, header, 0);
+
+            byte[] block = new byte[BLOCK_SIZE];
+            byte[] compressed = new byte[BLOCK_SIZE + BLOCK_SIZE / 8];
+            int length = 0;
+            int first = 0;
+            for (int i = 0; i <= records.size(); i++) {
+                byte[] entry = null;
+                if (i < records.size()) {
+                    AttendanceRecord record = records.get(i);
+                    signatures[i] = record.getSignature();
+                    entry = binary ? BinaryRecordFormat.encode(record) : TextRecordFormat.encode(record);
+                }
+
+                // Close the block before an entry that would overflow it, and after the last one
+                if (length > 0 && (entry == null || length + entry.length > block.length)) {
+                    deflater.reset();
+                    deflater.setInput(block, 0, length);
+                    deflater.finish();
+                    int compressedLength = 0;
+                    while (!deflater.finished()) {
+                        if (compressedLength == compressed.length) {
+                            compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                        }
+                        compressedLength += deflater.deflate(compressed, compressedLength,
+                            compressed.length - compressedLength);
+                    }
+                    index.add(new long[] {position, compressedLength, length, i - first,
+                        records.get(first).getEpochSecond(), records.get(i - 1).getEpochSecond()});
+                    position = writeFully(out, ByteBuffer.wrap(compressed, 0, compressedLength), position);
+                    length = 0;
+                    first = i;
+                }
+                if (entry != null) {
+                    if (entry.length > block.length) {
+                        // Only a single oversized record goes in a block this big
+                        block = Arrays.copyOf(block, entry.length);
+                    }
+                    System.arraycopy(entry, 0, block, length, entry.length);
+                    length += entry.length;
+                }
+            }
+
+            Arrays.sort(signatures);
+            ByteBuffer tail = ByteBuffer.allocate(index.size() * BLOCK_ENTRY_SIZE + signatures.length * 4 + TRAILER_SIZE);
+            for (long[] entry : index) {
+                tail.putLong(entry[0]).putInt((int) entry[1]).putInt((int) entry[2]).putInt((int) entry[3])
+                    .putInt(0).putInt((int) entry[4]).putInt((int) entry[5]);
+            }
+            for (int signature : signatures) {
+                tail.putInt(signature);
+            }
+            tail.putLong(position).putInt(index.size()).putInt(signatures.length).putInt(0).put(MAGIC);
+            tail.flip();
+            writeFully(out, tail, position);
+            if (durability != DurabilityMode.NONE) {
+                out.force(true);
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    public int getRecords() {
+        return signatures.length;
+    }
+
+    /**
+     * @return Time In of the first record, or 0 if there are none
+     */
+    public long getFirstTimeIn() {
+        return firstTimes.length == 0 ? 0 : firstTimes[0];
+    }
+
+    /**
+     * @return Time In of the last record, or 0 if there are none
+     */
+    public long getLastTimeIn() {
+        return lastTimes.length == 0 ? 0 : lastTimes[lastTimes.length - 1];
+    }
+
+    /**
+     * @return The e-signatures of all records, sorted
+     */
+    public int[] getSignatures() {
+        return signatures.clone();
+    }
+
+    /**
+     * @param signature Packed e-signature
+     * @return true if a record of the archive has it
+     */
+    public boolean contains(int signature) {
+        return Arrays.binarySearch(signatures, signature) >= 0;
+    }
+
+    /**
+     * Find the records with a Time In in a range, inflating only the blocks that overlap it
+     * @param from First Time In to include, as epoch seconds
+     * @param to Last Time In to include, as epoch seconds
+     * @return The records, oldest first
+     * @throws IOException If a block cannot be read
+     */
+    public List<AttendanceRecord> query(long from, long to) throws IOException {
+        // First block whose last record is not before the range
+        int low = 0;
+        int high = lastTimes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lastTimes[mid] < from) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        List<AttendanceRecord> results = new ArrayList<>();
+        for (int block = low; block < firstTimes.length && firstTimes[block] <= to; block++) {
+            for (AttendanceRecord record : readBlock(block)) {
+                if (record.getEpochSecond() >= from && record.getEpochSecond() <= to) {
+                    results.add(record);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return Every record of the archive, oldest first
+     * @throws IOException If a block cannot be read
+     */
+    public List<AttendanceRecord> readAll() throws IOException {
+        List<AttendanceRecord> results = new ArrayList<>(signatures.length);
+        for (int block = 0; block < blockOffsets.length; block++) {
+            results.addAll(readBlock(block));
+        }
+        return results;
+    }
+
+    /**
+     * Inflate and decode one block
+     * @param block Block number
+     * @return Its records, oldest first
+     * @throws IOException If the block cannot be read or is damaged
+     */
+    public List<AttendanceRecord> readBlock(int block) throws IOException {
+        ByteBuffer compressed = read(compressedLengths[block], blockOffsets[block]);
+        byte[] bytes = new byte[blockLengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array(), 0, compressed.limit());
+            int length = 0;
+            while (length < bytes.length && !inflater.finished()) {
+                int inflated = inflater.inflate(bytes, length, bytes.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != bytes.length) {
+                throw new IOException("Damaged attendance archive block " + block);
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Damaged attendance archive block " + block, ex);
+        } finally {
+            inflater.end();
+        }
+
+        List<AttendanceRecord> records = new ArrayList<>(blockRecords[block]);
+        try {
+            if (binary) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    records.add(BinaryRecordFormat.decode(buffer));
+                }
+            } else {
+                String text = new String(bytes, StandardCharsets.UTF_8);
+                int start = 0;
+                while (start < text.length()) {
+                    int end = text.indexOf(LINE_END, start);
+                    if (end < 0) {
+                        throw new IOException("Damaged attendance archive block " + block);
+                    }
+                    records.add(AttendanceRecord.parse(text.substring(start, end)));
+                    start = end + LINE_END.length();
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Damaged attendance archive block " + block, ex);
+        }
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer read(int length, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated attendance archive");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += out.write(buffer, position);
+        }
+        return position;
+    }
+
+    private static boolean hasMagic(ByteBuffer buffer, int at) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(at + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
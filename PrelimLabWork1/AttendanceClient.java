@@ -0,0 +1,157 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Attendance Client
+ * Sends check-ins and deletes, and asks for the day's counts, to an {@link AttendanceServer} over one kept-alive
+ * connection, so a tracker window can act as a thin client of a shared log. A request
+ * blocks until the server reports the write durable; call it off the EDT.
+ */
+public class AttendanceClient implements Closeable {
+
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final int READ_TIMEOUT_MS = 10_000;
+
+    private final String host;
+    private final int port;
+
+    // Opened on the first request and again after a failed one
+    private Socket socket;
+    private BufferedReader in;
+    private BufferedWriter out;
+
+    /**
+     * @param address The server as "host:port", or just a port on this machine
+     */
+    public AttendanceClient(String address) {
+        int colon = address.lastIndexOf(':');
+        try {
+            host = colon < 0 ? "localhost" : address.substring(0, colon).trim();
+            port = Integer.parseInt(address.substring(colon + 1).trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid attendance server address: " + address);
+        }
+    }
+
+    /**
+     * Save a check-in with the Time In and e-signature the form generated
+     * @param record The attendance record
+     * @throws IOException If the server cannot be reached or did not save the record; an
+     *         {@link UnconfirmedWriteException} if it wrote the record but the disk did not confirm it
+     */
+    public synchronized void checkIn(AttendanceRecord record) throws IOException {
+        if (record.getName().indexOf('\t') >= 0) {
+            throw new IOException("Student name cannot contain tabs");
+        }
+        request(AttendanceServer.CHECK_IN + "\t" + record.getName() + "\t" + record.getCourseYear() + "\t"
+            + record.getTimeIn() + "\t" + AttendanceRecord.formatSignature(record.getSignature()));
+    }
+
+    /**
+     * Delete a record by its e-signature
+     * @param signature Packed e-signature of the record to delete
+     * @throws IOException If the server cannot be reached or did not save the tombstone
+     */
+    public synchronized void delete(int signature) throws IOException {
+        request(AttendanceServer.DELETE + "\t" + AttendanceRecord.formatSignature(signature));
+    }
+
+    /**
+     * Check-ins of a day per course and year, as the server's {@link AttendanceCounters} have them
+     * @param day The day
+     * @return Counts indexed like {@link AttendanceCounters#countsOf}, the day's total last
+     * @throws IOException If the server cannot be reached or its counters are not loaded yet
+     */
+    public synchronized int[] counts(LocalDate day) throws IOException {
+        String[] fields = request(AttendanceServer.COUNTS + "\t" + day).split("\t");
+        if (fields.length != AttendanceCounters.SLOTS + 1) {
+            throw new IOException("Unexpected counts from the attendance server");
+        }
+        int[] counts = new int[fields.length];
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                counts[i] = Integer.parseInt(fields[i]);
+            }
+        } catch (NumberFormatException ex) {
+            throw new IOException("Unexpected counts from the attendance server");
+        }
+        return counts;
+    }
+
+    /**
+     * Have the server rebuild its counters from the log
+     * @throws IOException If the server cannot be reached or the rebuild failed
+     */
+    public synchronized void recount() throws IOException {
+        request(AttendanceServer.RECOUNT);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // Nothing left to send
+            }
+            socket = null;
+        }
+    }
+
+    /**
+     * Send one request line and wait for its reply. A request is never resent, since
+     * the server may have saved it before the connection broke.
+     * @return The reply after "OK"
+     */
+    private String request(String line) throws IOException {
+        String reply;
+        try {
+            if (socket == null) {
+                connect();
+            }
+            out.write(line);
+            out.write('\n');
+            out.flush();
+            reply = in.readLine();
+            if (reply == null) {
+                throw new IOException("Attendance server closed the connection");
+            }
+        } catch (IOException ex) {
+            // Start over on a fresh connection next time
+            close();
+            throw ex;
+        }
+        if (reply.startsWith(AttendanceServer.UNCONFIRMED)) {
+            throw new UnconfirmedWriteException(
+                reply.substring(Math.min(reply.length(), AttendanceServer.UNCONFIRMED.length() + 1)));
+        }
+        if (reply.startsWith(AttendanceServer.ERROR)) {
+            throw new IOException(reply.substring(Math.min(reply.length(), AttendanceServer.ERROR.length() + 1)));
+        }
+        return reply.substring(Math.min(reply.length(), AttendanceServer.OK.length() + 1));
+    }
+
+    private void connect() throws IOException {
+        Socket opened = new Socket();
+        try {
+            opened.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            opened.setSoTimeout(READ_TIMEOUT_MS);
+            opened.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(opened.getInputStream(), StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(opened.getOutputStream(), StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            opened.close();
+            throw new IOException("Cannot reach the attendance server at " + host + ":" + port
+                + " (" + ex.getMessage() + ")", ex);
+        }
+        socket = opened;
+    }
+}
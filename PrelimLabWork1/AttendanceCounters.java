@@ -0,0 +1,562 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Attendance Counters
+ * Check-ins per course, year and day, kept current as the log is written so that
+ * "how many BSIT-2 students checked in today" is one array read. They are a view
+ * of the log: after each write the writer thread counts the entries appended since
+ * the last count, a tombstone taking its record's check-in back off. The day and
+ * course/year of every live record of the live log are kept by e-signature in an
+ * {@link IntIntHashMap}, so that is one lookup; a record sealed earlier is looked up
+ * in its segment. Days are found through a {@link LongIntHashMap} to their row of
+ * counts in one int array. Counting follows the log
+ * rather than the save calls, so check-ins saved through the {@link AttendanceServer}
+ * are counted too.
+ *
+ * The counts are saved next to the log ("attendance_records.txt.counts") with the log
+ * position they reflect and a checksum of the bytes just before it, every
+ * {@link #SNAPSHOT_EVERY} entries, after the log is replaced and on close. At
+ * startup only the entries after that position are counted, after one pass over the
+ * live log (usually just today's records) that notes its live records. {@link #rebuild} counts
+ * everything again in one streaming pass over the live log and the sealed segments;
+ * it runs on its own with: java AttendanceCounters [log file]
+ */
+public class AttendanceCounters {
+
+    public static final String SUFFIX = ".counts";
+
+    /** Entries counted between two snapshots */
+    public static final int SNAPSHOT_EVERY = 1024;
+
+    /** Slots of a day's counts: one per course and year, then the day's total */
+    public static final int SLOTS = Course.values().length * Course.YEARS;
+    public static final int TOTAL = SLOTS;
+
+    private static final String POSITION_HEADER = "log_position,log_check";
+    private static final String COUNTS_HEADER = "day,course_year,count";
+    private static final int CHECK_BYTES = 64;
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    // Not a live record of the live log
+    private static final int MISSING = Integer.MIN_VALUE;
+
+    private final Path log;
+    private final Path snapshot;
+    private final AttendanceSegments segments;
+
+    // Counts per day, as days since the epoch; guarded by this
+    private DayCounts days = new DayCounts();
+
+    // Writer thread only: day * SLOTS + slot of each record of the live log that no
+    // tombstone deleted, and the signatures whose tombstone deleted a sealed record
+    private final IntIntHashMap live = new IntIntHashMap();
+    private final IntHashSet sealedDeletes = new IntHashSet();
+
+    // Writer thread only: how far the log is counted, and which file that was
+    private long position;
+    private Object fileKey;
+    private int sinceSnapshot;
+    private volatile boolean loaded;
+
+    /**
+     * @param log The attendance log
+     * @param segments The log's sealed segments
+     */
+    public AttendanceCounters(Path log, AttendanceSegments segments) {
+        this.log = log;
+        this.snapshot = snapshotPathFor(log);
+        this.segments = segments;
+    }
+
+    /**
+     * @param log The attendance log
+     * @return The counters snapshot kept next to it
+     */
+    public static Path snapshotPathFor(Path log) {
+        return log.resolveSibling(log.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Main method to rebuild the snapshot of a log no tracker or server has open
+     */
+    public static void main(String[] args) {
+        Path file = Paths.get(args.length > 0 ? args[0] : System.getProperty("attendance.file", "attendance_records.txt"));
+        AttendanceCounters counters = new AttendanceCounters(file,
+            new AttendanceSegments(file, Integer.getInteger("attendance.segmentDays", 1)));
+        try {
+            long started = System.nanoTime();
+            counters.rebuild(DurabilityMode.BATCHED);
+            int total = 0;
+            int days;
+            synchronized (counters) {
+                days = counters.days.size();
+                for (int row = 0; row < days; row++) {
+                    total += counters.days.count(row, TOTAL);
+                }
+            }
+            System.out.printf("Counted %d check-ins over %d days in %d ms -> %s%n", total, days,
+                (System.nanoTime() - started) / 1_000_000, counters.snapshot);
+        } catch (IOException ex) {
+            System.err.println("Rebuild failed: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Read the snapshot and count what was appended after it, or rebuild if the
+     * snapshot is missing or belongs to another version of the log. Runs on the writer thread.
+     * @param durability Whether to force a rewritten snapshot
+     * @throws IOException If the log cannot be read; the counters then stay unavailable
+     */
+    public void load(DurabilityMode durability) throws IOException {
+        if (!readSnapshot()) {
+            rebuild(durability);
+            return;
+        }
+        track();
+        loaded = true;
+        catchUp(durability);
+    }
+
+    /**
+     * Count the entries appended since the last call; after a compaction or rollover
+     * replaced the log, carry on from its new end. Runs on the writer thread after
+     * every write, so everything before a replacement was counted already.
+     * @param durability Whether to force the snapshot when one is due
+     * @throws IOException If the new entries cannot be read; they are counted on the next call
+     */
+    public void catchUp(DurabilityMode durability) throws IOException {
+        if (!loaded) {
+            return;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(log, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            return;
+        }
+        if (attributes.size() < position
+                || (fileKey != null && attributes.fileKey() != null && !fileKey.equals(attributes.fileKey()))) {
+            position = attributes.size();
+            fileKey = attributes.fileKey();
+            track();
+            writeSnapshot(durability);
+            return;
+        }
+        fileKey = attributes.fileKey();
+        if (attributes.size() == position) {
+            return;
+        }
+
+        try (MappedLogReader reader = new MappedLogReader(log)) {
+            // Stop at an entry that cannot be read; it and the rest are counted on the next call
+            long[] failedAt = {-1};
+            IOException[] failure = new IOException[1];
+            int[] counted = {0};
+            reader.scan(new MappedLogReader.SpanConsumer() {
+                @Override
+                public void record(long offset, int length, int signature) {
+                    if (failure[0] != null) {
+                        return;
+                    }
+                    try {
+                        int slot = track(decode(reader, offset, length), signature);
+                        if (slot != MISSING) {
+                            add(slot, 1);
+                        }
+                        counted[0]++;
+                    } catch (IOException ex) {
+                        failedAt[0] = offset;
+                        failure[0] = ex;
+                    }
+                }
+
+                @Override
+                public void tombstone(long offset, int length, int signature) {
+                    if (failure[0] != null) {
+                        return;
+                    }
+                    try {
+                        int slot = live.get(signature, MISSING);
+                        if (slot != MISSING) {
+                            live.remove(signature);
+                            add(slot, -1);
+                        } else if (sealedDeletes.add(signature)) {
+                            // Not in the live log: sealed into a segment by an earlier rollover
+                            AttendanceRecord sealed = segments.find(signature);
+                            if (sealed != null) {
+                                add(slotOf(sealed), -1);
+                            }
+                        }
+                        counted[0]++;
+                    } catch (IOException ex) {
+                        sealedDeletes.remove(signature);
+                        failedAt[0] = offset;
+                        failure[0] = ex;
+                    }
+                }
+            }, position);
+            position = failure[0] != null ? failedAt[0] : reader.size();
+            sinceSnapshot += counted[0];
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        if (sinceSnapshot >= SNAPSHOT_EVERY) {
+            writeSnapshot(durability);
+        }
+    }
+
+    /**
+     * Count every check-in again: one pass over the live log, whose tombstones decide
+     * which sealed records were deleted, then one over the sealed segments
+     * @param durability Whether to force the new snapshot
+     * @throws IOException If the log or a segment cannot be read
+     */
+    public void rebuild(DurabilityMode durability) throws IOException {
+        DayCounts counted = new DayCounts();
+        long end = 0;
+        Object key = null;
+        live.clear();
+        sealedDeletes.clear();
+        if (Files.exists(log)) {
+            try (MappedLogReader reader = new MappedLogReader(log)) {
+                IOException[] failure = new IOException[1];
+                reader.scan(new MappedLogReader.SpanConsumer() {
+                    @Override
+                    public void record(long offset, int length, int signature) {
+                        try {
+                            int slot = track(decode(reader, offset, length), signature);
+                            if (slot != MISSING) {
+                                counted.add(slot, 1);
+                            }
+                        } catch (IOException ex) {
+                            failure[0] = ex;
+                        }
+                    }
+
+                    @Override
+                    public void tombstone(long offset, int length, int signature) {
+                        int slot = live.get(signature, MISSING);
+                        if (slot != MISSING) {
+                            live.remove(signature);
+                            counted.add(slot, -1);
+                        } else {
+                            sealedDeletes.add(signature);
+                        }
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+                end = reader.size();
+            }
+            key = Files.readAttributes(log, BasicFileAttributes.class).fileKey();
+        }
+
+        // A record left in both places by an interrupted rollover counts once
+        segments.forEachRecord(record -> {
+            if (!sealedDeletes.contains(record.getSignature()) && !live.containsKey(record.getSignature())) {
+                counted.add(slotOf(record), 1);
+            }
+        });
+
+        synchronized (this) {
+            days = counted;
+        }
+        position = end;
+        fileKey = key;
+        loaded = true;
+        writeSnapshot(durability);
+    }
+
+    /**
+     * Save the counts with the log position they reflect. Writer thread, or after the writer stopped.
+     * @param durability Whether to force the snapshot before it replaces the old one
+     * @throws IOException If the snapshot cannot be written
+     */
+    public void writeSnapshot(DurabilityMode durability) throws IOException {
+        if (!loaded) {
+            return;
+        }
+        StringBuilder text = new StringBuilder(POSITION_HEADER).append('\n')
+            .append(position).append(',').append(Long.toHexString(logCheck(position))).append('\n')
+            .append(COUNTS_HEADER).append('\n');
+        Course[] courses = Course.values();
+        synchronized (this) {
+            for (long day : days.sortedDays()) {
+                int[] counts = days.countsOf(day);
+                for (int slot = 0; slot < SLOTS; slot++) {
+                    if (counts[slot] != 0) {
+                        text.append(LocalDate.ofEpochDay(day)).append(',')
+                            .append(courses[slot / Course.YEARS].name()).append('-')
+                            .append(slot % Course.YEARS + 1).append(',')
+                            .append(counts[slot]).append('\n');
+                    }
+                }
+            }
+        }
+        Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            if (durability != DurabilityMode.NONE) {
+                out.force(true);
+            }
+        }
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sinceSnapshot = 0;
+    }
+
+    /**
+     * @return false until the counts were loaded or rebuilt
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @param day Days since the epoch
+     * @param course The course
+     * @param year Year level, 1 to 4
+     * @return Check-ins of that course and year on that day
+     */
+    public synchronized int count(long day, Course course, int year) {
+        int row = days.rowOf(day);
+        return row < 0 ? 0 : days.count(row, course.ordinal() * Course.YEARS + year - 1);
+    }
+
+    /**
+     * @param day Days since the epoch
+     * @return All check-ins on that day
+     */
+    public synchronized int total(long day) {
+        int row = days.rowOf(day);
+        return row < 0 ? 0 : days.count(row, TOTAL);
+    }
+
+    /**
+     * @param day Days since the epoch
+     * @return A copy of the day's counts, indexed by course ordinal * 4 + year - 1, with the total at {@link #TOTAL}
+     */
+    public synchronized int[] countsOf(long day) {
+        return days.countsOf(day);
+    }
+
+    private synchronized void add(int slot, int delta) {
+        days.add(slot, delta);
+    }
+
+    /**
+     * Note a record of the live log as live, unless a record with its e-signature already is
+     * @param record The record, or null if it cannot be read
+     * @param signature Its packed e-signature
+     * @return The record's packed day and slot, or MISSING if it is not to be counted
+     */
+    private int track(AttendanceRecord record, int signature) {
+        if (record == null || live.containsKey(signature)) {
+            return MISSING;
+        }
+        int slot = slotOf(record);
+        live.put(signature, slot);
+        return slot;
+    }
+
+    /**
+     * Note the live records of the log up to the counted position, and which of its
+     * tombstones deleted sealed records, without counting anything
+     */
+    private void track() throws IOException {
+        live.clear();
+        sealedDeletes.clear();
+        if (position == 0) {
+            return;
+        }
+        try (MappedLogReader reader = new MappedLogReader(log, MappedLogReader.DEFAULT_WINDOW, position)) {
+            IOException[] failure = new IOException[1];
+            reader.scan(new MappedLogReader.SpanConsumer() {
+                @Override
+                public void record(long offset, int length, int signature) {
+                    try {
+                        track(decode(reader, offset, length), signature);
+                    } catch (IOException ex) {
+                        failure[0] = ex;
+                    }
+                }
+
+                @Override
+                public void tombstone(long offset, int length, int signature) {
+                    if (!live.remove(signature)) {
+                        sealedDeletes.add(signature);
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+    }
+
+    private static long dayOf(AttendanceRecord record) {
+        return Math.floorDiv(record.getEpochSecond(), SECONDS_PER_DAY);
+    }
+
+    /**
+     * @return The day and course/year of a record packed in one int: day * SLOTS + slot
+     */
+    private static int slotOf(AttendanceRecord record) {
+        return (int) (dayOf(record) * SLOTS) + record.getCourse().ordinal() * Course.YEARS + record.getYear() - 1;
+    }
+
+    private static AttendanceRecord decode(MappedLogReader reader, long offset, int length) throws IOException {
+        try {
+            return reader.decodeRecord(offset, length);
+        } catch (RuntimeException ex) {
+            // Not an attendance record we can read, e.g. a hand-edited line; not counted
+            return null;
+        }
+    }
+
+    /**
+     * Read the snapshot if it describes the log as it is now, i.e. the log still has
+     * the same bytes just before the snapshot's position
+     * @return false if there is no usable snapshot
+     */
+    private boolean readSnapshot() throws IOException {
+        if (!Files.exists(snapshot)) {
+            return false;
+        }
+        List<String> lines = Files.readAllLines(snapshot, StandardCharsets.UTF_8);
+        if (lines.size() < 3 || !lines.get(0).equals(POSITION_HEADER) || !lines.get(2).equals(COUNTS_HEADER)) {
+            return false;
+        }
+        DayCounts counted = new DayCounts();
+        long savedPosition;
+        try {
+            String[] fields = lines.get(1).split(",");
+            savedPosition = Long.parseLong(fields[0]);
+            long size = Files.exists(log) ? Files.size(log) : 0;
+            if (savedPosition > size || Long.parseUnsignedLong(fields[1], 16) != logCheck(savedPosition)) {
+                return false;
+            }
+            for (String line : lines.subList(3, lines.size())) {
+                String[] row = line.split(",");
+                Course course = Course.fromCode(row[1].substring(0, row[1].lastIndexOf('-')));
+                int year = Integer.parseInt(row[1].substring(row[1].lastIndexOf('-') + 1));
+                if (year < 1 || year > Course.YEARS) {
+                    return false;
+                }
+                counted.add(LocalDate.parse(row[0]).toEpochDay(), course.ordinal() * Course.YEARS + year - 1,
+                    Integer.parseInt(row[2]));
+            }
+        } catch (RuntimeException ex) {
+            return false;
+        }
+        synchronized (this) {
+            days = counted;
+        }
+        position = savedPosition;
+        fileKey = Files.exists(log) ? Files.readAttributes(log, BasicFileAttributes.class).fileKey() : null;
+        return true;
+    }
+
+    /**
+     * CRC32 of the log bytes just before a position, or 0 for position 0
+     */
+    private long logCheck(long end) throws IOException {
+        if (end == 0) {
+            return 0;
+        }
+        long start = Math.max(0, end - CHECK_BYTES);
+        ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+        try (FileChannel in = FileChannel.open(log, StandardOpenOption.READ)) {
+            while (bytes.hasRemaining()) {
+                if (in.read(bytes, start + bytes.position()) < 0) {
+                    return -1;
+                }
+            }
+        } catch (NoSuchFileException ex) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.array());
+        return crc.getValue();
+    }
+
+    /**
+     * Counts per day in one growing array, a row of SLOTS + 1 ints a day, found through
+     * a map from the day to its row
+     */
+    private static final class DayCounts {
+        private final LongIntHashMap rows = new LongIntHashMap();
+        private long[] rowDays = new long[64];
+        private int[] counts = new int[rowDays.length * (SLOTS + 1)];
+        private int size;
+
+        /**
+         * @param slot Day and course/year packed as day * SLOTS + slot
+         */
+        void add(int slot, int delta) {
+            add(Math.floorDiv(slot, SLOTS), Math.floorMod(slot, SLOTS), delta);
+        }
+
+        void add(long day, int slot, int delta) {
+            int row = rows.get(day, -1);
+            if (row < 0) {
+                if (size == rowDays.length) {
+                    rowDays = Arrays.copyOf(rowDays, size * 2);
+                    counts = Arrays.copyOf(counts, size * 2 * (SLOTS + 1));
+                }
+                row = size++;
+                rowDays[row] = day;
+                rows.put(day, row);
+            }
+            counts[row * (SLOTS + 1) + slot] += delta;
+            counts[row * (SLOTS + 1) + TOTAL] += delta;
+        }
+
+        /**
+         * @return The day's row, or -1 if nothing was counted on it
+         */
+        int rowOf(long day) {
+            return rows.get(day, -1);
+        }
+
+        int count(int row, int slot) {
+            return counts[row * (SLOTS + 1) + slot];
+        }
+
+        int[] countsOf(long day) {
+            int row = rowOf(day);
+            return row < 0 ? new int[SLOTS + 1]
+                : Arrays.copyOfRange(counts, row * (SLOTS + 1), (row + 1) * (SLOTS + 1));
+        }
+
+        long[] sortedDays() {
+            long[] sorted = Arrays.copyOf(rowDays, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import javax.swing.SwingWorker;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Attendance List Loader
+ * Scans the attendance log on a background thread and publishes the record spans
+ * to the list model in chunks, so the window fills in progressively while the
+ * tracker form stays responsive. The window's search index is built during the
+ * same pass and handed over when the load completes.
+ */
+public class AttendanceListLoader extends SwingWorker<Integer, RecordSpans> {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private final Path file;
+    private final AttendanceLogIndex index;
+    private final AttendanceListModel listModel;
+
+    // Tombstones can follow the records they delete, so deleted rows are dropped once the scan ends
+    private final IntHashSet deleted = new IntHashSet();
+
+    private final AttendanceSearchIndex searchIndex = new AttendanceSearchIndex();
+
+    // End of the part of the log that was loaded, -1 until the load succeeds
+    private volatile long loadedEnd = -1;
+
+    /**
+     * @param file The attendance log
+     * @param index Offset index of the log, or null to scan the whole log
+     * @param listModel Model of the list window, only touched on the EDT
+     */
+    public AttendanceListLoader(Path file, AttendanceLogIndex index, AttendanceListModel listModel) {
+        this.file = file;
+        this.index = index;
+        this.listModel = listModel;
+    }
+
+    @Override
+    protected Integer doInBackground() throws IOException {
+        // The model decodes through its own reader; the scan stops where that reader's view ends
+        long generation = index != null ? index.generation() : -1;
+        MappedLogReader decodeReader;
+        try {
+            decodeReader = new MappedLogReader(file);
+        } catch (NoSuchFileException ex) {
+            // Nothing to show yet; the whole file is new once it appears
+            loadedEnd = 0;
+            throw ex;
+        }
+        publishReader(decodeReader, generation);
+
+        // Stop at the last complete entry; one another process is still writing is left for the tail
+        long end = AttendanceLogTail.completeEnd(file, 0, decodeReader.size());
+
+        int[] total = {0};
+        try (MappedLogReader scanReader = new MappedLogReader(file, MappedLogReader.DEFAULT_WINDOW, end);
+             MappedLogReader searchReader = new MappedLogReader(file, MappedLogReader.DEFAULT_WINDOW, end)) {
+            long size = Math.max(1, scanReader.size());
+            RecordSpans[] chunk = {new RecordSpans(CHUNK_SIZE)};
+            MappedLogReader.SpanConsumer consumer = new MappedLogReader.SpanConsumer() {
+                @Override
+                public void record(long offset, int length, int signature) {
+                    chunk[0].add(offset, length, signature);
+                    indexRecord(searchReader, offset, length);
+                    total[0]++;
+                    if (chunk[0].size() == CHUNK_SIZE) {
+                        if (isCancelled()) {
+                            throw new CancellationException();
+                        }
+                        publish(chunk[0]);
+                        chunk[0] = new RecordSpans(CHUNK_SIZE);
+                        setProgress((int) (offset * 100 / size));
+                    }
+                }
+
+                @Override
+                public void tombstone(long offset, int length, int signature) {
+                    deleted.add(signature);
+                }
+            };
+            // Take the boundaries the index already knows, then scan only what was appended after it
+            long from = index != null ? index.replay(scanReader, consumer) : 0;
+            scanReader.scan(consumer, from);
+            publish(chunk[0]);
+            loadedEnd = end;
+        }
+        setProgress(100);
+        return total[0];
+    }
+
+    @Override
+    protected void process(List<RecordSpans> chunks) {
+        if (isCancelled()) {
+            return;
+        }
+        for (RecordSpans chunk : chunks) {
+            listModel.appendRecords(chunk);
+        }
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            get();
+            listModel.setSearchIndex(searchIndex);
+            listModel.removeSignatures(deleted);
+            if (!listModel.hasRecords()) {
+                listModel.setMessages("No attendance records found.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof NoSuchFileException) {
+                listModel.setMessages(
+                    "No attendance records found.",
+                    "The file will be created when the first attendance is submitted.");
+            } else {
+                listModel.setMessages("Error reading attendance records: " + cause.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return Offset the loaded list reaches, where following the log carries on, or -1
+     *         if the load failed or has not finished
+     */
+    public long getLoadedEnd() {
+        return loadedEnd;
+    }
+
+    /**
+     * Add a record to the search index. Rows that do not parse stay listed but cannot be searched.
+     */
+    private void indexRecord(MappedLogReader searchReader, long offset, int length) {
+        try {
+            searchIndex.add(offset, length, searchReader.decodeRecord(offset, length));
+        } catch (IOException | RuntimeException ex) {
+            // Not an attendance record we can read, e.g. a hand-edited line
+        }
+    }
+
+    /**
+     * Hand the decode reader to the model on the EDT, or close it if the load was cancelled first
+     */
+    private void publishReader(MappedLogReader decodeReader, long generation) {
+        javax.swing.SwingUtilities.invokeLater(() -> {
+            if (isCancelled()) {
+                try {
+                    decodeReader.close();
+                } catch (IOException ex) {
+                    System.err.println("Error closing attendance records: " + ex.getMessage());
+                }
+            } else {
+                listModel.beginLoading(decodeReader, generation);
+            }
+        });
+    }
+}
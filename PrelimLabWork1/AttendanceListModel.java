@@ -0,0 +1,331 @@
+import javax.swing.AbstractListModel;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Attendance List Model
+ * List model for the Attendance List window that only holds the offset of each
+ * record. Rows are decoded from the mapped log when the JList paints them, and the
+ * most recently shown rows are kept in a small LRU cache. A search narrows the rows
+ * to the matches found by the window's {@link AttendanceSearchIndex}. The results of a
+ * date-range query, which come from several segment files, are shown from memory instead.
+ */
+public class AttendanceListModel extends AbstractListModel<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int CACHE_SIZE = 512;
+
+    private MappedLogReader reader;
+    private RecordSpans spans = new RecordSpans(16);
+
+    // Records of a date-range query shown instead of the mapped log; span offsets index into it
+    private List<AttendanceRecord> results;
+    private String[] messages = new String[0];
+
+    // Search over the loaded records; view holds the matching rows, or null when not searching
+    private AttendanceSearchIndex searchIndex = new AttendanceSearchIndex();
+    private RecordSpans view;
+    private String query = "";
+
+    // Generation of the log index the offsets were taken from, -1 if unknown
+    private long logGeneration = -1;
+
+    // Decoded rows, least recently used first
+    private final Map<Integer, String> cache = new LinkedHashMap<Integer, String>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Show the records of an opened log. The model takes ownership of the reader.
+     * @param reader Reader over the log
+     * @param spans Offset and length of each record
+     */
+    public void setRecords(MappedLogReader reader, RecordSpans spans) {
+        int oldSize = getSize();
+        closeReader();
+        this.reader = reader;
+        this.spans = spans;
+        this.results = null;
+        this.messages = new String[0];
+        this.view = null;
+        cache.clear();
+        fireChanged(oldSize);
+    }
+
+    /**
+     * Start showing an opened log whose records arrive in chunks from a background scan
+     * @param reader Reader used to decode rows on the EDT
+     * @param logGeneration Generation of the log index when the reader was opened, or -1
+     */
+    public void beginLoading(MappedLogReader reader, long logGeneration) {
+        setRecords(reader, new RecordSpans());
+        this.logGeneration = logGeneration;
+    }
+
+    /**
+     * Show the records found by a date-range query, searchable like a loaded log
+     * @param records The records, in the order to show them
+     */
+    public void setResults(List<AttendanceRecord> records) {
+        int oldSize = getSize();
+        closeReader();
+        this.results = records;
+        this.spans = new RecordSpans(records.size());
+        this.searchIndex = new AttendanceSearchIndex();
+        for (int i = 0; i < records.size(); i++) {
+            spans.add(i, 0, records.get(i).getSignature());
+            searchIndex.add(i, 0, records.get(i));
+        }
+        this.messages = new String[0];
+        this.view = query.isEmpty() ? null : searchIndex.search(query);
+        this.logGeneration = -1;
+        cache.clear();
+        fireChanged(oldSize);
+    }
+
+    /**
+     * @return true if the rows are the results of a date-range query
+     */
+    public boolean showsResults() {
+        return results != null && messages.length == 0;
+    }
+
+    /**
+     * Replace the reader with one that sees more of the same log, e.g. after records were appended
+     * @param reader Reader over the same log file
+     */
+    public void replaceReader(MappedLogReader reader) {
+        closeReader();
+        this.reader = reader;
+    }
+
+    /**
+     * Use the search index built by the loader
+     * @param searchIndex Index over the loaded records
+     */
+    public void setSearchIndex(AttendanceSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Show only the records matching a search, or all of them for a blank query
+     * @param query Search text, see {@link AttendanceSearchIndex}
+     */
+    public void setQuery(String query) {
+        int oldSize = getSize();
+        this.query = query.trim();
+        if (messages.length > 0) {
+            return;
+        }
+        view = this.query.isEmpty() ? null : searchIndex.search(this.query);
+        cache.clear();
+        fireChanged(oldSize);
+    }
+
+    /**
+     * Append a chunk of scanned records
+     * @param chunk Offset and length of the new records, in file order
+     */
+    public void appendRecords(RecordSpans chunk) {
+        if (chunk.size() == 0) {
+            return;
+        }
+        int first = spans.size();
+        for (int i = 0; i < chunk.size(); i++) {
+            spans.add(chunk.offset(i), chunk.length(i), chunk.signature(i));
+        }
+        if (view == null) {
+            fireIntervalAdded(this, first, spans.size() - 1);
+        }
+    }
+
+    /**
+     * Append a record submitted after the list was loaded. Only valid while records
+     * are shown, since the model needs its reader to decode the row.
+     * @param offset Byte offset of the record, within the reader's view of the log
+     * @param length Length of the record in bytes
+     * @param record The record
+     */
+    public void appendRecord(long offset, int length, AttendanceRecord record) {
+        spans.add(offset, length, record.getSignature());
+        searchIndex.add(offset, length, record);
+        if (view == null) {
+            fireIntervalAdded(this, spans.size() - 1, spans.size() - 1);
+        } else {
+            setQuery(query);
+        }
+    }
+
+    /**
+     * Append records found by following the log, and drop the rows of records deleted
+     * by the tombstones found with them. Takes ownership of the reader, which sees the
+     * log up to the end of the new entries; an empty list starts showing records again.
+     * @param reader Reader over the same log file
+     * @param records Spans of the new records, in file order
+     * @param decoded The new records, null where one cannot be decoded
+     * @param deleted Signatures of the new tombstones
+     */
+    public void appendFollowed(MappedLogReader reader, RecordSpans records, List<AttendanceRecord> decoded,
+                               IntHashSet deleted) {
+        boolean wasEmpty = messages.length > 0;
+        if (wasEmpty) {
+            if (records.size() == 0) {
+                try {
+                    reader.close();
+                } catch (IOException ex) {
+                    System.err.println("Error closing attendance records: " + ex.getMessage());
+                }
+                return;
+            }
+            setRecords(reader, new RecordSpans());
+            searchIndex = new AttendanceSearchIndex();
+        } else {
+            replaceReader(reader);
+        }
+        int first = spans.size();
+        for (int i = 0; i < records.size(); i++) {
+            spans.add(records.offset(i), records.length(i), records.signature(i));
+            if (decoded.get(i) != null) {
+                searchIndex.add(records.offset(i), records.length(i), decoded.get(i));
+            }
+        }
+        if (wasEmpty || view != null) {
+            setQuery(query);
+        } else if (spans.size() > first) {
+            fireIntervalAdded(this, first, spans.size() - 1);
+        }
+        if (!deleted.isEmpty()) {
+            removeSignatures(deleted);
+        }
+    }
+
+    /**
+     * Show informational lines instead of records
+     * @param lines Lines such as "No attendance records found."
+     */
+    public void setMessages(String... lines) {
+        int oldSize = getSize();
+        closeReader();
+        this.spans = new RecordSpans(16);
+        this.results = null;
+        this.view = null;
+        this.messages = lines;
+        cache.clear();
+        fireChanged(oldSize);
+    }
+
+    /**
+     * @return true if the rows are records that can be selected and deleted
+     */
+    public boolean hasRecords() {
+        return messages.length == 0 && spans.size() > 0;
+    }
+
+    public MappedLogReader getReader() {
+        return reader;
+    }
+
+    public RecordSpans getSpans() {
+        return spans;
+    }
+
+    public long getLogGeneration() {
+        return logGeneration;
+    }
+
+    /**
+     * @param index A record row
+     * @return Packed e-signature of the record
+     */
+    public int getSignature(int index) {
+        return rows().signature(index);
+    }
+
+    /**
+     * Drop the rows of records deleted by tombstones found after they were shown
+     * @param deleted Signatures of deleted records
+     */
+    public void removeSignatures(IntHashSet deleted) {
+        int oldSize = getSize();
+        searchIndex.removeAll(deleted);
+        if (messages.length == 0 && spans.removeSignatures(deleted) > 0) {
+            if (view != null) {
+                view.removeSignatures(deleted);
+            }
+            cache.clear();
+            fireChanged(oldSize);
+        }
+    }
+
+    /**
+     * Remove the row of a deleted record, wherever earlier changes have moved it
+     * @param signature Packed e-signature of the record
+     */
+    public void removeSignature(int signature) {
+        IntHashSet deleted = new IntHashSet();
+        deleted.add(signature);
+        removeSignatures(deleted);
+    }
+
+    /**
+     * Release the mapped log
+     */
+    public void close() {
+        closeReader();
+    }
+
+    @Override
+    public int getSize() {
+        return messages.length > 0 ? messages.length : rows().size();
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        if (messages.length > 0) {
+            return messages[index];
+        }
+        String row = cache.get(index);
+        if (row == null) {
+            try {
+                row = results != null
+                    ? results.get((int) rows().offset(index)).toText()
+                    : reader.decode(rows().offset(index), rows().length(index));
+            } catch (IOException | RuntimeException ex) {
+                return "Error reading record: " + ex.getMessage();
+            }
+            cache.put(index, row);
+        }
+        return row;
+    }
+
+    private RecordSpans rows() {
+        return view != null ? view : spans;
+    }
+
+    private void fireChanged(int oldSize) {
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        int newSize = getSize();
+        if (newSize > 0) {
+            fireIntervalAdded(this, 0, newSize - 1);
+        }
+    }
+
+    private void closeReader() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                System.err.println("Error closing attendance records: " + ex.getMessage());
+            }
+            reader = null;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Attendance Log
+ * One attendance log file and everything that writes to it: the background
+ * {@link AttendanceLogWriter}, the offset index kept current after every write and
+ * the {@link AttendanceLogCompactor}, the {@link SignatureAllocator} that keeps
+ * e-signatures unique, the {@link CheckInGuard} against duplicate check-ins and the
+ * {@link AttendanceSegments} that past days are sealed into, and the {@link AttendanceCounters}
+ * of check-ins per course, year and day. The tracker window and the {@link AttendanceServer} both save
+ * through this class, so every record of a log goes through a single ordered writer.
+ *
+ * Tuned with the same system properties as the tracker: attendance.format,
+ * attendance.durability, attendance.queueCapacity, attendance.maxBatchSize,
+ * attendance.maxLatencyMs, attendance.compactRatio, attendance.compactMinTombstones,
+ * attendance.segmentDays and attendance.archiveDays.
+ */
+public class AttendanceLog implements Closeable {
+
+    private final Path file;
+    private final boolean binary;
+    private final AttendanceLogWriter writer;
+
+    // Offset index sidecar of the log, opened on the writer thread; null until then or if it cannot be used
+    private volatile AttendanceLogIndex index;
+
+    // Loaded with the index; a record whose e-signature is taken is refused
+    private final SignatureAllocator signatures = new SignatureAllocator();
+
+    // Today's check-ins, also loaded with the index; a second check-in of a student that day is refused
+    private final CheckInGuard checkIns = new CheckInGuard();
+
+    // Past periods are moved out of the log at startup and when a new period begins
+    private final AttendanceSegments segments;
+    private volatile long rolledPeriod = Long.MIN_VALUE;
+    private final AtomicBoolean rollQueued = new AtomicBoolean();
+
+    // Check-ins per course, year and day, counted after every write
+    private final AttendanceCounters counters;
+
+    // Deletes are tombstones; the log is compacted once too many pile up
+    private final AttendanceLogCompactor compactor = new AttendanceLogCompactor(
+        Double.parseDouble(System.getProperty("attendance.compactRatio", "0.2")),
+        Integer.getInteger("attendance.compactMinTombstones", 32)
+    );
+
+    /**
+     * Start the background writer for a log, creating the log on the first write
+     * @param file The attendance log
+     */
+    public AttendanceLog(Path file) {
+        this.file = file;
+        this.segments = new AttendanceSegments(file, Integer.getInteger("attendance.segmentDays", 1),
+            Integer.getInteger("attendance.archiveDays", 30));
+        this.counters = new AttendanceCounters(file, segments);
+
+        // Keep writing the format the log already has; -Dattendance.format=binary starts a new log as binary
+        binary = BinaryRecordFormat.isBinary(file) ||
+            (!Files.exists(file) && "binary".equals(System.getProperty("attendance.format")));
+
+        writer = new AttendanceLogWriter(
+            file.toString(),
+            DurabilityMode.parse(System.getProperty("attendance.durability"), DurabilityMode.BATCHED),
+            Integer.getInteger("attendance.queueCapacity", 1024),
+            Integer.getInteger("attendance.maxBatchSize", 64),
+            Long.getLong("attendance.maxLatencyMs", 20L)
+        );
+
+        if (binary && !Files.exists(file)) {
+            writer.append(BinaryRecordFormat.header());
+        }
+
+        // Seal past periods, open the offset index and count live records and tombstones
+        // in the background, compacting right away if overdue
+        CompletableFuture<Void> opened = writer.runTask(this::openIndex);
+        opened.thenRunAsync(() -> compactor.compactIfNeeded(writer));
+
+        // Saves wait for the signatures and check-ins, so never leave them waiting on a failed open
+        opened.whenComplete((ignored, error) -> {
+            if (error != null) {
+                signatures.unavailable(error);
+                checkIns.unavailable(error);
+            }
+        });
+    }
+
+    /**
+     * Queue a record for the background writer
+     * @param record The attendance record to save
+     * @return Completes once the record meets the configured durability mode, or
+     *         exceptionally if another record already has its e-signature, the
+     *         student already checked in that day or the log could not be loaded
+     *         (an {@link UnconfirmedWriteException} if it was written but not confirmed)
+     */
+    public CompletableFuture<Void> save(AttendanceRecord record) {
+        if (!signatures.isLoaded() || !checkIns.isLoaded()) {
+            // Claims need the log's signatures and check-ins; decide once they are loaded, off the writer thread
+            return whenLoaded().thenComposeAsync(ignored -> save(record));
+        }
+        // Encode before claiming, so a record that cannot be written (e.g. a name too
+        // long for the binary format) leaves no claims behind
+        byte[] encoded;
+        try {
+            encoded = binary ? BinaryRecordFormat.encode(record) : TextRecordFormat.encode(record);
+        } catch (IllegalArgumentException ex) {
+            return refuse(ex.getMessage());
+        }
+        int signature = record.getSignature();
+        if (!signatures.claim(signature)) {
+            return refuse("E-signature " + AttendanceRecord.formatSignature(signature) + " is already in use");
+        }
+        if (!checkIns.claim(record)) {
+            signatures.release(signature);
+            return refuse(record.getName() + " (" + record.getCourseYear() + ") has already checked in on "
+                + record.getTimeIn().substring(0, 10));
+        }
+        CompletableFuture<Void> saved = writer.append(encoded);
+        rollIfNewPeriod();
+        saved.whenComplete((ignored, error) -> {
+            // An unconfirmed record is in the log, so it keeps its claims
+            if (error == null || UnconfirmedWriteException.isUnconfirmed(error)) {
+                compactor.recordAppended();
+            } else {
+                signatures.release(signature);
+                checkIns.release(record);
+            }
+        });
+        return saved;
+    }
+
+    /**
+     * Delete a record by appending a tombstone for its e-signature
+     * @param signature Packed e-signature of the record to delete
+     * @return Completes once the tombstone meets the configured durability mode
+     */
+    public CompletableFuture<Void> delete(int signature) {
+        byte[] tombstone = binary
+            ? BinaryRecordFormat.encodeTombstone(signature)
+            : TextRecordFormat.encodeTombstone(signature);
+        CompletableFuture<Void> deleted = writer.append(tombstone);
+
+        // Queue the compaction from another thread, never from the writer thread itself
+        deleted.thenRunAsync(() -> {
+            checkIns.deleted(signature);
+            compactor.recordDeleted();
+            compactor.compactIfNeeded(writer);
+        });
+        return deleted;
+    }
+
+    /**
+     * @return Completes once saves can be checked against the log, or fails with the
+     *         error that kept the log from loading
+     */
+    public CompletableFuture<Void> whenLoaded() {
+        return CompletableFuture.allOf(signatures.loaded(), checkIns.loaded());
+    }
+
+    /**
+     * @return Issues e-signatures no record of this log uses
+     */
+    public SignatureAllocator getSignatures() {
+        return signatures;
+    }
+
+    /**
+     * @return Today's check-ins, to warn about a duplicate before saving it
+     */
+    public CheckInGuard getCheckIns() {
+        return checkIns;
+    }
+
+    /**
+     * @return The segments past periods are sealed into, for time-range queries
+     */
+    public AttendanceSegments getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return Check-ins per course, year and day, empty until loaded on the writer thread
+     */
+    public AttendanceCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * Count the check-ins again from the log and its segments, after the writes queued before it
+     * @return Completes once the counters are rebuilt
+     */
+    public CompletableFuture<Void> recount() {
+        return writer.runTask((log, durability) -> counters.rebuild(durability));
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return The log's offset index, or null while it is opening or if it cannot be used
+     */
+    public AttendanceLogIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Write out queued records, save the counters, then close the offset index
+     */
+    @Override
+    public void close() {
+        writer.close();
+        try {
+            counters.writeSnapshot(DurabilityMode.BATCHED);
+        } catch (IOException ex) {
+            System.err.println("Error saving attendance counters: " + ex.getMessage());
+        }
+        AttendanceLogIndex current = index;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ex) {
+                System.err.println("Error closing attendance index: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Load the counters, seal past periods into segments, open (or rebuild) the log's
+     * offset index and keep it and the counters current after every write, then load the
+     * e-signatures in use and today's check-ins. Runs on the writer thread; without a usable
+     * index the log is scanned instead.
+     * @param log The attendance log
+     * @param durability The writer's durability mode
+     * @throws IOException If the log cannot be counted
+     */
+    private void openIndex(Path log, DurabilityMode durability) throws IOException {
+        dropPartialRecord(log, durability);
+
+        // Before the rollover, since the snapshot describes the log as it was left
+        try {
+            counters.load(durability);
+        } catch (IOException ex) {
+            System.err.println("Attendance counters unavailable: " + ex.getMessage());
+        }
+        try {
+            rollover(log, durability);
+        } catch (IOException ex) {
+            System.err.println("Error sealing past attendance into segments: " + ex.getMessage());
+        }
+        try {
+            AttendanceLogIndex opened = AttendanceLogIndex.open(log);
+            writer.setAfterWrite((written, mode) -> {
+                try {
+                    opened.catchUp();
+                } finally {
+                    counters.catchUp(mode);
+                }
+            });
+            index = opened;
+            compactor.count(opened);
+        } catch (IOException ex) {
+            System.err.println("Attendance index unavailable, scanning the log instead: " + ex.getMessage());
+            writer.setAfterWrite((written, mode) -> counters.catchUp(mode));
+            compactor.count(log, durability);
+        }
+        try {
+            signatures.load(log, index, segments);
+        } finally {
+            // Load even if the signatures failed, so saves are refused rather than left waiting
+            checkIns.load(log, index);
+        }
+    }
+
+    /**
+     * Queue a rollover once the first record of a new period is saved
+     */
+    private void rollIfNewPeriod() {
+        if (segments.periodOf(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC)) > rolledPeriod
+                && rollQueued.compareAndSet(false, true)) {
+            writer.runTask(this::rollover).whenComplete((ignored, error) -> rollQueued.set(false));
+        }
+    }
+
+    /**
+     * Move records of past periods into their segments. Runs on the writer thread; the
+     * offset index catches up with the replaced log after the task.
+     * @param log The attendance log
+     * @param durability The writer's durability mode
+     * @throws IOException If the rollover fails
+     */
+    private void rollover(Path log, DurabilityMode durability) throws IOException {
+        long period = segments.periodOf(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC));
+        try {
+            if (segments.roll(log, durability) && index != null) {
+                compactor.count(log, durability);
+            }
+        } finally {
+            rolledPeriod = period;
+        }
+    }
+
+    private static CompletableFuture<Void> refuse(String reason) {
+        CompletableFuture<Void> refused = new CompletableFuture<>();
+        refused.completeExceptionally(new IllegalArgumentException(reason));
+        return refused;
+    }
+
+    /**
+     * Cut off a binary record left incomplete by a crash mid-append, before anything
+     * is appended after it. Runs on the writer thread.
+     * @param log The attendance log
+     * @param durability The writer's durability mode
+     * @throws IOException If the log cannot be read or truncated
+     */
+    private static void dropPartialRecord(Path log, DurabilityMode durability) throws IOException {
+        if (!BinaryRecordFormat.isBinary(log)) {
+            return;
+        }
+        long size;
+        long end;
+        try (MappedLogReader reader = new MappedLogReader(log)) {
+            size = reader.size();
+            end = reader.completeSize();
+        }
+        if (end < size) {
+            System.err.println("Dropping an incomplete attendance record at offset " + end + " (" + (size - end) + " bytes)");
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+                if (durability != DurabilityMode.NONE) {
+                    channel.force(true);
+                }
+            }
+        }
+    }
+}
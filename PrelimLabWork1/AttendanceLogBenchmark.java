@@ -0,0 +1,52 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Attendance Log Benchmark
+ * Appends the same burst of records under every durability mode and prints the
+ * throughput and number of disk syncs, so each deployment can pick its tradeoff.
+ *
+ * Usage: java AttendanceLogBenchmark [records] [maxBatchSize] [maxLatencyMs]
+ */
+public class AttendanceLogBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int maxBatchSize = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        long maxLatencyMs = args.length > 2 ? Long.parseLong(args[2]) : 20L;
+
+        byte[] record = (String.format(
+            "Name: %s | Course: %s | Time: %s | Signature: %s\n",
+            "Juan Dela Cruz", "BSIT-1", "2026-01-28 07:30:00", "1A2B3C4D"
+        ) + "─".repeat(70) + "\n").getBytes(StandardCharsets.UTF_8);
+
+        System.out.printf("%-12s %10s %12s %10s%n", "Mode", "Records", "Records/sec", "Syncs");
+        for (DurabilityMode mode : DurabilityMode.values()) {
+            Path file = Files.createTempFile("attendance-bench-", ".txt");
+            try {
+                AttendanceLogWriter writer = new AttendanceLogWriter(
+                    file.toString(), mode, 1024, maxBatchSize, maxLatencyMs);
+
+                long start = System.nanoTime();
+                List<CompletableFuture<Void>> pending = new ArrayList<>(records);
+                for (int i = 0; i < records; i++) {
+                    pending.add(writer.append(record));
+                }
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+                long elapsed = System.nanoTime() - start;
+                writer.close();
+
+                double perSecond = records / (elapsed / 1_000_000_000.0);
+                System.out.printf("%-12s %10d %12.0f %10d%n",
+                    mode, writer.getRecordsWritten(), perSecond, writer.getSyncCount());
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Attendance Log Compactor
+ * Deletes are appended to the log as tombstones. This class counts live records and
+ * tombstones, and once tombstones make up too much of the log it rewrites the log
+ * with only the live records (temp file + atomic rename). Its methods that touch the
+ * file are {@link AttendanceLogWriter.LogTask}s, so they run on the writer thread and
+ * no append can slip in between the scan and the rename.
+ */
+public class AttendanceLogCompactor {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final double maxTombstoneRatio;
+    private final int minTombstones;
+
+    private final AtomicLong liveRecords = new AtomicLong();
+    private final AtomicLong tombstones = new AtomicLong();
+    private final AtomicBoolean compactionQueued = new AtomicBoolean();
+
+    /**
+     * @param maxTombstoneRatio Compact once tombstones exceed this share of all log entries
+     * @param minTombstones Never compact for fewer tombstones than this
+     */
+    public AttendanceLogCompactor(double maxTombstoneRatio, int minTombstones) {
+        this.maxTombstoneRatio = maxTombstoneRatio;
+        this.minTombstones = minTombstones;
+    }
+
+    /**
+     * Count the live records and tombstones currently in the log
+     * @param file The attendance log
+     * @param durability Unused, present to fit {@link AttendanceLogWriter.LogTask}
+     * @throws IOException If the log cannot be read
+     */
+    public void count(Path file, DurabilityMode durability) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        Counter counter = new Counter();
+        try (MappedLogReader reader = new MappedLogReader(file)) {
+            reader.scan(counter);
+        }
+        counter.apply();
+    }
+
+    /**
+     * Count the live records and tombstones from the log's offset index instead of the log
+     * @param index An up to date index of the log
+     * @throws IOException If the index cannot be read
+     */
+    public void count(AttendanceLogIndex index) throws IOException {
+        Counter counter = new Counter();
+        index.replay(counter);
+        counter.apply();
+    }
+
+    public void recordAppended() {
+        liveRecords.incrementAndGet();
+    }
+
+    public void recordDeleted() {
+        liveRecords.decrementAndGet();
+        tombstones.incrementAndGet();
+    }
+
+    /**
+     * @return true if the tombstone ratio has crossed the threshold
+     */
+    public boolean shouldCompact() {
+        long dead = tombstones.get();
+        long total = dead + Math.max(0, liveRecords.get());
+        return dead >= minTombstones && dead > maxTombstoneRatio * total;
+    }
+
+    /**
+     * Queue a compaction on the writer if the threshold is crossed and none is queued yet
+     * @param writer The log writer
+     */
+    public void compactIfNeeded(AttendanceLogWriter writer) {
+        if (shouldCompact() && compactionQueued.compareAndSet(false, true)) {
+            writer.runTask(this::compact).whenComplete((ignored, error) -> compactionQueued.set(false));
+        }
+    }
+
+    /**
+     * Rewrite the log with only its live records. Tombstones of records that are not
+     * in the log, i.e. records already sealed into an {@link AttendanceSegments}
+     * segment, are kept until the next rollover removes those records.
+     * @param file The attendance log
+     * @param durability Whether to force the new file before it replaces the old one
+     * @throws IOException If the log cannot be rewritten; the old log is left in place
+     */
+    public void compact(Path file, DurabilityMode durability) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".compact.tmp");
+        int live;
+        try (MappedLogReader reader = new MappedLogReader(file);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            RecordSpans spans = new RecordSpans();
+            IntHashSet present = new IntHashSet();
+            IntHashSet deleted = new IntHashSet();
+            reader.scan(new MappedLogReader.SpanConsumer() {
+                @Override
+                public void record(long offset, int length, int signature) {
+                    spans.add(offset, length, signature);
+                    present.add(signature);
+                }
+
+                @Override
+                public void tombstone(long offset, int length, int signature) {
+                    deleted.add(signature);
+                }
+            });
+            spans.removeSignatures(deleted);
+            live = spans.size();
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            byte[] lineEnd = TextRecordFormat.lineEnd();
+            if (reader.isBinary()) {
+                buffer.put(BinaryRecordFormat.header());
+            }
+            for (int i = 0; i < spans.size(); i++) {
+                buffer = CopyBuffers.write(out, buffer, reader.readBytes(spans.offset(i), spans.length(i)));
+                if (!reader.isBinary()) {
+                    buffer = CopyBuffers.write(out, buffer, lineEnd);
+                }
+            }
+            for (int signature : deleted.toArray()) {
+                if (!present.contains(signature)) {
+                    buffer = CopyBuffers.write(out, buffer, reader.isBinary()
+                        ? BinaryRecordFormat.encodeTombstone(signature)
+                        : TextRecordFormat.encodeTombstone(signature));
+                }
+            }
+            CopyBuffers.finish(out, buffer, durability);
+        } catch (IOException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        liveRecords.set(live);
+        tombstones.set(0);
+    }
+
+    /**
+     * Tallies records and tombstones during a scan
+     */
+    private class Counter implements MappedLogReader.SpanConsumer {
+        private long records;
+        private long deletes;
+        private final IntHashSet deleted = new IntHashSet();
+
+        @Override
+        public void record(long offset, int length, int signature) {
+            records++;
+        }
+
+        @Override
+        public void tombstone(long offset, int length, int signature) {
+            deletes++;
+            deleted.add(signature);
+        }
+
+        void apply() {
+            liveRecords.set(Math.max(0, records - deleted.size()));
+            tombstones.set(deletes);
+        }
+    }
+}
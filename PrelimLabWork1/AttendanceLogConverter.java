@@ -0,0 +1,80 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Attendance Log Converter
+ * One-shot conversion between the text attendance log and the binary record format.
+ *
+ * Usage:
+ *   java AttendanceLogConverter to-binary attendance_records.txt attendance_records.bin
+ *   java AttendanceLogConverter to-text attendance_records.bin attendance_records.txt
+ */
+public class AttendanceLogConverter {
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Usage: java AttendanceLogConverter (to-binary|to-text) <input> <output>");
+            System.exit(2);
+        }
+        Path input = Paths.get(args[1]);
+        Path output = Paths.get(args[2]);
+        try {
+            int count;
+            if ("to-binary".equals(args[0])) {
+                count = toBinary(input, output);
+            } else if ("to-text".equals(args[0])) {
+                count = toText(input, output);
+            } else {
+                System.err.println("Unknown command: " + args[0]);
+                System.exit(2);
+                return;
+            }
+            System.out.printf("Converted %d records: %s (%d bytes) -> %s (%d bytes)%n",
+                count, input, Files.size(input), output, Files.size(output));
+        } catch (IOException | IllegalArgumentException ex) {
+            System.err.println("Conversion failed: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Convert a text log to the binary format. Deleted records are left out.
+     * @param textLog The existing text log
+     * @param binaryLog The binary log to create (overwritten if it exists)
+     * @return Number of records converted
+     * @throws IOException If either file cannot be accessed
+     */
+    public static int toBinary(Path textLog, Path binaryLog) throws IOException {
+        try (MappedLogReader reader = new MappedLogReader(textLog);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(binaryLog))) {
+            RecordSpans spans = reader.scan();
+            out.write(BinaryRecordFormat.header());
+            for (int i = 0; i < spans.size(); i++) {
+                out.write(BinaryRecordFormat.encode(reader.decodeRecord(spans.offset(i), spans.length(i))));
+            }
+            return spans.size();
+        }
+    }
+
+    /**
+     * Export a binary log back to the text format. Deleted records are left out.
+     * @param binaryLog The binary log
+     * @param textLog The text log to create (overwritten if it exists)
+     * @return Number of records exported
+     * @throws IOException If either file cannot be accessed
+     */
+    public static int toText(Path binaryLog, Path textLog) throws IOException {
+        try (MappedLogReader reader = new MappedLogReader(binaryLog);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(textLog))) {
+            RecordSpans spans = reader.scan();
+            for (int i = 0; i < spans.size(); i++) {
+                out.write(TextRecordFormat.encode(reader.decodeRecord(spans.offset(i), spans.length(i))));
+            }
+            return spans.size();
+        }
+    }
+}
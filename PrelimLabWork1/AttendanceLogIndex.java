@@ -0,0 +1,533 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Attendance Log Index
+ * Sidecar file next to the attendance log ("attendance_records.txt.idx") that maps
+ * entry number to byte offset, so readers get every record boundary without scanning
+ * the log. Entries have a fixed size, so entry i is read with one positional read.
+ *
+ * Header (32 bytes): magic "ATRX", u16 version, u16 reserved, i64 log bytes covered,
+ *   i64 entry count, i64 reserved.
+ * Entry (24 bytes): i64 offset, i32 length, i32 e-signature, u32 Time In as epoch
+ *   seconds, u8 kind (record or tombstone, as in {@link BinaryRecordFormat}), 3 bytes padding.
+ *
+ * The index is brought up to date by scanning only the bytes after what it covers,
+ * and rebuilt from scratch when it is missing, corrupt, or the log was replaced.
+ */
+public class AttendanceLogIndex implements Closeable {
+
+    private static final byte[] MAGIC = {'A', 'T', 'R', 'X'};
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int ENTRY_SIZE = 24;
+
+    private static final int BATCH_ENTRIES = 4096;
+
+    private final Path log;
+    private final Path indexFile;
+    // The sidecar, or null for an index built in memory (see openReadOnly)
+    private final FileChannel channel;
+    private ByteBuffer memory;
+    private final ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+
+    private long coveredLength;
+    private long entryCount;
+
+    // Bumped whenever the index is rebuilt, i.e. the log was replaced
+    private long generation;
+
+    private AttendanceLogIndex(Path log, Path indexFile, FileChannel channel) {
+        this.log = log;
+        this.indexFile = indexFile;
+        this.channel = channel;
+        if (channel == null) {
+            memory = ByteBuffer.allocate(HEADER_SIZE);
+        }
+    }
+
+    /**
+     * @param log The attendance log
+     * @return Path of the log's index sidecar
+     */
+    public static Path indexPathFor(Path log) {
+        return log.resolveSibling(log.getFileName() + ".idx");
+    }
+
+    /**
+     * Open the index of a log, rebuilding it if it is missing or stale, and index
+     * anything appended since it was last updated
+     * @param log The attendance log
+     * @return The up to date index
+     * @throws IOException If the index cannot be read or written
+     */
+    public static AttendanceLogIndex open(Path log) throws IOException {
+        Path indexFile = indexPathFor(log);
+        FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        AttendanceLogIndex index = new AttendanceLogIndex(log, indexFile, channel);
+        try {
+            if (!index.load()) {
+                index.reset();
+            }
+            index.catchUp();
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+        return index;
+    }
+
+    /**
+     * Open the index of a log without writing next to it, e.g. from a client reading
+     * the segments of a log another process writes. A sidecar that covers the whole
+     * log is read as it is; otherwise the index is built in memory. The index is
+     * meant for logs that no longer change, such as sealed segments.
+     * @param log The attendance log
+     * @return The up to date index
+     * @throws IOException If the log or index cannot be read
+     */
+    public static AttendanceLogIndex openReadOnly(Path log) throws IOException {
+        Path indexFile = indexPathFor(log);
+        if (Files.exists(indexFile)) {
+            FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ);
+            AttendanceLogIndex index = new AttendanceLogIndex(log, indexFile, channel);
+            try {
+                if (index.load() && index.lastEntryMatches() && index.coveredLength == Files.size(log)) {
+                    return index;
+                }
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+            channel.close();
+        }
+        AttendanceLogIndex index = new AttendanceLogIndex(log, indexFile, null);
+        index.reset();
+        index.catchUp();
+        return index;
+    }
+
+    /**
+     * Index everything appended to the log since the last update. Rebuilds the index
+     * if the log shrank or was replaced (e.g. by compaction).
+     * @throws IOException If the log or index cannot be accessed
+     */
+    public synchronized void catchUp() throws IOException {
+        long logSize = Files.exists(log) ? Files.size(log) : 0;
+        if (logSize < coveredLength || !lastEntryMatches()) {
+            reset();
+        }
+        if (logSize == coveredLength) {
+            return;
+        }
+
+        ByteBuffer batch = ByteBuffer.allocate(BATCH_ENTRIES * ENTRY_SIZE);
+        long[] added = {0};
+        boolean binary;
+        try (MappedLogReader reader = new MappedLogReader(log, MappedLogReader.DEFAULT_WINDOW, logSize)) {
+            IOException[] failure = new IOException[1];
+            MappedLogReader.SpanConsumer consumer = new MappedLogReader.SpanConsumer() {
+                @Override
+                public void record(long offset, int length, int signature) {
+                    add(offset, length, signature, BinaryRecordFormat.KIND_RECORD);
+                }
+
+                @Override
+                public void tombstone(long offset, int length, int signature) {
+                    add(offset, length, signature, BinaryRecordFormat.KIND_TOMBSTONE);
+                }
+
+                private void add(long offset, int length, int signature, int kind) {
+                    if (failure[0] != null) {
+                        return;
+                    }
+                    try {
+                        long time = kind == BinaryRecordFormat.KIND_RECORD ? reader.epochSecond(offset, length) : 0;
+                        batch.putLong(offset).putInt(length).putInt(signature)
+                            .putInt((int) time).put((byte) kind).put((byte) 0).putShort((short) 0);
+                        added[0]++;
+                        if (!batch.hasRemaining()) {
+                            flushEntries(batch, entryCount + added[0] - BATCH_ENTRIES);
+                        }
+                    } catch (IOException ex) {
+                        failure[0] = ex;
+                    }
+                }
+            };
+            reader.scan(consumer, coveredLength);
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            binary = reader.isBinary();
+        }
+        int pending = batch.position() / ENTRY_SIZE;
+        flushEntries(batch, entryCount + added[0] - pending);
+
+        // Entries first, then the header that makes them visible
+        entryCount += added[0];
+        coveredLength = binary ? binaryEntryEnd(logSize) : trimToEntryEnd(logSize);
+        writeHeader();
+    }
+
+    /**
+     * Discard the index and rebuild it from the whole log
+     * @throws IOException If the log or index cannot be accessed
+     */
+    public synchronized void rebuild() throws IOException {
+        reset();
+        catchUp();
+    }
+
+    /**
+     * @return Number of entries (records and tombstones) in the index
+     */
+    public synchronized long size() {
+        return entryCount;
+    }
+
+    /**
+     * @return Changes whenever the log is replaced (e.g. compacted) and offsets taken
+     *         from the index before then no longer apply
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Find the newest entry for an e-signature, searching back from the end of the log
+     * @param signature Packed e-signature
+     * @param maxEntries Give up after checking this many entries
+     * @return The entry number, or -1 if none of the checked entries is a record with that e-signature
+     * @throws IOException If the index cannot be read
+     */
+    public synchronized long findLast(int signature, int maxEntries) throws IOException {
+        long stop = Math.max(0, entryCount - maxEntries);
+        for (long i = entryCount - 1; i >= stop; i--) {
+            ByteBuffer entry = readEntry(i);
+            if (entry.getInt(12) == signature && entry.get(20) != BinaryRecordFormat.KIND_TOMBSTONE) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Number of log bytes the index covers
+     */
+    public synchronized long coveredLength() {
+        return coveredLength;
+    }
+
+    public synchronized long offset(long index) throws IOException {
+        return readEntry(index).getLong(0);
+    }
+
+    public synchronized int length(long index) throws IOException {
+        return readEntry(index).getInt(8);
+    }
+
+    public synchronized int signature(long index) throws IOException {
+        return readEntry(index).getInt(12);
+    }
+
+    public synchronized long epochSecond(long index) throws IOException {
+        return Integer.toUnsignedLong(readEntry(index).getInt(16));
+    }
+
+    public synchronized boolean isTombstone(long index) throws IOException {
+        return readEntry(index).get(20) == BinaryRecordFormat.KIND_TOMBSTONE;
+    }
+
+    /**
+     * Replay the indexed entries in log order, like a scan of the log would. Nothing is
+     * replayed if the index does not describe the file the reader has open, e.g. when
+     * the log was compacted after the reader was opened.
+     * @param reader Reader over the log; only entries within its size are replayed
+     * @param consumer Receives each record and tombstone
+     * @return Log offset up to which entries were replayed; scan the log from there for the rest
+     * @throws IOException If the index cannot be read
+     */
+    public synchronized long replay(MappedLogReader reader, MappedLogReader.SpanConsumer consumer) throws IOException {
+        long limit = Math.min(coveredLength, reader.size());
+        long entries = entriesWithin(limit);
+        if (!agreesWith(reader, entries)) {
+            return 0;
+        }
+
+        long replayedTo = replayEntries(consumer, entries);
+        return limit == coveredLength ? coveredLength : replayedTo;
+    }
+
+    /**
+     * Replay every indexed entry in log order
+     * @param consumer Receives each record and tombstone
+     * @return Log offset the index covers
+     * @throws IOException If the index cannot be read
+     */
+    public synchronized long replay(MappedLogReader.SpanConsumer consumer) throws IOException {
+        replayEntries(consumer, entryCount);
+        return coveredLength;
+    }
+
+    /**
+     * Receives indexed entries, newest first, until it returns false
+     */
+    public interface EntryVisitor {
+        boolean visit(long offset, int length, int signature, long epochSecond, boolean tombstone) throws IOException;
+    }
+
+    /**
+     * Walk the indexed entries from the newest back, reading the index in batches
+     * @param visitor Receives each entry; returning false stops the walk
+     * @throws IOException If the index cannot be read, or the visitor fails
+     */
+    public synchronized void walkBackwards(EntryVisitor visitor) throws IOException {
+        ByteBuffer batch = ByteBuffer.allocate(BATCH_ENTRIES * ENTRY_SIZE);
+        for (long end = entryCount; end > 0; end -= BATCH_ENTRIES) {
+            long first = Math.max(0, end - BATCH_ENTRIES);
+            int count = (int) (end - first);
+            batch.clear().limit(count * ENTRY_SIZE);
+            readFully(batch, HEADER_SIZE + first * ENTRY_SIZE);
+            for (int i = count - 1; i >= 0; i--) {
+                int at = i * ENTRY_SIZE;
+                if (!visitor.visit(batch.getLong(at), batch.getInt(at + 8), batch.getInt(at + 12),
+                        Integer.toUnsignedLong(batch.getInt(at + 16)),
+                        batch.get(at + 20) == BinaryRecordFormat.KIND_TOMBSTONE)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Read and validate the header
+     * @return false if the index is missing, corrupt or of another version
+     */
+    private boolean load() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || Short.toUnsignedInt(header.getShort()) != VERSION) {
+            return false;
+        }
+        header.getShort();
+        long covered = header.getLong();
+        long count = header.getLong();
+        if (covered < 0 || count < 0 || fileSize < HEADER_SIZE + count * ENTRY_SIZE) {
+            return false;
+        }
+        coveredLength = covered;
+        entryCount = count;
+        return true;
+    }
+
+    /**
+     * Check that the last indexed entry still describes the same bytes of the log,
+     * which catches a log that was replaced by one of equal or greater size
+     */
+    private boolean lastEntryMatches() throws IOException {
+        if (entryCount == 0) {
+            return true;
+        }
+        try (MappedLogReader reader = new MappedLogReader(log, MappedLogReader.DEFAULT_WINDOW, coveredLength)) {
+            return agreesWith(reader, entryCount);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Spot-check the last record among the first entries against the log the reader has open
+     * @param entries Number of leading entries that must match
+     * @return true if that record decodes to the indexed e-signature, or there is no record to check
+     */
+    private boolean agreesWith(MappedLogReader reader, long entries) throws IOException {
+        for (long i = entries - 1; i >= 0; i--) {
+            ByteBuffer entry = readEntry(i);
+            if (entry.get(20) == BinaryRecordFormat.KIND_TOMBSTONE) {
+                continue;
+            }
+            int signature = entry.getInt(12);
+            try {
+                return reader.decodeRecord(entry.getLong(0), entry.getInt(8)).getSignature() == signature;
+            } catch (IOException | RuntimeException ex) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Number of leading entries that end within the first limit bytes of the log
+     */
+    private long entriesWithin(long limit) throws IOException {
+        long low = 0;
+        long high = entryCount;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            ByteBuffer entry = readEntry(mid);
+            if (entry.getLong(0) + entry.getInt(8) <= limit) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long replayEntries(MappedLogReader.SpanConsumer consumer, long entries) throws IOException {
+        ByteBuffer batch = ByteBuffer.allocate(BATCH_ENTRIES * ENTRY_SIZE);
+        long replayedTo = 0;
+        for (long first = 0; first < entries; first += BATCH_ENTRIES) {
+            int count = (int) Math.min(BATCH_ENTRIES, entries - first);
+            batch.clear().limit(count * ENTRY_SIZE);
+            readFully(batch, HEADER_SIZE + first * ENTRY_SIZE);
+            for (int i = 0; i < count; i++) {
+                int at = i * ENTRY_SIZE;
+                long offset = batch.getLong(at);
+                int length = batch.getInt(at + 8);
+                int signature = batch.getInt(at + 12);
+                if (batch.get(at + 20) == BinaryRecordFormat.KIND_TOMBSTONE) {
+                    consumer.tombstone(offset, length, signature);
+                } else {
+                    consumer.record(offset, length, signature);
+                }
+                replayedTo = offset + length;
+            }
+        }
+        return replayedTo;
+    }
+
+    private void reset() throws IOException {
+        generation++;
+        truncate(HEADER_SIZE);
+        coveredLength = 0;
+        entryCount = 0;
+        writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).putShort((short) VERSION).putShort((short) 0)
+            .putLong(coveredLength).putLong(entryCount).putLong(0);
+        header.flip();
+        writeFully(header, 0);
+    }
+
+    private void flushEntries(ByteBuffer batch, long firstEntry) throws IOException {
+        batch.flip();
+        writeFully(batch, HEADER_SIZE + firstEntry * ENTRY_SIZE);
+        batch.clear();
+    }
+
+    private ByteBuffer readEntry(long index) throws IOException {
+        if (index < 0 || index >= entryCount) {
+            throw new IndexOutOfBoundsException("Entry " + index + " of " + entryCount);
+        }
+        entry.clear();
+        readFully(entry, HEADER_SIZE + index * ENTRY_SIZE);
+        entry.flip();
+        return entry;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        if (channel == null) {
+            if (position + buffer.remaining() > memory.limit()) {
+                throw new IOException("Attendance index " + indexFile + " is truncated");
+            }
+            ByteBuffer source = memory.duplicate();
+            source.position((int) position).limit((int) position + buffer.remaining());
+            buffer.put(source);
+            return;
+        }
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Attendance index " + indexFile + " is truncated");
+            }
+            position += read;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        if (channel == null) {
+            int end = (int) position + buffer.remaining();
+            if (end > memory.capacity()) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(end, memory.capacity() * 2));
+                grown.put(memory.duplicate()).flip();
+                memory = grown;
+            }
+            memory.limit(Math.max(memory.limit(), end));
+            ByteBuffer target = memory.duplicate();
+            target.position((int) position);
+            target.put(buffer);
+            return;
+        }
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void truncate(long size) throws IOException {
+        if (channel == null) {
+            memory.limit((int) Math.min(memory.limit(), size));
+        } else {
+            channel.truncate(size);
+        }
+    }
+
+    /**
+     * Binary entries are back to back, so the last indexed one ends where the complete
+     * entries do; a record cut short after it is indexed once it is complete
+     */
+    private long binaryEntryEnd(long logSize) throws IOException {
+        if (entryCount == 0) {
+            return Math.min(logSize, BinaryRecordFormat.HEADER_SIZE);
+        }
+        ByteBuffer last = readEntry(entryCount - 1);
+        return last.getLong(0) + last.getInt(8);
+    }
+
+    /**
+     * In a text log an entry only counts as indexed once its separator line is written;
+     * a trailing entry without one is left outside the covered range so it is rescanned.
+     */
+    private long trimToEntryEnd(long logSize) throws IOException {
+        if (entryCount == 0) {
+            return logSize;
+        }
+        ByteBuffer last = readEntry(entryCount - 1);
+        long lastEnd = last.getLong(0) + last.getInt(8);
+        int lineEnd = TextRecordFormat.lineEnd().length;
+        if (logSize - lastEnd < lineEnd) {
+            removeLastEntry();
+            return last.getLong(0);
+        }
+        return logSize;
+    }
+
+    private void removeLastEntry() throws IOException {
+        entryCount--;
+        truncate(HEADER_SIZE + entryCount * ENTRY_SIZE);
+    }
+}
@@ -0,0 +1,421 @@
+import javax.swing.SwingUtilities;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Attendance Log Tail
+ * Follows the attendance log for an open list window, so records saved by other
+ * stations show up without a Refresh. A {@link WatchService} on the log's directory
+ * wakes the tail when the log changes; the log is also checked every
+ * -Dattendance.tailPollMs milliseconds (default 1000), which is all there is where
+ * the file system has no change notification. Only the bytes appended after the
+ * last offset read are scanned, and only up to the last complete entry. When the log
+ * shrinks or is replaced (compaction, rollover) the listener is told to reload it.
+ */
+public class AttendanceLogTail implements Closeable {
+
+    /**
+     * Receives what the tail finds, on the EDT
+     */
+    public interface Listener {
+        /**
+         * Entries were appended to the log
+         * @param reader Reader over the log up to the end of the new entries; the listener owns it
+         * @param records Spans of the new records, in file order
+         * @param decoded The new records, null where one cannot be decoded
+         * @param deleted Signatures of the new tombstones
+         */
+        void appended(MappedLogReader reader, RecordSpans records, List<AttendanceRecord> decoded, IntHashSet deleted);
+
+        /**
+         * The log shrank or was replaced; following stops until {@link #follow} is called again
+         */
+        void replaced();
+    }
+
+    private static final long POLL_MILLIS = Long.getLong("attendance.tailPollMs", 1000L);
+
+    // Last bytes of a complete text entry: the separator's last "─" and a newline
+    private static final byte[] ENTRY_END = {(byte) 0xE2, (byte) 0x94, (byte) 0x80, '\n'};
+    private static final int BACKWARD_CHUNK = 4096;
+    private static final int FORWARD_CHUNK = 64 * 1024;
+
+    private final Path file;
+    private final Listener listener;
+    private final Semaphore signals = new Semaphore(0);
+    private final WatchService watcher;
+    private final Thread tailThread;
+    private final Thread watchThread;
+    private volatile boolean closed;
+
+    // Where the next read starts, or -1 while paused; guarded by this
+    private long position = -1;
+    private Object fileKey;
+    // Bumped by follow and pause, so reads started before them are dropped
+    private long session;
+
+    /**
+     * Start watching; nothing is read until {@link #follow} gives a starting offset
+     * @param file The attendance log
+     * @param listener Receives new entries and replacements on the EDT
+     */
+    public AttendanceLogTail(Path file, Listener listener) {
+        this.file = file.toAbsolutePath();
+        this.listener = listener;
+        this.watcher = newWatcher(this.file);
+        this.tailThread = new Thread(this::tailLoop, "attendance-tail");
+        this.tailThread.setDaemon(true);
+        this.tailThread.start();
+        if (watcher != null) {
+            this.watchThread = new Thread(this::watchLoop, "attendance-tail-watch");
+            this.watchThread.setDaemon(true);
+            this.watchThread.start();
+        } else {
+            this.watchThread = null;
+        }
+    }
+
+    /**
+     * @return true if changes are noticed through the WatchService, false if only polled
+     */
+    public boolean isWatching() {
+        return watcher != null;
+    }
+
+    /**
+     * Follow the log from an offset, e.g. the end of what a list window just loaded
+     * @param offset Offset of the first entry not yet shown
+     */
+    public synchronized void follow(long offset) {
+        session++;
+        position = offset;
+        fileKey = currentFileKey();
+        signals.release();
+    }
+
+    /**
+     * Follow the log from the end of its last complete entry
+     */
+    public void followEnd() {
+        long end;
+        try {
+            long size = Files.size(file);
+            long from;
+            synchronized (this) {
+                // Where this tail got to is an entry boundary, so a binary log is walked from there
+                from = position >= 0 && position <= size ? position : 0;
+            }
+            end = completeEnd(file, from, size);
+        } catch (IOException ex) {
+            end = 0;
+        }
+        follow(end);
+    }
+
+    /**
+     * Stop reading, e.g. while the list window reloads the log
+     */
+    public synchronized void pause() {
+        session++;
+        position = -1;
+    }
+
+    /**
+     * Check the log now, e.g. right after this process saved a record
+     */
+    public void wake() {
+        signals.release();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        pause();
+        signals.release();
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException ex) {
+                System.err.println("Error closing attendance log watcher: " + ex.getMessage());
+            }
+        }
+    }
+
+    private static WatchService newWatcher(Path file) {
+        WatchService watcher = null;
+        try {
+            watcher = file.getFileSystem().newWatchService();
+            file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            return watcher;
+        } catch (IOException | UnsupportedOperationException ex) {
+            // Polling only
+            if (watcher != null) {
+                try {
+                    watcher.close();
+                } catch (IOException closeEx) {
+                    // Not in use
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Turn change events for the log into signals for the tail thread
+     */
+    private void watchLoop() {
+        Path name = file.getFileName();
+        try {
+            while (!closed) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context());
+                }
+                if (changed) {
+                    signals.release();
+                }
+                if (!key.reset()) {
+                    // The directory is gone; polling still notices if it comes back
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException ex) {
+            // Closed
+        }
+    }
+
+    private void tailLoop() {
+        while (!closed) {
+            try {
+                signals.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                signals.drainPermits();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            if (!closed) {
+                check();
+            }
+        }
+    }
+
+    /**
+     * Read what was appended since the last check, or report a replaced log
+     */
+    private void check() {
+        long from;
+        Object key;
+        long readSession;
+        synchronized (this) {
+            if (position < 0) {
+                return;
+            }
+            from = position;
+            key = fileKey;
+            readSession = session;
+        }
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            if (from > 0) {
+                replaced(readSession);
+            }
+            return;
+        } catch (IOException ex) {
+            return;
+        }
+        if (attributes.size() < from
+                || (key != null && attributes.fileKey() != null && !key.equals(attributes.fileKey()))) {
+            replaced(readSession);
+            return;
+        }
+        if (key == null && attributes.fileKey() != null) {
+            // The log did not exist yet when following started
+            synchronized (this) {
+                if (session == readSession) {
+                    fileKey = attributes.fileKey();
+                }
+            }
+        }
+        if (attributes.size() == from) {
+            return;
+        }
+
+        MappedLogReader reader = null;
+        try {
+            long end = completeEnd(file, from, attributes.size());
+            if (end <= from) {
+                return;
+            }
+            reader = new MappedLogReader(file, MappedLogReader.DEFAULT_WINDOW, end);
+            RecordSpans records = new RecordSpans();
+            IntHashSet deleted = new IntHashSet();
+            reader.scan(new MappedLogReader.SpanConsumer() {
+                @Override
+                public void record(long offset, int length, int signature) {
+                    records.add(offset, length, signature);
+                }
+
+                @Override
+                public void tombstone(long offset, int length, int signature) {
+                    deleted.add(signature);
+                }
+            }, from);
+            List<AttendanceRecord> decoded = new ArrayList<>(records.size());
+            for (int i = 0; i < records.size(); i++) {
+                try {
+                    decoded.add(reader.decodeRecord(records.offset(i), records.length(i)));
+                } catch (IOException | RuntimeException ex) {
+                    // Not an attendance record we can read, e.g. a hand-edited line
+                    decoded.add(null);
+                }
+            }
+
+            synchronized (this) {
+                if (session != readSession) {
+                    reader.close();
+                    return;
+                }
+                position = end;
+            }
+            if (records.size() == 0 && deleted.isEmpty()) {
+                // E.g. only the header of a new binary log
+                return;
+            }
+            MappedLogReader appended = reader;
+            reader = null;
+            SwingUtilities.invokeLater(() -> {
+                if (isCurrent(readSession)) {
+                    listener.appended(appended, records, decoded, deleted);
+                } else {
+                    closeQuietly(appended);
+                }
+            });
+        } catch (IOException ex) {
+            // Left as it is; the next check tries again once more has been written
+            System.err.println("Error following attendance records: " + ex.getMessage());
+        } finally {
+            if (reader != null) {
+                closeQuietly(reader);
+            }
+        }
+    }
+
+    private void replaced(long readSession) {
+        synchronized (this) {
+            if (session != readSession) {
+                return;
+            }
+            position = -1;
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (!closed) {
+                listener.replaced();
+            }
+        });
+    }
+
+    private synchronized boolean isCurrent(long readSession) {
+        return !closed && session == readSession;
+    }
+
+    /**
+     * Find where the last complete entry in [from, size) ends, so an entry another
+     * process is still writing is left for the next check
+     * @param file The attendance log
+     * @param from An entry boundary, e.g. 0 or the end of what was already read
+     * @param size Size of the log
+     * @return End of the last complete entry, or from if there is none
+     * @throws IOException If the log cannot be read
+     */
+    static long completeEnd(Path file, long from, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (BinaryRecordFormat.isBinary(file)) {
+                // Walk the length prefixes, a chunk of entries per read
+                long at = Math.max(from, BinaryRecordFormat.HEADER_SIZE);
+                ByteBuffer chunk = ByteBuffer.allocate(FORWARD_CHUNK);
+                while (at + 2 <= size) {
+                    long chunkStart = at;
+                    chunk.clear().limit((int) Math.min(FORWARD_CHUNK, size - chunkStart));
+                    readFully(channel, chunk, chunkStart);
+                    while (at + 2 <= chunkStart + chunk.limit()) {
+                        long next = at + 2 + Short.toUnsignedInt(chunk.getShort((int) (at - chunkStart)));
+                        if (next > size) {
+                            return at;
+                        }
+                        at = next;
+                    }
+                }
+                return Math.min(at, size);
+            }
+
+            // Search backwards for the end of a separator line
+            ByteBuffer chunk = ByteBuffer.allocate(BACKWARD_CHUNK + ENTRY_END.length);
+            long chunkEnd = size;
+            while (chunkEnd > from) {
+                long chunkStart = Math.max(from, chunkEnd - BACKWARD_CHUNK);
+                chunk.clear().limit((int) (Math.min(size, chunkEnd + ENTRY_END.length - 1) - chunkStart));
+                readFully(channel, chunk, chunkStart);
+                for (int i = chunk.limit() - ENTRY_END.length; i >= 0; i--) {
+                    if (matchesEntryEnd(chunk, i)) {
+                        return chunkStart + i + ENTRY_END.length;
+                    }
+                }
+                chunkEnd = chunkStart;
+            }
+            return from;
+        }
+    }
+
+    private static boolean matchesEntryEnd(ByteBuffer chunk, int at) {
+        for (int i = 0; i < ENTRY_END.length; i++) {
+            if (chunk.get(at + i) != ENTRY_END[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Attendance log shrank while it was read");
+            }
+        }
+    }
+
+    private Object currentFileKey() {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(MappedLogReader reader) {
+        try {
+            reader.close();
+        } catch (IOException ex) {
+            System.err.println("Error closing attendance records: " + ex.getMessage());
+        }
+    }
+}
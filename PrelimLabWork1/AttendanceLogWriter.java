@@ -0,0 +1,333 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Attendance Log Writer
+ * Single background thread that owns the attendance log file. Records queued by the
+ * UI are grouped into one buffered write per flush window instead of one
+ * open/write/close cycle per record, and each record's future completes only once
+ * it meets the configured {@link DurabilityMode}.
+ */
+public class AttendanceLogWriter {
+
+    /**
+     * Work that needs the log file to itself, such as compaction. Runs on the writer
+     * thread, in order with the appends queued before it.
+     */
+    public interface LogTask {
+        void run(Path file, DurabilityMode durability) throws IOException;
+    }
+
+    private final Path file;
+    private final DurabilityMode durability;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int maxBatchSize;
+    private final long maxLatencyNanos;
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    // Set by the writer thread before it fails what is left in the queue and exits
+    private volatile boolean stopped;
+
+    // Counters for comparing durability modes
+    private final AtomicLong recordsWritten = new AtomicLong();
+    private final AtomicLong syncCount = new AtomicLong();
+
+    // Kept open between batches, reopened after a task
+    private FileChannel channel;
+
+    // Runs after every write to the file, e.g. to keep the offset index current
+    private volatile LogTask afterWrite;
+
+    /**
+     * Create the writer and start its background thread
+     * @param fileName The attendance log to append to
+     * @param durability When a queued record counts as saved
+     * @param queueCapacity Maximum number of records waiting to be written
+     * @param maxBatchSize Maximum number of records grouped into one write
+     * @param maxLatencyMillis Longest time a record waits for more records to join its batch
+     */
+    public AttendanceLogWriter(String fileName, DurabilityMode durability,
+                               int queueCapacity, int maxBatchSize, long maxLatencyMillis) {
+        if (queueCapacity < 1 || maxBatchSize < 1 || maxLatencyMillis < 0) {
+            throw new IllegalArgumentException("Invalid writer configuration");
+        }
+        this.file = Paths.get(fileName);
+        this.durability = durability;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        this.writerThread = new Thread(this::runLoop, "attendance-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queue a record to be appended to the log. Blocks only when the queue is full.
+     * @param bytes The encoded record, including its separator line for the text format
+     * @return Completes once the record meets the durability mode, or fails with the IOException;
+     *         an {@link UnconfirmedWriteException} if it was written but the force failed
+     */
+    public CompletableFuture<Void> append(byte[] bytes) {
+        return enqueue(new PendingWrite(bytes, null));
+    }
+
+    /**
+     * Queue a task that runs with exclusive access to the log file
+     * @param task The task, e.g. a compaction that replaces the file
+     * @return Completes when the task finishes, or fails with its IOException
+     */
+    public CompletableFuture<Void> runTask(LogTask task) {
+        return enqueue(new PendingWrite(null, task));
+    }
+
+    /**
+     * Stop accepting records, write everything still queued and close the file
+     */
+    public void close() {
+        closed = true;
+        try {
+            writerThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Set work to run on the writer thread after each batch of appends and each task,
+     * before their futures complete. Its failures are reported but do not fail the writes.
+     * @param afterWrite The hook, or null for none
+     */
+    public void setAfterWrite(LogTask afterWrite) {
+        this.afterWrite = afterWrite;
+    }
+
+    public DurabilityMode getDurability() {
+        return durability;
+    }
+
+    public long getRecordsWritten() {
+        return recordsWritten.get();
+    }
+
+    public long getSyncCount() {
+        return syncCount.get();
+    }
+
+    /**
+     * Queue a write unless the writer is closed. A close can slip in between the check
+     * and the put, so a write queued after the writer thread stopped is failed here.
+     */
+    private CompletableFuture<Void> enqueue(PendingWrite write) {
+        if (closed) {
+            write.result.completeExceptionally(new IllegalStateException("Attendance log writer is closed"));
+            return write.result;
+        }
+        try {
+            // Wait for room, but not for a writer thread that has stopped taking records
+            while (!queue.offer(write, 100, TimeUnit.MILLISECONDS)) {
+                if (stopped) {
+                    write.result.completeExceptionally(new IllegalStateException("Attendance log writer is closed"));
+                    return write.result;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            write.result.completeExceptionally(ex);
+            return write.result;
+        }
+        if (stopped) {
+            failQueued(new IOException("Attendance log writer stopped"));
+        }
+        return write.result;
+    }
+
+    /**
+     * Writer thread: wait for a first record, collect more until the batch is full
+     * or the latency window ends, then write the batch in one call
+     */
+    private void runLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxLatencyNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = remaining > 0
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                writeBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped = true;
+            closeChannel();
+            IOException closedError = new IOException("Attendance log writer stopped");
+            for (PendingWrite write : batch) {
+                write.result.completeExceptionally(closedError);
+            }
+            failQueued(closedError);
+        }
+    }
+
+    /**
+     * Fail every write still in the queue once the writer thread has stopped
+     */
+    private void failQueued(IOException closedError) {
+        PendingWrite left;
+        while ((left = queue.poll()) != null) {
+            left.result.completeExceptionally(closedError);
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        List<PendingWrite> appends = new ArrayList<>(batch.size());
+        for (PendingWrite write : batch) {
+            if (write.task != null) {
+                flushAppends(appends);
+                runTask(write);
+            } else if (durability == DurabilityMode.PER_RECORD) {
+                appends.add(write);
+                flushAppends(appends);
+            } else {
+                appends.add(write);
+            }
+        }
+        flushAppends(appends);
+    }
+
+    /**
+     * Write the pending appends in one call, force them if the mode asks for it,
+     * then complete their futures
+     */
+    private void flushAppends(List<PendingWrite> appends) {
+        if (appends.isEmpty()) {
+            return;
+        }
+        int size = 0;
+        for (PendingWrite write : appends) {
+            size += write.bytes.length;
+        }
+        ByteBuffer pending = ByteBuffer.allocate(size);
+        for (PendingWrite write : appends) {
+            pending.put(write.bytes);
+        }
+        pending.flip();
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            writeFully(channel, pending);
+        } catch (IOException ex) {
+            System.err.println("Error saving to file: " + ex.getMessage());
+            closeChannel();
+            for (PendingWrite write : appends) {
+                write.result.completeExceptionally(ex);
+            }
+            appends.clear();
+            return;
+        }
+
+        // The records are in the log now; a failed force leaves them unconfirmed, not lost
+        IOException unconfirmed = null;
+        if (durability != DurabilityMode.NONE) {
+            try {
+                channel.force(false);
+                syncCount.incrementAndGet();
+            } catch (IOException ex) {
+                System.err.println("Error syncing file: " + ex.getMessage());
+                closeChannel();
+                unconfirmed = new UnconfirmedWriteException(ex);
+            }
+        }
+        recordsWritten.addAndGet(appends.size());
+        runAfterWrite();
+        for (PendingWrite write : appends) {
+            if (unconfirmed == null) {
+                write.result.complete(null);
+            } else {
+                write.result.completeExceptionally(unconfirmed);
+            }
+        }
+        appends.clear();
+    }
+
+    private void runTask(PendingWrite write) {
+        closeChannel();
+        try {
+            write.task.run(file, durability);
+            runAfterWrite();
+            write.result.complete(null);
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Error updating file: " + ex.getMessage());
+            write.result.completeExceptionally(ex);
+        }
+    }
+
+    private void runAfterWrite() {
+        LogTask hook = afterWrite;
+        if (hook == null) {
+            return;
+        }
+        try {
+            hook.run(file, durability);
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Error after writing file: " + ex.getMessage());
+        }
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                System.err.println("Error closing file: " + ex.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * One queued write: an append, or a task that needs the whole file
+     */
+    private static class PendingWrite {
+        final byte[] bytes;
+        final LogTask task;
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        PendingWrite(byte[] bytes, LogTask task) {
+            this.bytes = bytes;
+            this.task = task;
+        }
+    }
+}
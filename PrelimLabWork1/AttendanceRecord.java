@@ -0,0 +1,143 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Attendance Record
+ * One check-in, held in the same compact form the binary log stores it:
+ * course as an enum, time as epoch seconds and signature as a packed int.
+ */
+public final class AttendanceRecord {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final String name;
+    private final Course course;
+    private final int year;
+    private final long epochSecond;
+    private final int signature;
+
+    /**
+     * @param name Student name
+     * @param course Course code
+     * @param year Year level (1-4)
+     * @param epochSecond Time In as local wall-clock seconds since the epoch (no time zone)
+     * @param signature E-signature as the int value of its 8 hex digits
+     */
+    public AttendanceRecord(String name, Course course, int year, long epochSecond, int signature) {
+        if (year < 1 || year > Course.YEARS) {
+            throw new IllegalArgumentException("Invalid year level: " + year);
+        }
+        this.name = name;
+        this.course = course;
+        this.year = year;
+        this.epochSecond = epochSecond;
+        this.signature = signature;
+    }
+
+    /**
+     * Build a record from the values shown on the tracker form
+     * @param name Student name
+     * @param courseYear Course and year, e.g. "BSIT-1"
+     * @param timeIn Time In as "yyyy-MM-dd HH:mm:ss"
+     * @param signature E-signature as 8 hex digits
+     * @return The record
+     */
+    public static AttendanceRecord of(String name, String courseYear, String timeIn, String signature) {
+        int dash = courseYear.lastIndexOf('-');
+        if (dash < 0) {
+            throw new IllegalArgumentException("Invalid course/year: " + courseYear);
+        }
+        Course course = Course.fromCode(courseYear.substring(0, dash));
+        int year = Integer.parseInt(courseYear.substring(dash + 1).trim());
+        long epochSecond = LocalDateTime.parse(timeIn.trim(), TIME_FORMAT).toEpochSecond(ZoneOffset.UTC);
+        return new AttendanceRecord(name, course, year, epochSecond, parseSignature(signature));
+    }
+
+    /**
+     * Parse one record line of the text log
+     * ("Name: %s | Course: %s | Time: %s | Signature: %s")
+     * @param line The record line, without its separator
+     * @return The record
+     */
+    public static AttendanceRecord parse(String line) {
+        int courseAt = line.lastIndexOf(" | Course: ");
+        int timeAt = line.lastIndexOf(" | Time: ");
+        int sigAt = line.lastIndexOf(" | Signature: ");
+        if (!line.startsWith("Name: ") || courseAt < 0 || timeAt < courseAt || sigAt < timeAt) {
+            throw new IllegalArgumentException("Not an attendance record: " + line);
+        }
+        return of(
+            line.substring("Name: ".length(), courseAt),
+            line.substring(courseAt + " | Course: ".length(), timeAt),
+            line.substring(timeAt + " | Time: ".length(), sigAt),
+            line.substring(sigAt + " | Signature: ".length()).trim()
+        );
+    }
+
+    /**
+     * Convert an 8 hex digit e-signature to its packed int value
+     * @param signature The e-signature text
+     * @return The packed signature
+     */
+    public static int parseSignature(String signature) {
+        String hex = signature.trim();
+        if (hex.isEmpty() || hex.length() > 8) {
+            throw new IllegalArgumentException("Invalid e-signature: " + signature);
+        }
+        return Integer.parseUnsignedInt(hex, 16);
+    }
+
+    /**
+     * Format a packed e-signature back to its 8 hex digit text
+     * @param signature The packed signature
+     * @return The e-signature text
+     */
+    public static String formatSignature(int signature) {
+        return String.format("%08X", signature);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Course getCourse() {
+        return course;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+
+    public int getSignature() {
+        return signature;
+    }
+
+    public String getCourseYear() {
+        return course.name() + "-" + year;
+    }
+
+    public String getTimeIn() {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC).format(TIME_FORMAT);
+    }
+
+    /**
+     * Format the record as a line of the text log, without the trailing newline
+     * @return The record line
+     */
+    public String toText() {
+        return String.format(
+            "Name: %s | Course: %s | Time: %s | Signature: %s",
+            name, getCourseYear(), getTimeIn(), formatSignature(signature)
+        );
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+}
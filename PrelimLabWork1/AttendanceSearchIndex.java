@@ -0,0 +1,432 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Attendance Search Index
+ * In-memory indexes over the records shown in an Attendance List window, built while
+ * the list loads and updated as records are submitted and deleted:
+ *   - e-signature -> record (hash index)
+ *   - name trigrams, plus the first one or two letters of each name word -> records
+ *   - course and year bucket (BSIT-1 .. BSCPE-4) -> records
+ * Records are numbered in the order they are added, so every posting list is sorted
+ * and a search returns records in log order.
+ *
+ * A query is split on whitespace. A token like "BSIT-2" or "BSCS" filters by course,
+ * a token of 8 hex digits by e-signature, and any other token must appear in the name
+ * (case-insensitive; tokens of one or two letters must start a word of the name).
+ */
+public class AttendanceSearchIndex {
+
+    private static final int BUCKETS = Course.values().length * Course.YEARS;
+    private static final char BOUNDARY = 0;
+
+    // Per record, indexed by record number
+    private long[] offsets = new long[1024];
+    private int[] lengths = new int[1024];
+    private int[] signatures = new int[1024];
+    private byte[] buckets = new byte[1024];
+    private boolean[] deleted = new boolean[1024];
+    private int[] nameStarts = new int[1025];
+    private int count;
+    private int live;
+
+    // Lower-cased names of all records, back to back
+    private char[] names = new char[16 * 1024];
+
+    private final IntIntHashMap bySignature = new IntIntHashMap(1024);
+    private final IntList[] byBucket = new IntList[BUCKETS];
+    private final IntIntHashMap trigramLists = new IntIntHashMap(4096);
+    private IntList[] postings = new IntList[256];
+    private int postingCount;
+
+    public AttendanceSearchIndex() {
+        for (int i = 0; i < BUCKETS; i++) {
+            byBucket[i] = new IntList(256);
+        }
+    }
+
+    /**
+     * Index one record
+     * @param offset Byte offset of the record in the log
+     * @param length Length of the record in bytes
+     * @param record The decoded record
+     */
+    public synchronized void add(long offset, int length, AttendanceRecord record) {
+        if (count == offsets.length) {
+            int capacity = offsets.length + (offsets.length >> 1);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            signatures = Arrays.copyOf(signatures, capacity);
+            buckets = Arrays.copyOf(buckets, capacity);
+            deleted = Arrays.copyOf(deleted, capacity);
+            nameStarts = Arrays.copyOf(nameStarts, capacity + 1);
+        }
+        int id = count++;
+        live++;
+        offsets[id] = offset;
+        lengths[id] = length;
+        signatures[id] = record.getSignature();
+        int bucket = bucketOf(record.getCourse(), record.getYear());
+        buckets[id] = (byte) bucket;
+        deleted[id] = false;
+
+        // A repeated e-signature points at its latest record
+        bySignature.put(record.getSignature(), id);
+        byBucket[bucket].add(id);
+
+        String name = record.getName().toLowerCase(Locale.ROOT);
+        int start = nameStarts[id];
+        if (start + name.length() > names.length) {
+            names = Arrays.copyOf(names, Math.max(names.length * 2, start + name.length()));
+        }
+        name.getChars(0, name.length(), names, start);
+        nameStarts[id + 1] = start + name.length();
+        indexName(id, name);
+    }
+
+    /**
+     * Drop a deleted record from search results
+     * @param signature Packed e-signature of the deleted record
+     * @return true if a record with that e-signature was indexed
+     */
+    public synchronized boolean remove(int signature) {
+        int id = bySignature.get(signature, -1);
+        if (id < 0) {
+            return false;
+        }
+        bySignature.remove(signature);
+        if (!deleted[id]) {
+            deleted[id] = true;
+            live--;
+        }
+        return true;
+    }
+
+    /**
+     * Drop every deleted record found by a scan
+     * @param signatures Packed e-signatures of the deleted records
+     */
+    public synchronized void removeAll(IntHashSet signatures) {
+        for (int id = 0; id < count; id++) {
+            if (!deleted[id] && signatures.contains(this.signatures[id])) {
+                deleted[id] = true;
+                live--;
+                bySignature.remove(this.signatures[id]);
+            }
+        }
+    }
+
+    /**
+     * @return Number of records that have not been deleted
+     */
+    public synchronized int size() {
+        return live;
+    }
+
+    /**
+     * Find the records matching a query
+     * @param query Search text, e.g. "juan BSIT-2"
+     * @return Offset, length and e-signature of each match, in log order
+     */
+    public synchronized RecordSpans search(String query) {
+        Query parsed = Query.parse(query);
+        RecordSpans result = new RecordSpans(64);
+        if (parsed.empty) {
+            return result;
+        }
+
+        // Start from the smallest candidate list the query allows, then check the rest
+        if (parsed.hasSignature) {
+            int id = bySignature.get(parsed.signature, -1);
+            if (id >= 0 && matches(id, parsed)) {
+                result.add(offsets[id], lengths[id], signatures[id]);
+            }
+            return result;
+        }
+        if (!parsed.terms.isEmpty()) {
+            int[] candidates = intersectPostings(parsed);
+            for (int id : candidates) {
+                if (matches(id, parsed)) {
+                    result.add(offsets[id], lengths[id], signatures[id]);
+                }
+            }
+            return result;
+        }
+        for (int id : mergeBuckets(parsed.bucketMask)) {
+            if (!deleted[id]) {
+                result.add(offsets[id], lengths[id], signatures[id]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Bucket number of a course and year, as in the binary log's course/year byte
+     */
+    static int bucketOf(Course course, int year) {
+        return course.ordinal() * Course.YEARS + year - 1;
+    }
+
+    private boolean matches(int id, Query query) {
+        if (deleted[id] || (query.bucketMask & (1 << buckets[id])) == 0) {
+            return false;
+        }
+        for (String term : query.terms) {
+            if (!nameContains(id, term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One or two letter terms must start a word of the name; longer ones may appear anywhere
+     */
+    private boolean nameContains(int id, String term) {
+        int start = nameStarts[id];
+        int end = nameStarts[id + 1];
+        int length = term.length();
+        for (int i = start; i + length <= end; i++) {
+            if (length < 3 && i > start && names[i - 1] != ' ') {
+                continue;
+            }
+            int j = 0;
+            while (j < length && names[i + j] == term.charAt(j)) {
+                j++;
+            }
+            if (j == length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Intersect the posting lists of every term's trigrams (and of a single course/year
+     * bucket), smallest first
+     * @return Records containing all the trigrams; still to be checked against the names
+     */
+    private int[] intersectPostings(Query query) {
+        java.util.List<IntList> lists = new java.util.ArrayList<>();
+        if (Integer.bitCount(query.bucketMask) == 1) {
+            lists.add(byBucket[Integer.numberOfTrailingZeros(query.bucketMask)]);
+        }
+        for (String term : query.terms) {
+            if (term.length() == 1) {
+                lists.add(posting(trigram(BOUNDARY, BOUNDARY, term.charAt(0))));
+            } else if (term.length() == 2) {
+                lists.add(posting(trigram(BOUNDARY, term.charAt(0), term.charAt(1))));
+            } else {
+                for (int i = 0; i + 3 <= term.length(); i++) {
+                    lists.add(posting(trigram(term.charAt(i), term.charAt(i + 1), term.charAt(i + 2))));
+                }
+            }
+        }
+        if (lists.contains(null)) {
+            return new int[0];
+        }
+        lists.sort(java.util.Comparator.comparingInt(IntList::size));
+
+        int[] candidates = lists.get(0).toArray();
+        int size = candidates.length;
+        for (int l = 1; l < lists.size() && size > 0; l++) {
+            IntList list = lists.get(l);
+            int kept = 0;
+            int at = 0;
+            for (int i = 0; i < size; i++) {
+                at = seek(list, candidates[i], at);
+                if (at == list.size()) {
+                    break;
+                }
+                if (list.get(at) == candidates[i]) {
+                    candidates[kept++] = candidates[i];
+                }
+            }
+            size = kept;
+        }
+        return Arrays.copyOf(candidates, size);
+    }
+
+    /**
+     * Galloping search in a sorted posting list
+     * @return Index of the first value at or after from that is not less than target
+     */
+    private static int seek(IntList list, int target, int from) {
+        int size = list.size();
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < size && list.get(high) < target) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        high = Math.min(high, size);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list.get(mid) < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private IntList posting(int key) {
+        int list = trigramLists.get(key, -1);
+        return list < 0 ? null : postings[list];
+    }
+
+    /**
+     * Add a record to the posting lists of its name's trigrams and word starts
+     */
+    private void indexName(int id, String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (i == 0 || name.charAt(i - 1) == ' ') {
+                char c = name.charAt(i);
+                if (c == ' ') {
+                    continue;
+                }
+                addPosting(trigram(BOUNDARY, BOUNDARY, c), id);
+                if (i + 1 < name.length() && name.charAt(i + 1) != ' ') {
+                    addPosting(trigram(BOUNDARY, c, name.charAt(i + 1)), id);
+                }
+            }
+            if (i + 3 <= name.length()) {
+                addPosting(trigram(name.charAt(i), name.charAt(i + 1), name.charAt(i + 2)), id);
+            }
+        }
+    }
+
+    private void addPosting(int key, int id) {
+        int list = trigramLists.get(key, -1);
+        if (list < 0) {
+            if (postingCount == postings.length) {
+                postings = Arrays.copyOf(postings, postings.length * 2);
+            }
+            list = postingCount++;
+            postings[list] = new IntList(4);
+            trigramLists.put(key, list);
+        }
+        // A name repeating a trigram lists the record once
+        if (postings[list].last(-1) != id) {
+            postings[list].add(id);
+        }
+    }
+
+    /**
+     * Record numbers of every bucket in the mask, in log order
+     */
+    private int[] mergeBuckets(int bucketMask) {
+        int total = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            if ((bucketMask & (1 << b)) != 0) {
+                total += byBucket[b].size();
+            }
+        }
+        int[] ids = new int[total];
+        int at = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            if ((bucketMask & (1 << b)) != 0) {
+                IntList list = byBucket[b];
+                for (int i = 0; i < list.size(); i++) {
+                    ids[at++] = list.get(i);
+                }
+            }
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Pack three characters into a key; ASCII trigrams never collide, and the rare
+     * collision between other characters is caught when the name is checked
+     */
+    private static int trigram(char a, char b, char c) {
+        return (a << 20) ^ (b << 10) ^ c;
+    }
+
+    /**
+     * A parsed search query
+     */
+    private static class Query {
+        static final int ALL_BUCKETS = (1 << BUCKETS) - 1;
+
+        final java.util.List<String> terms = new java.util.ArrayList<>();
+        int bucketMask = ALL_BUCKETS;
+        boolean hasSignature;
+        int signature;
+        boolean empty = true;
+
+        static Query parse(String text) {
+            Query query = new Query();
+            int i = 0;
+            while (i < text.length()) {
+                while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                int start = i;
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                if (start < i) {
+                    query.addToken(text.substring(start, i));
+                }
+            }
+            return query;
+        }
+
+        private void addToken(String token) {
+            empty = false;
+            int mask = courseMask(token);
+            if (mask != 0) {
+                bucketMask &= mask;
+            } else if (isSignature(token)) {
+                hasSignature = true;
+                signature = AttendanceRecord.parseSignature(token);
+            } else {
+                terms.add(token.toLowerCase(Locale.ROOT));
+            }
+        }
+
+        private static boolean isSignature(String token) {
+            if (token.length() != 8) {
+                return false;
+            }
+            for (int i = 0; i < token.length(); i++) {
+                if (Character.digit(token.charAt(i), 16) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return Buckets selected by a "BSIT" or "BSIT-2" token, or 0 if it is not one
+         */
+        private static int courseMask(String token) {
+            String upper = token.toUpperCase(Locale.ROOT);
+            int dash = upper.lastIndexOf('-');
+            String code = dash < 0 ? upper : upper.substring(0, dash);
+            Course course = null;
+            for (Course candidate : Course.values()) {
+                if (candidate.name().equals(code)) {
+                    course = candidate;
+                }
+            }
+            if (course == null) {
+                return 0;
+            }
+            int first = course.ordinal() * Course.YEARS;
+            if (dash < 0) {
+                return ((1 << Course.YEARS) - 1) << first;
+            }
+            String year = upper.substring(dash + 1);
+            if (year.length() != 1 || year.charAt(0) < '1' || year.charAt(0) > '0' + Course.YEARS) {
+                return 0;
+            }
+            return 1 << (first + year.charAt(0) - '1');
+        }
+    }
+}
@@ -0,0 +1,806 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Attendance Segments
+ * Past attendance is sealed out of the live log into one segment file per day, or per
+ * -Dattendance.segmentDays days counted from 1970-01-01, in a directory next to the log
+ * ("attendance_records.txt.segments/2026-10-16.log"). A segment holds only live
+ * records, sorted by Time In, in the log's format, with an {@link AttendanceLogIndex}
+ * sidecar. manifest.csv lists each segment's first and last Time In and record count,
+ * so a time-range query opens only the segments that overlap it, binary-searches each
+ * through its index, and scans only the live log of the current period.
+ *
+ * {@link #roll} runs on the writer thread, at startup and when a new period begins:
+ * records of earlier periods move from the live log into their segments, and
+ * tombstones of records sealed before are applied to those segments. Segments and
+ * manifest are written before the live log is replaced, so a crash in between only
+ * leaves records in both places; they are merged by e-signature on the next rollover.
+ *
+ * Segments older than -Dattendance.archiveDays days (as counted by the log) are
+ * compressed into {@link AttendanceArchive}s ("2026-09-16.arc") on the same rollover;
+ * queries then inflate only the blocks of an archive that overlap their range.
+ */
+public class AttendanceSegments {
+
+    public static final String MANIFEST = "manifest.csv";
+
+    private static final String MANIFEST_HEADER = "segment,first_time_in,last_time_in,records";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SEGMENT_GLOB = "*.{log,arc}";
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    // Segment entries are sorted on Time In << 24 | entry number
+    private static final int MAX_SEGMENT_RECORDS = 1 << 24;
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * One sealed segment as listed in the manifest
+     */
+    public static final class Segment {
+        private final String name;
+        private final long firstTimeIn;
+        private final long lastTimeIn;
+        private final long records;
+
+        Segment(String name, long firstTimeIn, long lastTimeIn, long records) {
+            this.name = name;
+            this.firstTimeIn = firstTimeIn;
+            this.lastTimeIn = lastTimeIn;
+            this.records = records;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getFirstTimeIn() {
+            return firstTimeIn;
+        }
+
+        public long getLastTimeIn() {
+            return lastTimeIn;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+    }
+
+    private final Path log;
+    private final Path directory;
+    private final int periodDays;
+    private final int archiveDays;
+
+    // Sealed segments by file name, i.e. in date order; read on first use and again
+    // whenever another process changed the manifest, guarded by this
+    private TreeMap<String, Segment> segments;
+    private FileTime manifestTime;
+    private boolean manifestStale;
+
+    /**
+     * Segments that are never archived, e.g. to query a log another process writes
+     * @param log The live attendance log
+     * @param periodDays Days of attendance per segment
+     */
+    public AttendanceSegments(Path log, int periodDays) {
+        this(log, periodDays, 0);
+    }
+
+    /**
+     * @param log The live attendance log
+     * @param periodDays Days of attendance per segment
+     * @param archiveDays Archive a segment once its period ended this many days ago, or 0 never to
+     */
+    public AttendanceSegments(Path log, int periodDays, int archiveDays) {
+        if (periodDays < 1) {
+            throw new IllegalArgumentException("Segment period must be at least one day: " + periodDays);
+        }
+        if (archiveDays < 0) {
+            throw new IllegalArgumentException("Archive age must not be negative: " + archiveDays);
+        }
+        this.log = log;
+        this.directory = directoryFor(log);
+        this.periodDays = periodDays;
+        this.archiveDays = archiveDays;
+    }
+
+    /**
+     * @param log The attendance log
+     * @return Directory holding the log's sealed segments
+     */
+    public static Path directoryFor(Path log) {
+        return log.resolveSibling(log.getFileName() + ".segments");
+    }
+
+    /**
+     * @param epochSecond A Time In
+     * @return First day of the period holding that Time In, as days since the epoch
+     */
+    public long periodOf(long epochSecond) {
+        long day = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        return Math.floorDiv(day, periodDays) * periodDays;
+    }
+
+    /**
+     * @return The sealed segments, oldest first
+     * @throws IOException If the manifest or a segment cannot be read
+     */
+    public synchronized List<Segment> getSegments() throws IOException {
+        loadManifest();
+        return new ArrayList<>(segments.values());
+    }
+
+    /**
+     * Hand over every record of every sealed segment, e.g. to collect e-signatures
+     * @param consumer Receives each record
+     * @throws IOException If a segment cannot be read
+     */
+    public synchronized void scan(MappedLogReader.SpanConsumer consumer) throws IOException {
+        loadManifest();
+        for (Segment segment : segments.values()) {
+            if (isArchive(segment.name)) {
+                // Offsets mean nothing inside an archive; only the e-signatures are handed over
+                try (AttendanceArchive archive = AttendanceArchive.open(directory.resolve(segment.name))) {
+                    for (int signature : archive.getSignatures()) {
+                        consumer.record(0, 0, signature);
+                    }
+                }
+                continue;
+            }
+            try (AttendanceLogIndex index = AttendanceLogIndex.openReadOnly(directory.resolve(segment.name))) {
+                index.replay(consumer);
+            }
+        }
+    }
+
+    /**
+     * Hand over every record of every sealed segment, decoded, segment by segment
+     * @param consumer Receives each record; records that cannot be decoded are skipped
+     * @throws IOException If a segment cannot be read
+     */
+    public synchronized void forEachRecord(Consumer<AttendanceRecord> consumer) throws IOException {
+        loadManifest();
+        for (Segment segment : segments.values()) {
+            Path path = directory.resolve(segment.name);
+            if (isArchive(segment.name)) {
+                try (AttendanceArchive archive = AttendanceArchive.open(path)) {
+                    for (int block = 0; block < archive.getBlockCount(); block++) {
+                        archive.readBlock(block).forEach(consumer);
+                    }
+                }
+                continue;
+            }
+            try (MappedLogReader reader = new MappedLogReader(path)) {
+                RecordSpans spans = reader.scan();
+                for (int i = 0; i < spans.size(); i++) {
+                    try {
+                        consumer.accept(reader.decodeRecord(spans.offset(i), spans.length(i)));
+                    } catch (RuntimeException ex) {
+                        // Not an attendance record we can read, e.g. a hand-edited line
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Look up a sealed record by e-signature. Reads every segment index and inflates
+     * at most the archive that has it, so it is meant for the odd delete of a past record.
+     * @param signature Packed e-signature
+     * @return The record, or null if no segment has it
+     * @throws IOException If a segment cannot be read
+     */
+    public synchronized AttendanceRecord find(int signature) throws IOException {
+        loadManifest();
+        for (Segment segment : segments.values()) {
+            Path path = directory.resolve(segment.name);
+            if (isArchive(segment.name)) {
+                try (AttendanceArchive archive = AttendanceArchive.open(path)) {
+                    if (archive.contains(signature)) {
+                        for (AttendanceRecord record : archive.readAll()) {
+                            if (record.getSignature() == signature) {
+                                return record;
+                            }
+                        }
+                    }
+                }
+                continue;
+            }
+            long[] found = {-1, 0};
+            try (AttendanceLogIndex index = AttendanceLogIndex.openReadOnly(path)) {
+                index.replay((offset, length, entry) -> {
+                    if (entry == signature) {
+                        found[0] = offset;
+                        found[1] = length;
+                    }
+                });
+            }
+            if (found[0] >= 0) {
+                try (MappedLogReader reader = new MappedLogReader(path)) {
+                    return reader.decodeRecord(found[0], (int) found[1]);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Seal the records of periods before the current one into their segments and apply
+     * tombstones of sealed records, then rewrite the live log with what is left and
+     * archive segments that have grown old enough
+     * @param file The live attendance log
+     * @param durability Whether to force new files before they replace old ones
+     * @return true if the live log was replaced
+     * @throws IOException If the rollover fails; files not yet replaced are left as they were
+     */
+    public synchronized boolean roll(Path file, DurabilityMode durability) throws IOException {
+        loadManifest();
+        boolean replaced = Files.exists(file) && seal(file, durability);
+        boolean archived = archiveDays > 0 && archiveOld(durability);
+        if (archived || manifestStale) {
+            writeManifest(durability);
+        }
+        return replaced;
+    }
+
+    private boolean seal(Path file, DurabilityMode durability) throws IOException {
+        long current = periodOf(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC));
+        Path temp = file.resolveSibling(file.getFileName() + ".roll.tmp");
+        try (MappedLogReader reader = new MappedLogReader(file)) {
+            RecordSpans records = new RecordSpans();
+            IntHashSet present = new IntHashSet();
+            IntHashSet deleted = new IntHashSet();
+            reader.scan(new MappedLogReader.SpanConsumer() {
+                @Override
+                public void record(long offset, int length, int signature) {
+                    records.add(offset, length, signature);
+                    present.add(signature);
+                }
+
+                @Override
+                public void tombstone(long offset, int length, int signature) {
+                    deleted.add(signature);
+                }
+            });
+
+            // Live records of earlier periods, by the segment they go to. A record with no
+            // readable Time In stays in the log rather than being sealed as 1970-01-01.
+            TreeMap<String, IntList> moving = new TreeMap<>();
+            RecordSpans kept = new RecordSpans();
+            int unreadable = 0;
+            for (int i = 0; i < records.size(); i++) {
+                if (deleted.contains(records.signature(i))) {
+                    continue;
+                }
+                long time = reader.epochSecond(records.offset(i), records.length(i));
+                if (time == 0) {
+                    unreadable++;
+                }
+                long period = time == 0 ? current : periodOf(time);
+                if (period < current) {
+                    moving.computeIfAbsent(segmentName(period), name -> new IntList()).add(i);
+                } else {
+                    kept.add(records.offset(i), records.length(i), records.signature(i));
+                }
+            }
+
+            // Tombstones whose record was sealed by an earlier rollover
+            IntHashSet sealedDeletes = new IntHashSet();
+            for (int signature : deleted.toArray()) {
+                if (!present.contains(signature)) {
+                    sealedDeletes.add(signature);
+                }
+            }
+            if (unreadable > 0) {
+                System.err.println("Keeping " + unreadable + " attendance records with no readable Time In in "
+                    + file.getFileName());
+            }
+            if (moving.isEmpty() && sealedDeletes.isEmpty()) {
+                return false;
+            }
+
+            Files.createDirectories(directory);
+            TreeMap<String, IntList> touched = new TreeMap<>(moving);
+            if (!sealedDeletes.isEmpty()) {
+                for (Segment segment : segments.values()) {
+                    if (!touched.containsKey(segment.name) && containsAny(segment, sealedDeletes)) {
+                        touched.put(segment.name, new IntList());
+                    }
+                }
+            }
+            for (Map.Entry<String, IntList> entry : touched.entrySet()) {
+                if (isArchive(entry.getKey())) {
+                    archive(baseName(entry.getKey()), sealedDeletes, durability);
+                } else {
+                    writeSegment(entry.getKey(), reader, records, entry.getValue(), sealedDeletes, durability);
+                }
+            }
+            writeManifest(durability);
+
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+                if (reader.isBinary()) {
+                    buffer.put(BinaryRecordFormat.header());
+                }
+                for (int i = 0; i < kept.size(); i++) {
+                    buffer = copy(out, buffer, reader, kept.offset(i), kept.length(i), reader.isBinary());
+                }
+                CopyBuffers.finish(out, buffer, durability);
+            }
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    /**
+     * Find the live records with a Time In in a range, oldest first
+     * @param from First Time In to include, as epoch seconds
+     * @param to Last Time In to include, as epoch seconds
+     * @return The records
+     * @throws IOException If the live log or a segment cannot be read
+     */
+    public synchronized List<AttendanceRecord> query(long from, long to) throws IOException {
+        loadManifest();
+        List<AttendanceRecord> results = new ArrayList<>();
+        IntHashSet deleted = new IntHashSet();
+        IntHashSet seen = new IntHashSet();
+
+        // The live log holds the current period and tombstones for records of any period
+        if (Files.exists(log)) {
+            try (MappedLogReader reader = new MappedLogReader(log)) {
+                RecordSpans matches = new RecordSpans();
+                IOException[] failure = new IOException[1];
+                reader.scan(new MappedLogReader.SpanConsumer() {
+                    @Override
+                    public void record(long offset, int length, int signature) {
+                        try {
+                            long time = reader.epochSecond(offset, length);
+                            if (time >= from && time <= to) {
+                                matches.add(offset, length, signature);
+                            }
+                        } catch (IOException ex) {
+                            failure[0] = ex;
+                        }
+                    }
+
+                    @Override
+                    public void tombstone(long offset, int length, int signature) {
+                        deleted.add(signature);
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+                matches.removeSignatures(deleted);
+                for (int i = 0; i < matches.size(); i++) {
+                    if (seen.add(matches.signature(i))) {
+                        addRecord(results, reader, matches.offset(i), matches.length(i));
+                    }
+                }
+            }
+        }
+
+        for (Segment segment : segments.values()) {
+            if (segment.lastTimeIn < from || segment.firstTimeIn > to) {
+                continue;
+            }
+            if (isArchive(segment.name)) {
+                try (AttendanceArchive archive = AttendanceArchive.open(directory.resolve(segment.name))) {
+                    for (AttendanceRecord record : archive.query(from, to)) {
+                        if (!deleted.contains(record.getSignature()) && seen.add(record.getSignature())) {
+                            results.add(record);
+                        }
+                    }
+                }
+            } else {
+                querySegment(directory.resolve(segment.name), from, to, deleted, seen, results);
+            }
+        }
+        results.sort(Comparator.comparingLong(AttendanceRecord::getEpochSecond));
+        return results;
+    }
+
+    /**
+     * Binary-search a sorted segment for the first record at or after from, then read
+     * records until the Time In passes to
+     */
+    private void querySegment(Path path, long from, long to, IntHashSet deleted, IntHashSet seen,
+                              List<AttendanceRecord> results) throws IOException {
+        try (MappedLogReader reader = new MappedLogReader(path);
+             AttendanceLogIndex index = AttendanceLogIndex.openReadOnly(path)) {
+            long low = 0;
+            long high = index.size();
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (index.epochSecond(mid) < from) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (long i = low; i < index.size() && index.epochSecond(i) <= to; i++) {
+                int signature = index.signature(i);
+                if (!deleted.contains(signature) && seen.add(signature)) {
+                    addRecord(results, reader, index.offset(i), index.length(i));
+                }
+            }
+        }
+    }
+
+    private static void addRecord(List<AttendanceRecord> results, MappedLogReader reader, long offset, int length)
+            throws IOException {
+        try {
+            results.add(reader.decodeRecord(offset, length));
+        } catch (RuntimeException ex) {
+            // Not an attendance record we can read, e.g. a hand-edited line
+        }
+    }
+
+    /**
+     * Rewrite one segment with its records minus sealed deletes, plus records moved out
+     * of the live log, sorted by Time In
+     */
+    private void writeSegment(String name, MappedLogReader live, RecordSpans records, IntList moving,
+                              IntHashSet sealedDeletes, DurabilityMode durability) throws IOException {
+        Path path = directory.resolve(name);
+        Path temp = directory.resolve(name + ".tmp");
+        RecordSpans entries = new RecordSpans();
+        IntList sources = new IntList();
+        boolean empty;
+        try (MappedLogReader existing = Files.exists(path) ? new MappedLogReader(path) : null) {
+            MappedLogReader[] readers = {existing, live};
+            IntHashSet taken = new IntHashSet();
+            if (existing != null) {
+                existing.scan((offset, length, signature) -> {
+                    if (!sealedDeletes.contains(signature) && taken.add(signature)) {
+                        entries.add(offset, length, signature);
+                        sources.add(0);
+                    }
+                });
+            }
+            for (int i = 0; i < moving.size(); i++) {
+                int record = moving.get(i);
+                if (taken.add(records.signature(record))) {
+                    entries.add(records.offset(record), records.length(record), records.signature(record));
+                    sources.add(1);
+                }
+            }
+            if (entries.size() >= MAX_SEGMENT_RECORDS) {
+                throw new IOException("Too many records for segment " + name + "; use a shorter segment period");
+            }
+
+            long[] order = new long[entries.size()];
+            for (int i = 0; i < order.length; i++) {
+                long time = readers[sources.get(i)].epochSecond(entries.offset(i), entries.length(i));
+                order[i] = time << 24 | i;
+            }
+            Arrays.sort(order);
+
+            empty = order.length == 0;
+            if (!empty) {
+                boolean binary = existing != null ? existing.isBinary() : live.isBinary();
+                try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+                    if (binary) {
+                        buffer.put(BinaryRecordFormat.header());
+                    }
+                    for (long key : order) {
+                        int i = (int) (key & (MAX_SEGMENT_RECORDS - 1));
+                        buffer = copy(out, buffer, readers[sources.get(i)], entries.offset(i), entries.length(i), binary);
+                    }
+                    CopyBuffers.finish(out, buffer, durability);
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+
+        // The old sidecar describes the old file; the new one is built below
+        Files.deleteIfExists(AttendanceLogIndex.indexPathFor(path));
+        if (empty) {
+            Files.deleteIfExists(path);
+            segments.remove(name);
+        } else {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            segments.put(name, describe(name, true));
+        }
+    }
+
+    /**
+     * Archive the segments whose period ended archiveDays or more days ago
+     * @return true if any segment was archived
+     */
+    private boolean archiveOld(DurabilityMode durability) throws IOException {
+        long cutoff = LocalDate.now().toEpochDay() - archiveDays;
+        List<String> old = new ArrayList<>();
+        for (String name : segments.keySet()) {
+            if (!isArchive(name) && LocalDate.parse(baseName(name)).toEpochDay() + periodDays <= cutoff) {
+                old.add(baseName(name));
+            }
+        }
+        for (String base : old) {
+            archive(base, new IntHashSet(), durability);
+        }
+        return !old.isEmpty();
+    }
+
+    /**
+     * Write a period's archive from its segment and any archive it already has (e.g.
+     * when a late record was sealed into an archived period), minus sealed deletes,
+     * then remove the segment, leaving behind only records that cannot be decoded.
+     * Archives are read and written whole; this only happens
+     * once a period is old, or for a delete of one of its records.
+     */
+    private void archive(String base, IntHashSet sealedDeletes, DurabilityMode durability) throws IOException {
+        String segmentName = base + SEGMENT_SUFFIX;
+        String archiveName = base + AttendanceArchive.SUFFIX;
+        Path segmentPath = directory.resolve(segmentName);
+        Path archivePath = directory.resolve(archiveName);
+        Path temp = directory.resolve(archiveName + ".tmp");
+        Path segmentTemp = directory.resolve(segmentName + ".tmp");
+        List<AttendanceRecord> records = new ArrayList<>();
+        try {
+            IntHashSet taken = new IntHashSet();
+            boolean binary = false;
+            if (Files.exists(archivePath)) {
+                try (AttendanceArchive existing = AttendanceArchive.open(archivePath)) {
+                    binary = existing.isBinary();
+                    for (AttendanceRecord record : existing.readAll()) {
+                        if (!sealedDeletes.contains(record.getSignature()) && taken.add(record.getSignature())) {
+                            records.add(record);
+                        }
+                    }
+                }
+            }
+            if (Files.exists(segmentPath)) {
+                try (MappedLogReader reader = new MappedLogReader(segmentPath)) {
+                    binary = reader.isBinary();
+                    RecordSpans spans = reader.scan();
+                    IntList unreadable = new IntList();
+                    for (int i = 0; i < spans.size(); i++) {
+                        if (!sealedDeletes.contains(spans.signature(i)) && taken.add(spans.signature(i))) {
+                            try {
+                                records.add(reader.decodeRecord(spans.offset(i), spans.length(i)));
+                            } catch (RuntimeException ex) {
+                                System.err.println("Keeping unreadable record in " + segmentName
+                                    + " instead of archiving it: " + ex.getMessage());
+                                unreadable.add(i);
+                            }
+                        }
+                    }
+                    if (!unreadable.isEmpty()) {
+                        writeUnreadable(segmentTemp, reader, spans, unreadable, durability);
+                    }
+                }
+            }
+            records.sort(Comparator.comparingLong(AttendanceRecord::getEpochSecond));
+            if (!records.isEmpty()) {
+                AttendanceArchive.write(temp, records, binary, durability);
+            }
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            Files.deleteIfExists(segmentTemp);
+            throw ex;
+        }
+
+        if (records.isEmpty()) {
+            Files.deleteIfExists(archivePath);
+            segments.remove(archiveName);
+        } else {
+            Files.move(temp, archivePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            segments.put(archiveName, new Segment(archiveName, records.get(0).getEpochSecond(),
+                records.get(records.size() - 1).getEpochSecond(), records.size()));
+        }
+        // Everything the segment held is in the archive now, except records that could
+        // not be decoded; those stay behind as they were written
+        Files.deleteIfExists(AttendanceLogIndex.indexPathFor(segmentPath));
+        if (Files.exists(segmentTemp)) {
+            Files.move(segmentTemp, segmentPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            segments.put(segmentName, describe(segmentName, true));
+        } else {
+            Files.deleteIfExists(segmentPath);
+            segments.remove(segmentName);
+        }
+    }
+
+    /**
+     * Write the records of a segment that cannot go into its archive to a new segment
+     * file, copying their bytes unchanged
+     */
+    private static void writeUnreadable(Path temp, MappedLogReader reader, RecordSpans spans, IntList keep,
+                                        DurabilityMode durability) throws IOException {
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            if (reader.isBinary()) {
+                buffer.put(BinaryRecordFormat.header());
+            }
+            for (int i = 0; i < keep.size(); i++) {
+                int record = keep.get(i);
+                buffer = copy(out, buffer, reader, spans.offset(record), spans.length(record), reader.isBinary());
+            }
+            CopyBuffers.finish(out, buffer, durability);
+        }
+    }
+
+    private boolean containsAny(Segment segment, IntHashSet signatures) throws IOException {
+        if (isArchive(segment.name)) {
+            try (AttendanceArchive archive = AttendanceArchive.open(directory.resolve(segment.name))) {
+                for (int signature : signatures.toArray()) {
+                    if (archive.contains(signature)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        boolean[] found = {false};
+        try (AttendanceLogIndex index = AttendanceLogIndex.openReadOnly(directory.resolve(segment.name))) {
+            index.replay((offset, length, signature) -> found[0] |= signatures.contains(signature));
+        }
+        return found[0];
+    }
+
+    /**
+     * Read the manifest, adding segments it does not list (e.g. after a crash) and
+     * dropping ones whose file is gone. Only reads; the next rollover writes the
+     * corrected manifest.
+     */
+    private void loadManifest() throws IOException {
+        Path manifest = directory.resolve(MANIFEST);
+        FileTime time = Files.exists(manifest) ? Files.getLastModifiedTime(manifest) : null;
+        if (segments != null && Objects.equals(time, manifestTime)) {
+            return;
+        }
+        TreeMap<String, Segment> listed = new TreeMap<>();
+        if (time != null) {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                String[] fields = line.split(",", -1);
+                if (fields.length != 4 || line.equals(MANIFEST_HEADER)) {
+                    continue;
+                }
+                try {
+                    listed.put(fields[0], new Segment(fields[0], parseTime(fields[1]), parseTime(fields[2]),
+                        Long.parseLong(fields[3])));
+                } catch (RuntimeException ex) {
+                    // Described again from the file below
+                }
+            }
+        }
+
+        TreeMap<String, Segment> found = new TreeMap<>();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_GLOB)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    Segment segment = listed.containsKey(name) ? listed.get(name) : describe(name, false);
+                    if (segment != null) {
+                        found.put(name, segment);
+                    }
+                }
+            }
+        }
+        segments = found;
+        manifestTime = time;
+        manifestStale = !found.keySet().equals(listed.keySet());
+    }
+
+    /**
+     * Read a segment's range and size from its index, or from an archive's block index
+     * @param writeIndex Whether to build the segment's index sidecar if needed, or only
+     *                   read it and otherwise index the segment in memory
+     * @return The segment, or null if it has no records
+     */
+    private Segment describe(String name, boolean writeIndex) throws IOException {
+        if (isArchive(name)) {
+            try (AttendanceArchive archive = AttendanceArchive.open(directory.resolve(name))) {
+                return archive.getRecords() == 0 ? null
+                    : new Segment(name, archive.getFirstTimeIn(), archive.getLastTimeIn(), archive.getRecords());
+            }
+        }
+        Path path = directory.resolve(name);
+        try (AttendanceLogIndex index = writeIndex ? AttendanceLogIndex.open(path)
+                 : AttendanceLogIndex.openReadOnly(path)) {
+            long count = index.size();
+            if (count == 0) {
+                return null;
+            }
+            return new Segment(name, index.epochSecond(0), index.epochSecond(count - 1), count);
+        }
+    }
+
+    private void writeManifest(DurabilityMode durability) throws IOException {
+        StringBuilder text = new StringBuilder(MANIFEST_HEADER).append('\n');
+        for (Segment segment : segments.values()) {
+            text.append(segment.name).append(',')
+                .append(formatTime(segment.firstTimeIn)).append(',')
+                .append(formatTime(segment.lastTimeIn)).append(',')
+                .append(segment.records).append('\n');
+        }
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, MANIFEST, ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+                bytes.position(bytes.limit());
+                CopyBuffers.finish(out, bytes, durability);
+            }
+            Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        manifestTime = Files.getLastModifiedTime(directory.resolve(MANIFEST));
+        manifestStale = false;
+    }
+
+    private String segmentName(long period) {
+        return LocalDate.ofEpochDay(period) + SEGMENT_SUFFIX;
+    }
+
+    private static boolean isArchive(String name) {
+        return name.endsWith(AttendanceArchive.SUFFIX);
+    }
+
+    private static String baseName(String name) {
+        return name.substring(0, name.lastIndexOf('.'));
+    }
+
+    private static String formatTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC).format(TIME_FORMAT);
+    }
+
+    private static long parseTime(String text) {
+        return LocalDateTime.parse(text, TIME_FORMAT).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Append one record to the copy buffer in the target format, converting it if the
+     * source is in the other one
+     */
+    private static ByteBuffer copy(FileChannel out, ByteBuffer buffer, MappedLogReader reader, long offset, int length,
+                                   boolean binary) throws IOException {
+        byte[] bytes;
+        if (reader.isBinary() == binary) {
+            bytes = reader.readBytes(offset, length);
+            if (!binary) {
+                buffer = CopyBuffers.write(out, buffer, bytes);
+                bytes = TextRecordFormat.lineEnd();
+            }
+        } else {
+            AttendanceRecord record = reader.decodeRecord(offset, length);
+            bytes = binary ? BinaryRecordFormat.encode(record) : TextRecordFormat.encode(record);
+        }
+        return CopyBuffers.write(out, buffer, bytes);
+    }
+}
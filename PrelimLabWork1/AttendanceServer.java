@@ -0,0 +1,317 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Attendance Server
+ * Lets several check-in stations share one attendance log: each station sends its
+ * check-ins over TCP on localhost and the server saves them all through one
+ * {@link AttendanceLog}, so records are written whole and in order by a single writer
+ * instead of interleaving appends from several processes.
+ *
+ * Usage: java AttendanceServer [port]   (default 7878, or -Dattendance.port)
+ * The log is -Dattendance.file as in the tracker; start trackers with
+ * -Dattendance.server=port to make them clients.
+ *
+ * Protocol: UTF-8 lines, fields separated by tabs, one reply line per request, in order.
+ *   CHECKIN name course-year [time-in signature]  ->  OK time-in signature | UNCONFIRMED message | ERR message
+ *   DELETE signature                               ->  OK | UNCONFIRMED message | ERR message
+ *   COUNTS yyyy-MM-dd                              ->  OK count... total | ERR message
+ *   RECOUNT                                        ->  OK | ERR message
+ * COUNTS answers from the log's {@link AttendanceCounters}: one count per course and
+ * year (BSIT-1 to BSIT-4, then BSCS-1 and so on, in {@link Course} order) and the day's
+ * total. RECOUNT rebuilds the counters from the log and its segments.
+ * Without a Time In and e-signature the server generates them as the form does; an
+ * e-signature some record of the log already has is refused. UNCONFIRMED means the
+ * record or tombstone was written to the log but the disk did not confirm it, so it
+ * must not be sent again.
+ * Each connection is served on a virtual thread when the JVM has them (Java 21+),
+ * otherwise on a pooled thread. Requests a client sends without waiting for replies
+ * are queued to the writer together and answered once durable, so one connection can
+ * keep a whole batch in flight.
+ */
+public class AttendanceServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 7878;
+
+    public static final String CHECK_IN = "CHECKIN";
+    public static final String DELETE = "DELETE";
+    public static final String COUNTS = "COUNTS";
+    public static final String RECOUNT = "RECOUNT";
+    public static final String OK = "OK";
+    public static final String ERROR = "ERR";
+    public static final String UNCONFIRMED = "UNCONFIRMED";
+
+    // Requests of one connection queued before their replies are written
+    private static final int MAX_PIPELINED = 64;
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final AttendanceLog log;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final boolean virtualThreads;
+    private final Thread acceptThread;
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Start accepting connections on localhost
+     * @param log The log every check-in is saved to
+     * @param port TCP port, or 0 for any free port
+     * @throws IOException If the port cannot be opened
+     */
+    public AttendanceServer(AttendanceLog log, int port) throws IOException {
+        this.log = log;
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.connections = virtual != null ? virtual : Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "attendance-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptThread = new Thread(this::acceptLoop, "attendance-server");
+        this.acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return true if connections run on virtual threads rather than a thread pool
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Stop accepting, drop open connections and wait for the accept thread. The log
+     * stays open; close it afterwards to write out what is queued.
+     */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException ex) {
+            System.err.println("Error closing attendance server: " + ex.getMessage());
+        }
+        for (Socket socket : openSockets) {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // Already gone
+            }
+        }
+        connections.shutdown();
+        try {
+            acceptThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Main method to run the server until the JVM is stopped
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("attendance.port", DEFAULT_PORT);
+        String file = System.getProperty("attendance.file", "attendance_records.txt");
+        AttendanceLog log = new AttendanceLog(Paths.get(file));
+        AttendanceServer server = new AttendanceServer(log, port);
+
+        // Stop taking check-ins, then drain queued records before the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            log.close();
+        }));
+        System.err.println("Attendance server on " + server.serverSocket.getInetAddress().getHostAddress() + ":"
+            + server.getPort() + ", saving to " + file + " ("
+            + (server.virtualThreads ? "virtual threads" : "thread pool") + ")");
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() looked up by reflection, since this
+     * code also has to compile and run on Java versions without virtual threads
+     * @return The executor, or null if this JVM has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // Missing before Java 21, or a preview feature that is not enabled
+            return null;
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException ex) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Error accepting connection: " + ex.getMessage());
+                }
+                continue;
+            }
+            try {
+                connections.execute(() -> serve(socket));
+            } catch (RuntimeException ex) {
+                // Shutting down
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    /**
+     * Answer a connection's requests until it closes. Requests already waiting in the
+     * input are queued together; their replies are written once all of them are saved.
+     */
+    private void serve(Socket socket) {
+        openSockets.add(socket);
+        try (BufferedReader in = new BufferedReader(
+                 new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(
+                 new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            List<CompletableFuture<String>> replies = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                replies.add(handle(line));
+                if (replies.size() < MAX_PIPELINED && in.ready()) {
+                    continue;
+                }
+                for (CompletableFuture<String> reply : replies) {
+                    out.write(reply.join());
+                    out.write('\n');
+                }
+                out.flush();
+                replies.clear();
+            }
+        } catch (IOException ex) {
+            // Client went away; its queued records are still saved
+        } finally {
+            openSockets.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Validate one request and queue its write
+     * @param line The request line
+     * @return Completes with the reply line, never exceptionally
+     */
+    CompletableFuture<String> handle(String line) {
+        String[] fields = line.split("\t", -1);
+        try {
+            switch (fields[0]) {
+                case CHECK_IN:
+                    return checkIn(fields);
+                case DELETE:
+                    if (fields.length != 2) {
+                        return error("DELETE takes an e-signature");
+                    }
+                    return reply(log.delete(AttendanceRecord.parseSignature(fields[1])), OK);
+                case COUNTS:
+                    if (fields.length != 2) {
+                        return error("COUNTS takes a date");
+                    }
+                    return counts(LocalDate.parse(fields[1].trim()));
+                case RECOUNT:
+                    return log.recount().handle((ignored, error) -> error == null
+                        ? OK
+                        : ERROR + "\tCounters were NOT rebuilt: "
+                            + (error.getCause() != null ? error.getCause() : error).getMessage());
+                default:
+                    return error("Unknown request: " + fields[0]);
+            }
+        } catch (IllegalArgumentException | DateTimeException ex) {
+            return error(ex.getMessage());
+        }
+    }
+
+    private CompletableFuture<String> counts(LocalDate day) {
+        if (!log.getCounters().isLoaded()) {
+            return error("Counters are still loading");
+        }
+        StringBuilder reply = new StringBuilder(OK);
+        for (int count : log.getCounters().countsOf(day.toEpochDay())) {
+            reply.append('\t').append(count);
+        }
+        return CompletableFuture.completedFuture(reply.toString());
+    }
+
+    private CompletableFuture<String> checkIn(String[] fields) {
+        if (fields.length != 3 && fields.length != 5) {
+            return error("CHECKIN takes a name, a course/year and optionally a Time In and e-signature");
+        }
+        String name = fields[1].trim();
+        String course = fields[2].trim();
+
+        // Same checks as the tracker form
+        if (name.isEmpty()) {
+            return error("Please enter student name!");
+        }
+        if (course.isEmpty()) {
+            return error("Please enter course and year!");
+        }
+        if (!Course.isValidCourseYear(course)) {
+            return error("Invalid Course/Year format! Required format: [COURSE]-[YEAR], "
+                + "valid courses: BSIT, BSCS, BSIS, BSCpE, valid years: 1, 2, 3, 4");
+        }
+
+        String timeIn = fields.length == 5 ? fields[3] : LocalDateTime.now().format(TIME_FORMAT);
+        String signature = fields.length == 5
+            ? fields[4]
+            : AttendanceRecord.formatSignature(log.getSignatures().next());
+        AttendanceRecord record = AttendanceRecord.of(name, course.toUpperCase(), timeIn, signature);
+        return reply(log.save(record),
+            OK + "\t" + record.getTimeIn() + "\t" + AttendanceRecord.formatSignature(record.getSignature()));
+    }
+
+    private static CompletableFuture<String> reply(CompletableFuture<Void> saved, String success) {
+        return saved.handle((ignored, error) -> {
+            if (error == null) {
+                return success;
+            }
+            if (UnconfirmedWriteException.isUnconfirmed(error)) {
+                Throwable cause = error instanceof UnconfirmedWriteException ? error : error.getCause();
+                return UNCONFIRMED + "\t" + cause.getMessage();
+            }
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            return ERROR + "\tAttendance was NOT recorded: " + cause.getMessage();
+        });
+    }
+
+    private static CompletableFuture<String> error(String message) {
+        return CompletableFuture.completedFuture(ERROR + "\t" + message);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            // Already closed
+        }
+    }
+}
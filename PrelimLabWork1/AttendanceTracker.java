@@ -4,8 +4,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.UUID;
-import java.io.FileWriter;
+import java.util.concurrent.CompletableFuture;
 import java.io.IOException;
 
 /**
@@ -22,10 +21,38 @@ public class AttendanceTracker extends JFrame {
     private JButton submitButton;
     private JButton clearButton;
     private JButton checkListButton;
+    private JButton summaryButton;
     
     // Date and time formatter
     private DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     
+    // Attendance log file (text, or binary if it starts with the binary header)
+    private static final String LOG_FILE = System.getProperty("attendance.file", "attendance_records.txt");
+    
+    // Title of the list window while it shows the live log, which holds the current period
+    private static final String CURRENT_TITLE = "Current Attendance Records (Select to Delete)";
+    
+    // With -Dattendance.server=[host:]port the form saves through an AttendanceServer
+    // instead of writing the log itself; the Check List window still reads LOG_FILE
+    private static final String SERVER = System.getProperty("attendance.server");
+    
+    // Exactly one of these is set: the log and its background writer, or the server client
+    private final AttendanceLog attendanceLog;
+    private final AttendanceClient server;
+    
+    // Issues the form's e-signatures; as a server client the server checks them against its log
+    private final SignatureAllocator signatures;
+    
+    // Sealed past periods of LOG_FILE, searched by the list window's date filter
+    private final AttendanceSegments segments;
+    
+    // How often an open Summary window reads the counters again
+    private static final int SUMMARY_REFRESH_MS = 1000;
+    
+    // Open Attendance List windows, told about each record once it is saved (EDT only)
+    private final java.util.List<java.util.function.Consumer<AttendanceRecord>> savedListeners =
+        new java.util.ArrayList<>();
+    
     /**
      * Constructor to initialize the attendance tracker UI
      */
@@ -37,6 +64,40 @@ public class AttendanceTracker extends JFrame {
         setLocationRelativeTo(null); // Center the window
         setResizable(false);
         
+        // Start the background log writer (tunable with -Dattendance.durability,
+        // -Dattendance.maxBatchSize etc.), or connect to the server on first use
+        if (SERVER != null) {
+            attendanceLog = null;
+            server = new AttendanceClient(SERVER);
+            signatures = SignatureAllocator.empty();
+            segments = new AttendanceSegments(java.nio.file.Paths.get(LOG_FILE),
+                Integer.getInteger("attendance.segmentDays", 1));
+        } else {
+            attendanceLog = new AttendanceLog(java.nio.file.Paths.get(LOG_FILE));
+            server = null;
+            signatures = attendanceLog.getSignatures();
+            segments = attendanceLog.getSegments();
+        }
+        
+        // The log loads in the background and saves wait for it; say so if it cannot be loaded
+        if (attendanceLog != null) {
+            attendanceLog.whenLoaded().whenComplete((ignored, error) -> {
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(
+                        this,
+                        "Could not load the attendance records!\n\n" + cause.getMessage() + "\n\n" +
+                        "Attendance cannot be recorded until the tracker is restarted.",
+                        "Load Error",
+                        JOptionPane.ERROR_MESSAGE
+                    ));
+                }
+            });
+        }
+        
+        // Drain queued records before the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(this::closeLog));
+        
         // Initialize components
         initializeComponents();
         
@@ -144,9 +205,17 @@ public class AttendanceTracker extends JFrame {
         checkListButton.setFont(new Font("Arial", Font.BOLD, 10));
         checkListButton.addActionListener(new CheckListButtonListener());
         
+        summaryButton = new JButton("Summary");
+        summaryButton.setBackground(Color.ORANGE.darker());
+        summaryButton.setForeground(Color.ORANGE.darker());
+        summaryButton.setFocusPainted(false);
+        summaryButton.setFont(new Font("Arial", Font.BOLD, 10));
+        summaryButton.addActionListener(e -> showSummary());
+        
         buttonPanel.add(submitButton);
         buttonPanel.add(clearButton);
         buttonPanel.add(checkListButton);
+        buttonPanel.add(summaryButton);
         
         // Add panels to main panel
         mainPanel.add(titlePanel, BorderLayout.NORTH);
@@ -160,21 +229,6 @@ public class AttendanceTracker extends JFrame {
         generateTimeAndSignature();
     }
     
-    /**
-     * Validate course/year format
-     * @param courseYear The course/year string to validate
-     * @return true if valid, false otherwise
-     */
-    private boolean isValidCourseYear(String courseYear) {
-        // Remove spaces and convert to uppercase for validation
-        courseYear = courseYear.trim().toUpperCase();
-        
-        // Valid patterns available: Course code (BSIT, BSCS, BSIS, BSCpE) followed by dash and year (1-4)
-        // Examples: BSIT-1, BSCS-2, BSIS-3, BSCpE-4
-        String pattern = "^(BSIT|BSCS|BSIS|BSCPE)-[1-4]$";
-        
-        return courseYear.matches(pattern);
-    }
     /**
      * Generate current time and unique e-signature
      */
@@ -184,9 +238,8 @@ public class AttendanceTracker extends JFrame {
         String timeIn = now.format(dateFormatter);
         timeInField.setText(timeIn);
         
-        // Generate unique e-signature using UUID
-        String eSignature = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        eSignatureField.setText(eSignature);
+        // Generate an e-signature no record in the log uses yet
+        eSignatureField.setText(AttendanceRecord.formatSignature(signatures.next()));
     }
     
     /**
@@ -222,7 +275,7 @@ public class AttendanceTracker extends JFrame {
             }
             
             // Validate course/year format
-            if (!isValidCourseYear(course)) {
+            if (!Course.isValidCourseYear(course)) {
                 JOptionPane.showMessageDialog(
                     AttendanceTracker.this,
                     "Invalid Course/Year format!\n\n" +
@@ -247,30 +300,74 @@ public class AttendanceTracker extends JFrame {
             String timeIn = timeInField.getText();
             String signature = eSignatureField.getText();
             
-            // Format attendance record
-            String record = String.format(
-                "Name: %s | Course: %s | Time: %s | Signature: %s\n",
-                name, course, timeIn, signature
-            );
-            
-            // Save to file
-            saveToFile(record);
+            // Build attendance record
+            AttendanceRecord record = AttendanceRecord.of(name, course, timeIn, signature);
             
-            // Show success message
-            JOptionPane.showMessageDialog(
-                AttendanceTracker.this,
-                "Attendance recorded successfully!\n\n" +
-                "Name: " + name + "\n" +
-                "Course: " + course + "\n" +
-                "Time: " + timeIn + "\n" +
-                "Signature: " + signature,
-                "Success",
-                JOptionPane.INFORMATION_MESSAGE
-            );
+            // Check for a duplicate before queueing anything (as a client, the server checks);
+            // while the log is still loading, the save itself refuses a duplicate
+            if (attendanceLog != null && attendanceLog.getCheckIns().isDuplicate(record)) {
+                JOptionPane.showMessageDialog(
+                    AttendanceTracker.this,
+                    "Duplicate check-in!\n\n" +
+                    name + " (" + course + ") has already checked in today.",
+                    "Validation Error",
+                    JOptionPane.ERROR_MESSAGE
+                );
+                return;
+            }
             
-            // Clear form and regenerate time/signature
-            clearForm();
-            generateTimeAndSignature();
+            // Save to file; the form stays locked until the record meets the durability mode
+            final String savedCourse = course;
+            submitButton.setEnabled(false);
+            saveToFile(record).whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+                submitButton.setEnabled(true);
+                
+                if (error != null && !UnconfirmedWriteException.isUnconfirmed(error)) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    JOptionPane.showMessageDialog(
+                        AttendanceTracker.this,
+                        "Attendance was NOT recorded!\n\n" + cause.getMessage(),
+                        "Save Error",
+                        JOptionPane.ERROR_MESSAGE
+                    );
+                    
+                    // Never resubmit the same e-signature: it may be taken, or already saved
+                    eSignatureField.setText(AttendanceRecord.formatSignature(signatures.next()));
+                    return;
+                }
+                
+                // Add the record to any open Attendance List window
+                for (java.util.function.Consumer<AttendanceRecord> listener : new java.util.ArrayList<>(savedListeners)) {
+                    listener.accept(record);
+                }
+                
+                // Show success message, or that the record is in the log but unconfirmed
+                String details = "Name: " + name + "\n" +
+                    "Course: " + savedCourse + "\n" +
+                    "Time: " + timeIn + "\n" +
+                    "Signature: " + signature;
+                if (error != null) {
+                    JOptionPane.showMessageDialog(
+                        AttendanceTracker.this,
+                        "Attendance was written but the disk did not confirm it.\n" +
+                        "Do not record it again; it is lost only if the computer goes down now.\n\n" +
+                        details,
+                        "Save Warning",
+                        JOptionPane.WARNING_MESSAGE
+                    );
+                } else {
+                    JOptionPane.showMessageDialog(
+                        AttendanceTracker.this,
+                        "Attendance recorded successfully!\n\n" + details,
+                        "Success",
+                        JOptionPane.INFORMATION_MESSAGE
+                    );
+                }
+                
+                // Clear form and regenerate time/signature
+                clearForm();
+                generateTimeAndSignature();
+            }));
         }
     }
     
@@ -306,16 +403,28 @@ public class AttendanceTracker extends JFrame {
     }
     
     /**
-     * Save attendance record to file
+     * Queue attendance record for the background writer, or send it to the server
      * @param record The attendance record to save
+     * @return Completes once the record meets the configured durability mode
      */
-    private void saveToFile(String record) {
-        try (FileWriter writer = new FileWriter("attendance_records.txt", true)) {
-            writer.write(record);
-            writer.write("─".repeat(70) + "\n");
-        } catch (IOException ex) {
-            System.err.println("Error saving to file: " + ex.getMessage());
+    private CompletableFuture<Void> saveToFile(AttendanceRecord record) {
+        if (server != null) {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    server.checkIn(record);
+                } catch (IOException ex) {
+                    throw new java.util.concurrent.CompletionException(ex);
+                }
+            });
         }
+        return attendanceLog.save(record);
+    }
+    
+    /**
+     * @return The log's offset index, or null if there is none to use (e.g. as a server client)
+     */
+    private AttendanceLogIndex currentIndex() {
+        return attendanceLog == null ? null : attendanceLog.getIndex();
     }
     
     /**
@@ -324,53 +433,88 @@ public class AttendanceTracker extends JFrame {
     private void showAttendanceList() {
         // Create a new frame for the attendance list
         JFrame listFrame = new JFrame("Attendance List");
-        listFrame.setSize(400, 300);
+        listFrame.setSize(560, 360);
         listFrame.setLocationRelativeTo(this);
+        listFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         
-        // Create list model and JList to display records
-        DefaultListModel<String> listModel = new DefaultListModel<>();
+        // Create list model and JList to display records; rows are decoded only when painted
+        AttendanceListModel listModel = new AttendanceListModel();
         JList<String> recordList = new JList<>(listModel);
         recordList.setFont(new Font("Monospaced", Font.PLAIN, 11));
         recordList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         
-        // Read the attendance records from file
-        java.util.List<String> records = new java.util.ArrayList<>();
-        try (java.io.BufferedReader reader = new java.io.BufferedReader(
-                new java.io.FileReader("attendance_records.txt"))) {
-            String line;
-            StringBuilder currentRecord = new StringBuilder();
-            
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("─")) {
-                    if (currentRecord.length() > 0) {
-                        records.add(currentRecord.toString().trim());
-                        listModel.addElement(currentRecord.toString().trim());
-                        currentRecord = new StringBuilder();
-                    }
-                } else if (!line.trim().isEmpty()) {
-                    currentRecord.append(line);
-                }
+        // Size every row from one prototype so the JList never measures all records
+        recordList.setPrototypeCellValue(
+            "Name: " + "M".repeat(24) + " | Course: BSCPE-4 | Time: 0000-00-00 00:00:00 | Signature: MMMMMMMM");
+        
+        // Records are scanned off the EDT and appear in chunks as they are found
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        AttendanceListLoader[] loader = new AttendanceListLoader[1];
+        
+        // Search box, answered from the indexes the loader builds
+        JTextField searchField = new JTextField();
+        searchField.setToolTipText("Name, course/year (e.g. BSIT-2) or e-signature");
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                listModel.setQuery(searchField.getText());
             }
             
-            // Add last record if exists
-            if (currentRecord.length() > 0) {
-                records.add(currentRecord.toString().trim());
-                listModel.addElement(currentRecord.toString().trim());
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                listModel.setQuery(searchField.getText());
             }
             
-            if (listModel.isEmpty()) {
-                listModel.addElement("No attendance records found.");
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+                listModel.setQuery(searchField.getText());
             }
-        } catch (java.io.FileNotFoundException ex) {
-            listModel.addElement("No attendance records found.");
-            listModel.addElement("The file will be created when the first attendance is submitted.");
-        } catch (IOException ex) {
-            listModel.addElement("Error reading attendance records: " + ex.getMessage());
-        }
+        });
+        JPanel searchPanel = new JPanel(new BorderLayout(5, 0));
+        searchPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 0, 5));
+        searchPanel.add(new JLabel("Search:"), BorderLayout.WEST);
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        searchPanel.add(progressBar, BorderLayout.SOUTH);
+        
+        // Date-range filter over past days too, answered from the sealed segments
+        JTextField fromField = new JTextField(java.time.LocalDate.now().toString(), 11);
+        JTextField toField = new JTextField(java.time.LocalDate.now().toString(), 11);
+        fromField.setToolTipText("yyyy-MM-dd or yyyy-MM-dd HH:mm");
+        toField.setToolTipText("yyyy-MM-dd or yyyy-MM-dd HH:mm");
+        JButton filterButton = new JButton("Filter");
+        JButton currentButton = new JButton("Show Current");
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        filterPanel.add(new JLabel("From:"));
+        filterPanel.add(fromField);
+        filterPanel.add(new JLabel("To:"));
+        filterPanel.add(toField);
+        filterPanel.add(filterButton);
+        filterPanel.add(currentButton);
+        
+        JPanel topPanel = new JPanel(new BorderLayout(0, 5));
+        topPanel.add(filterPanel, BorderLayout.NORTH);
+        topPanel.add(searchPanel, BorderLayout.CENTER);
+        
+        // Time range shown instead of the live log, or null (EDT only)
+        long[][] range = {null};
+        
+        // Follows the log once it is loaded, so records saved by other stations appear without a Refresh
+        AttendanceLogTail[] tail = new AttendanceLogTail[1];
+        
+        // Release the mapped file and stop loading when the window goes away
+        listFrame.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                loader[0].cancel(false);
+                tail[0].close();
+                listModel.close();
+            }
+        });
         
         // Add scroll pane
         JScrollPane scrollPane = new JScrollPane(recordList);
-        scrollPane.setBorder(BorderFactory.createTitledBorder("All Attendance Records (Select to Delete)"));
+        scrollPane.setBorder(BorderFactory.createTitledBorder(CURRENT_TITLE));
         
         // Create button panel
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
@@ -382,40 +526,53 @@ public class AttendanceTracker extends JFrame {
         deleteButton.setFocusPainted(false);
         deleteButton.addActionListener(e -> {
             int selectedIndex = recordList.getSelectedIndex();
-            if (selectedIndex >= 0 && !listModel.isEmpty() && 
-                !listModel.get(0).startsWith("No attendance") &&
-                !listModel.get(0).startsWith("Error")) {
+            if (selectedIndex >= 0 && listModel.hasRecords()) {
                 
                 // Confirm deletion
                 int confirm = JOptionPane.showConfirmDialog(
                     listFrame,
                     "Are you sure you want to delete this attendance record?\n\n" + 
-                    listModel.get(selectedIndex),
+                    listModel.getElementAt(selectedIndex),
                     "Confirm Delete",
                     JOptionPane.YES_NO_OPTION,
                     JOptionPane.WARNING_MESSAGE
                 );
                 
                 if (confirm == JOptionPane.YES_OPTION) {
-                    // Remove from list
-                    records.remove(selectedIndex);
-                    listModel.remove(selectedIndex);
-                    
-                    // Rewrite file without deleted record
-                    rewriteAttendanceFile(records);
-                    
-                    // Show success message
-                    JOptionPane.showMessageDialog(
-                        listFrame,
-                        "Attendance record deleted successfully!",
-                        "Success",
-                        JOptionPane.INFORMATION_MESSAGE
-                    );
+                    // Append a tombstone for the record; its row stays until the tombstone is durable
+                    int signature = listModel.getSignature(selectedIndex);
+                    CompletableFuture<Void> deleted = deleteRecord(signature);
                     
-                    // Update display if empty
-                    if (listModel.isEmpty()) {
-                        listModel.addElement("No attendance records found.");
-                    }
+                    // Report once the tombstone is durable
+                    deleted.whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+                        if (error != null) {
+                            Throwable cause = error.getCause() != null ? error.getCause() : error;
+                            JOptionPane.showMessageDialog(
+                                listFrame,
+                                "Error deleting attendance record: " + cause.getMessage(),
+                                "Delete Error",
+                                JOptionPane.ERROR_MESSAGE
+                            );
+                            return;
+                        }
+                        
+                        // Rows may have moved meanwhile (the tail may even have dropped it), so go by e-signature
+                        listModel.removeSignature(signature);
+                        
+                        // Update display if empty
+                        if (!listModel.hasRecords()) {
+                            listModel.setMessages("No attendance records found.");
+                            deleteButton.setEnabled(false);
+                        }
+                        
+                        // Show success message
+                        JOptionPane.showMessageDialog(
+                            listFrame,
+                            "Attendance record deleted successfully!",
+                            "Success",
+                            JOptionPane.INFORMATION_MESSAGE
+                        );
+                    }));
                 }
             } else {
                 JOptionPane.showMessageDialog(
@@ -427,14 +584,115 @@ public class AttendanceTracker extends JFrame {
             }
         });
         
-        // Refresh button
+        // Refresh button reloads the same window in the background
         JButton refreshButton = new JButton("Refresh");
         refreshButton.setBackground(Color.BLUE.darker());
         refreshButton.setForeground(Color.BLUE);
         refreshButton.setFocusPainted(false);
         refreshButton.addActionListener(e -> {
-            listFrame.dispose();
-            showAttendanceList();
+            loader[0].cancel(false);
+            if (range[0] != null) {
+                queryAttendanceRange(listModel, range, range[0], deleteButton);
+            } else {
+                loader[0] = loadAttendanceList(listModel, progressBar, deleteButton, searchField, tail[0]);
+            }
+        });
+        
+        // Filter button shows the records with a Time In in the range
+        filterButton.addActionListener(e -> {
+            long[] requested;
+            try {
+                requested = new long[] {
+                    parseFilterTime(fromField.getText(), false),
+                    parseFilterTime(toField.getText(), true)
+                };
+            } catch (java.time.format.DateTimeParseException ex) {
+                JOptionPane.showMessageDialog(
+                    listFrame,
+                    "Invalid date!\n\n" +
+                    "Enter dates as yyyy-MM-dd, or yyyy-MM-dd HH:mm for a time of day.",
+                    "Validation Error",
+                    JOptionPane.ERROR_MESSAGE
+                );
+                return;
+            }
+            if (requested[1] < requested[0]) {
+                JOptionPane.showMessageDialog(
+                    listFrame,
+                    "The From date must not be after the To date.",
+                    "Validation Error",
+                    JOptionPane.ERROR_MESSAGE
+                );
+                return;
+            }
+            loader[0].cancel(false);
+            progressBar.setVisible(false);
+            searchField.setEnabled(true);
+            tail[0].followEnd();
+            range[0] = requested;
+            scrollPane.setBorder(BorderFactory.createTitledBorder(
+                "Attendance Records " + fromField.getText().trim() + " to " + toField.getText().trim()
+                + " (Select to Delete)"));
+            queryAttendanceRange(listModel, range, requested, deleteButton);
+        });
+        
+        // Show Current button goes back to the live log
+        currentButton.addActionListener(e -> {
+            loader[0].cancel(false);
+            range[0] = null;
+            scrollPane.setBorder(BorderFactory.createTitledBorder(CURRENT_TITLE));
+            loader[0] = loadAttendanceList(listModel, progressBar, deleteButton, searchField, tail[0]);
+        });
+        
+        // Add what the tail reads to the list, or re-run the date filter if it is affected
+        tail[0] = new AttendanceLogTail(java.nio.file.Paths.get(LOG_FILE), new AttendanceLogTail.Listener() {
+            @Override
+            public void appended(MappedLogReader reader, RecordSpans records,
+                                 java.util.List<AttendanceRecord> decoded, IntHashSet deleted) {
+                if (range[0] == null) {
+                    boolean wasEmpty = !listModel.hasRecords();
+                    listModel.appendFollowed(reader, records, decoded, deleted);
+                    if (!listModel.hasRecords() && !wasEmpty) {
+                        listModel.setMessages("No attendance records found.");
+                    }
+                    deleteButton.setEnabled(listModel.hasRecords());
+                    return;
+                }
+                try {
+                    reader.close();
+                } catch (IOException ex) {
+                    System.err.println("Error closing attendance records: " + ex.getMessage());
+                }
+                boolean affected = !deleted.isEmpty();
+                for (AttendanceRecord record : decoded) {
+                    affected |= record != null
+                        && record.getEpochSecond() >= range[0][0] && record.getEpochSecond() <= range[0][1];
+                }
+                if (affected) {
+                    queryAttendanceRange(listModel, range, range[0], deleteButton);
+                }
+            }
+            
+            @Override
+            public void replaced() {
+                // Compacted or rolled over: offsets changed, so load again from the start
+                if (range[0] != null) {
+                    tail[0].followEnd();
+                    return;
+                }
+                loader[0].cancel(false);
+                loader[0] = loadAttendanceList(listModel, progressBar, deleteButton, searchField, tail[0]);
+            }
+        });
+        
+        // Records submitted here are picked up by the tail; have it look right away
+        java.util.function.Consumer<AttendanceRecord> savedListener = record -> tail[0].wake();
+        savedListeners.add(savedListener);
+        listFrame.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                savedListeners.remove(savedListener);
+            }
         });
         
         // Close button
@@ -450,27 +708,312 @@ public class AttendanceTracker extends JFrame {
         
         // Layout
         listFrame.setLayout(new BorderLayout());
+        listFrame.add(topPanel, BorderLayout.NORTH);
         listFrame.add(scrollPane, BorderLayout.CENTER);
         listFrame.add(buttonPanel, BorderLayout.SOUTH);
         
-        // Make visible
+        // Make visible, then start loading
         listFrame.setVisible(true);
+        loader[0] = loadAttendanceList(listModel, progressBar, deleteButton, searchField, tail[0]);
     }
     
     /**
-     * Rewrite the attendance file without deleted records
-     * @param records List of remaining records
+     * Display the check-ins of a day per course and year in a new window. The counts
+     * come from the log's counters, or from the server's as a client, and are read again
+     * every second and after each submit.
      */
-    private void rewriteAttendanceFile(java.util.List<String> records) {
-        try (FileWriter writer = new FileWriter("attendance_records.txt", false)) {
-            for (String record : records) {
-                writer.write(record + "\n");
-                writer.write("─".repeat(70) + "\n");
+    private void showSummary() {
+        JFrame summaryFrame = new JFrame("Attendance Summary");
+        summaryFrame.setSize(420, 260);
+        summaryFrame.setLocationRelativeTo(this);
+        summaryFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        
+        // Day to show
+        JTextField dayField = new JTextField(java.time.LocalDate.now().toString(), 11);
+        dayField.setToolTipText("yyyy-MM-dd");
+        JButton todayButton = new JButton("Today");
+        JPanel dayPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 5));
+        dayPanel.add(new JLabel("Day:"));
+        dayPanel.add(dayField);
+        dayPanel.add(todayButton);
+        
+        // One row per course and one column per year, with totals
+        Course[] courses = Course.values();
+        JLabel[] countLabels = new JLabel[AttendanceCounters.SLOTS];
+        JLabel[] courseTotals = new JLabel[courses.length];
+        JLabel totalLabel = new JLabel("0", SwingConstants.CENTER);
+        totalLabel.setFont(new Font("Arial", Font.BOLD, 12));
+        JPanel gridPanel = new JPanel(new GridLayout(courses.length + 1, Course.YEARS + 2, 5, 5));
+        gridPanel.setBorder(BorderFactory.createTitledBorder("Check-ins"));
+        gridPanel.add(new JLabel("Course", SwingConstants.CENTER));
+        for (int year = 1; year <= Course.YEARS; year++) {
+            gridPanel.add(new JLabel("Year " + year, SwingConstants.CENTER));
+        }
+        gridPanel.add(new JLabel("Total", SwingConstants.CENTER));
+        for (Course course : courses) {
+            JLabel courseLabel = new JLabel(course.name(), SwingConstants.CENTER);
+            courseLabel.setFont(new Font("Arial", Font.BOLD, 12));
+            gridPanel.add(courseLabel);
+            for (int year = 1; year <= Course.YEARS; year++) {
+                JLabel countLabel = new JLabel("0", SwingConstants.CENTER);
+                countLabels[course.ordinal() * Course.YEARS + year - 1] = countLabel;
+                gridPanel.add(countLabel);
             }
-        } catch (IOException ex) {
-            System.err.println("Error rewriting file: " + ex.getMessage());
+            courseTotals[course.ordinal()] = new JLabel("0", SwingConstants.CENTER);
+            gridPanel.add(courseTotals[course.ordinal()]);
+        }
+        
+        JLabel statusLabel = new JLabel(" ");
+        JPanel totalPanel = new JPanel(new BorderLayout(5, 0));
+        totalPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 0, 10));
+        totalPanel.add(statusLabel, BorderLayout.CENTER);
+        totalPanel.add(new JLabel("All courses:"), BorderLayout.WEST);
+        totalPanel.add(totalLabel, BorderLayout.EAST);
+        
+        // Show a day's counts, or why there are none
+        java.util.function.BiConsumer<int[], String> show = (counts, status) -> {
+            for (int slot = 0; slot < AttendanceCounters.SLOTS; slot++) {
+                countLabels[slot].setText(counts == null ? "-" : String.valueOf(counts[slot]));
+            }
+            for (Course course : courses) {
+                int total = 0;
+                for (int year = 0; year < Course.YEARS && counts != null; year++) {
+                    total += counts[course.ordinal() * Course.YEARS + year];
+                }
+                courseTotals[course.ordinal()].setText(counts == null ? "-" : String.valueOf(total));
+            }
+            totalLabel.setText(counts == null ? "-" : String.valueOf(counts[AttendanceCounters.TOTAL]));
+            statusLabel.setText(status);
+        };
+        
+        // Read the counters: straight from the log's, or from the server's off the EDT
+        boolean[] requesting = {false};
+        Runnable refresh = () -> {
+            java.time.LocalDate day;
+            try {
+                day = java.time.LocalDate.parse(dayField.getText().trim());
+            } catch (java.time.format.DateTimeParseException ex) {
+                show.accept(null, "Enter the day as yyyy-MM-dd");
+                return;
+            }
+            if (server == null) {
+                AttendanceCounters counters = attendanceLog.getCounters();
+                show.accept(counters.isLoaded() ? counters.countsOf(day.toEpochDay()) : null,
+                    counters.isLoaded() ? " " : "Counting attendance records...");
+                return;
+            }
+            if (requesting[0]) {
+                return;
+            }
+            requesting[0] = true;
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    return server.counts(day);
+                } catch (IOException ex) {
+                    throw new java.util.concurrent.CompletionException(ex);
+                }
+            }).whenComplete((counts, error) -> SwingUtilities.invokeLater(() -> {
+                requesting[0] = false;
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    show.accept(null, cause.getMessage());
+                } else if (day.toString().equals(dayField.getText().trim())) {
+                    show.accept(counts, " ");
+                }
+            }));
+        };
+        Timer refreshTimer = new Timer(SUMMARY_REFRESH_MS, e -> refresh.run());
+        dayField.addActionListener(e -> refresh.run());
+        todayButton.addActionListener(e -> {
+            dayField.setText(java.time.LocalDate.now().toString());
+            refresh.run();
+        });
+        
+        // Records submitted here show up right away
+        java.util.function.Consumer<AttendanceRecord> savedListener = record -> refresh.run();
+        savedListeners.add(savedListener);
+        summaryFrame.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                refreshTimer.stop();
+                savedListeners.remove(savedListener);
+            }
+        });
+        
+        // Rebuild button counts everything again from the log, e.g. after it was edited by hand
+        JButton rebuildButton = new JButton("Rebuild");
+        rebuildButton.setBackground(Color.BLUE.darker());
+        rebuildButton.setForeground(Color.BLUE);
+        rebuildButton.setFocusPainted(false);
+        rebuildButton.addActionListener(e -> {
+            rebuildButton.setEnabled(false);
+            statusLabel.setText("Rebuilding counts...");
+            CompletableFuture<Void> rebuilt = server == null
+                ? attendanceLog.recount()
+                : CompletableFuture.runAsync(() -> {
+                    try {
+                        server.recount();
+                    } catch (IOException ex) {
+                        throw new java.util.concurrent.CompletionException(ex);
+                    }
+                });
+            rebuilt.whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+                rebuildButton.setEnabled(true);
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    JOptionPane.showMessageDialog(
+                        summaryFrame,
+                        "Error rebuilding attendance counts: " + cause.getMessage(),
+                        "Rebuild Error",
+                        JOptionPane.ERROR_MESSAGE
+                    );
+                }
+                refresh.run();
+            }));
+        });
+        
+        // Close button
+        JButton closeButton = new JButton("Close");
+        closeButton.setBackground(Color.LIGHT_GRAY);
+        closeButton.setForeground(Color.BLACK);
+        closeButton.setFocusPainted(false);
+        closeButton.addActionListener(e -> summaryFrame.dispose());
+        
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
+        buttonPanel.add(rebuildButton);
+        buttonPanel.add(closeButton);
+        
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.add(totalPanel, BorderLayout.NORTH);
+        bottomPanel.add(buttonPanel, BorderLayout.SOUTH);
+        
+        // Layout
+        summaryFrame.setLayout(new BorderLayout());
+        summaryFrame.add(dayPanel, BorderLayout.NORTH);
+        summaryFrame.add(gridPanel, BorderLayout.CENTER);
+        summaryFrame.add(bottomPanel, BorderLayout.SOUTH);
+        
+        summaryFrame.setVisible(true);
+        refresh.run();
+        refreshTimer.start();
+    }
+    
+    /**
+     * Start loading the attendance log into a list window in the background
+     * @param listModel Model of the list window
+     * @param progressBar Shows the scan progress, hidden once loading ends
+     * @param deleteButton Disabled while the list is incomplete
+     * @param searchField Disabled until the search index is built, then applied to the loaded list
+     * @param tail Paused during the load, then follows the log from where the load ended
+     * @return The running loader
+     */
+    private AttendanceListLoader loadAttendanceList(AttendanceListModel listModel, JProgressBar progressBar,
+                                                    JButton deleteButton, JTextField searchField,
+                                                    AttendanceLogTail tail) {
+        tail.pause();
+        AttendanceListLoader loader = new AttendanceListLoader(java.nio.file.Paths.get(LOG_FILE), currentIndex(), listModel);
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        deleteButton.setEnabled(false);
+        searchField.setEnabled(false);
+        
+        loader.addPropertyChangeListener(event -> {
+            if ("progress".equals(event.getPropertyName())) {
+                progressBar.setValue((Integer) event.getNewValue());
+            } else if ("state".equals(event.getPropertyName())
+                    && event.getNewValue() == SwingWorker.StateValue.DONE && !loader.isCancelled()) {
+                progressBar.setVisible(false);
+                deleteButton.setEnabled(true);
+                searchField.setEnabled(true);
+                listModel.setQuery(searchField.getText());
+                if (loader.getLoadedEnd() >= 0) {
+                    tail.follow(loader.getLoadedEnd());
+                }
+            }
+        });
+        loader.execute();
+        return loader;
+    }
+    
+    /**
+     * Run a date-range query off the EDT and show its results in a list window
+     * @param listModel Model of the list window
+     * @param range The window's current range, checked so a superseded query is dropped
+     * @param requested Time In range as epoch seconds, first and last included
+     * @param deleteButton Disabled until the results are shown
+     */
+    private void queryAttendanceRange(AttendanceListModel listModel, long[][] range, long[] requested,
+                                      JButton deleteButton) {
+        deleteButton.setEnabled(false);
+        listModel.setMessages("Searching attendance records...");
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return segments.query(requested[0], requested[1]);
+            } catch (IOException ex) {
+                throw new java.util.concurrent.CompletionException(ex);
+            }
+        }).whenComplete((records, error) -> SwingUtilities.invokeLater(() -> {
+            if (range[0] != requested) {
+                return;
+            }
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                listModel.setMessages("Error reading attendance records: " + cause.getMessage());
+            } else if (records.isEmpty()) {
+                listModel.setMessages("No attendance records found in this date range.");
+            } else {
+                listModel.setResults(records);
+                deleteButton.setEnabled(true);
+            }
+        }));
+    }
+    
+    /**
+     * Parse a date filter field
+     * @param text "yyyy-MM-dd" or "yyyy-MM-dd HH:mm"
+     * @param end Whether this is the end of the range, which takes in the whole day or minute
+     * @return The Time In as epoch seconds
+     */
+    private static long parseFilterTime(String text, boolean end) {
+        text = text.trim();
+        if (text.length() <= 10) {
+            java.time.LocalDate date = java.time.LocalDate.parse(text);
+            return (end ? date.atTime(23, 59, 59) : date.atStartOfDay()).toEpochSecond(java.time.ZoneOffset.UTC);
+        }
+        LocalDateTime time = LocalDateTime.parse(text, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+        return time.toEpochSecond(java.time.ZoneOffset.UTC) + (end ? 59 : 0);
+    }
+    
+    /**
+     * Delete a record by appending a tombstone for its e-signature
+     * @param signature Packed e-signature of the record to delete
+     * @return Completes once the tombstone meets the configured durability mode
+     */
+    private CompletableFuture<Void> deleteRecord(int signature) {
+        if (server != null) {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    server.delete(signature);
+                } catch (IOException ex) {
+                    throw new java.util.concurrent.CompletionException(ex);
+                }
+            });
+        }
+        return attendanceLog.delete(signature);
+    }
+    
+    /**
+     * Write out queued records and close the offset index, or disconnect from the server
+     */
+    private void closeLog() {
+        if (attendanceLog != null) {
+            attendanceLog.close();
+        }
+        if (server != null) {
+            server.close();
         }
     }
+    
     /**
      * Main method to run the application
      */
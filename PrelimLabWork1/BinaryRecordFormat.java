@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Binary Record Format
+ * Compact, length-prefixed layout of the attendance log.
+ *
+ * Header (8 bytes): magic "ATRB", u16 format version, u16 reserved.
+ * Record: u16 body length, then the body:
+ *   u8  kind (0 = check-in)
+ *   u8  course ordinal * 4 + (year - 1)
+ *   u32 Time In as epoch seconds
+ *   i32 e-signature
+ *   name as UTF-8, filling the rest of the body
+ * Tombstone: u16 body length (5), u8 kind (1), i32 e-signature of the deleted record
+ */
+public final class BinaryRecordFormat {
+
+    public static final byte[] MAGIC = {'A', 'T', 'R', 'B'};
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+
+    public static final int KIND_RECORD = 0;
+    public static final int KIND_TOMBSTONE = 1;
+
+    /** Offsets of the fixed fields from the start of a record (its length prefix) */
+    public static final int KIND_OFFSET = 2;
+    public static final int RECORD_TIME_OFFSET = 4;
+    public static final int RECORD_SIGNATURE_OFFSET = 8;
+    public static final int TOMBSTONE_SIGNATURE_OFFSET = 3;
+
+    // Fixed part of the body: kind, course/year, time, signature
+    private static final int FIXED_BODY_SIZE = 1 + 1 + 4 + 4;
+    private static final int MAX_BODY_SIZE = 0xFFFF;
+
+    private BinaryRecordFormat() {
+    }
+
+    /**
+     * @return The 8 byte file header for the current format version
+     */
+    public static byte[] header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).putShort((short) VERSION).putShort((short) 0);
+        return header.array();
+    }
+
+    /**
+     * Check whether a file starts with the binary log header
+     * @param file The log file
+     * @return true if the file exists and is a binary log
+     */
+    public static boolean isBinary(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] magic = in.readNBytes(MAGIC.length);
+            return Arrays.equals(magic, MAGIC);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Validate the header at the buffer's position and move past it
+     * @param buffer Buffer positioned at the start of the file
+     * @throws IOException If the header is missing or the version is unsupported
+     */
+    public static void readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE) {
+            throw new IOException("Binary attendance log is missing its header");
+        }
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a binary attendance log");
+        }
+        int version = Short.toUnsignedInt(buffer.getShort());
+        buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary attendance log version: " + version);
+        }
+    }
+
+    /**
+     * Encode one record, including its length prefix
+     * @param record The record to encode
+     * @return The encoded bytes
+     */
+    public static byte[] encode(AttendanceRecord record) {
+        byte[] name = record.getName().getBytes(StandardCharsets.UTF_8);
+        int bodyLength = FIXED_BODY_SIZE + name.length;
+        if (bodyLength > MAX_BODY_SIZE) {
+            throw new IllegalArgumentException("Student name is too long");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(2 + bodyLength);
+        buffer.putShort((short) bodyLength);
+        buffer.put((byte) KIND_RECORD);
+        buffer.put((byte) (record.getCourse().ordinal() * Course.YEARS + record.getYear() - 1));
+        buffer.putInt((int) record.getEpochSecond());
+        buffer.putInt(record.getSignature());
+        buffer.put(name);
+        return buffer.array();
+    }
+
+    /**
+     * Encode a tombstone for a deleted record, including its length prefix
+     * @param signature Packed e-signature of the deleted record
+     * @return The encoded bytes
+     */
+    public static byte[] encodeTombstone(int signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(2 + 5);
+        buffer.putShort((short) 5);
+        buffer.put((byte) KIND_TOMBSTONE);
+        buffer.putInt(signature);
+        return buffer.array();
+    }
+
+    /**
+     * Decode the record at the buffer's position and move past it
+     * @param buffer Buffer positioned at a length prefix
+     * @return The decoded record
+     * @throws IOException If the record is truncated or of an unknown kind
+     */
+    public static AttendanceRecord decode(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 2) {
+            throw new IOException("Truncated binary attendance record");
+        }
+        int bodyLength = Short.toUnsignedInt(buffer.getShort());
+        if (bodyLength < FIXED_BODY_SIZE || buffer.remaining() < bodyLength) {
+            throw new IOException("Truncated binary attendance record");
+        }
+        int kind = buffer.get();
+        if (kind != KIND_RECORD) {
+            throw new IOException("Unknown binary record kind: " + kind);
+        }
+        int courseYear = Byte.toUnsignedInt(buffer.get());
+        long epochSecond = Integer.toUnsignedLong(buffer.getInt());
+        int signature = buffer.getInt();
+        byte[] name = new byte[bodyLength - FIXED_BODY_SIZE];
+        buffer.get(name);
+
+        Course[] courses = Course.values();
+        int courseIndex = courseYear / Course.YEARS;
+        if (courseIndex >= courses.length) {
+            throw new IOException("Unknown course ordinal: " + courseIndex);
+        }
+        return new AttendanceRecord(new String(name, StandardCharsets.UTF_8),
+            courses[courseIndex], courseYear % Course.YEARS + 1, epochSecond, signature);
+    }
+}
@@ -0,0 +1,58 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Copy Buffers
+ * Helpers for the rewrites of the log (compaction, sealing segments), which copy
+ * records into a new file through one heap buffer instead of a write per record.
+ */
+final class CopyBuffers {
+
+    private CopyBuffers() {
+    }
+
+    /**
+     * Append bytes to the copy buffer, draining it to the channel when full
+     * @param out The file being written
+     * @param buffer The copy buffer
+     * @param bytes The bytes to append
+     * @return The copy buffer
+     * @throws IOException If the file cannot be written
+     */
+    static ByteBuffer write(FileChannel out, ByteBuffer buffer, byte[] bytes) throws IOException {
+        if (buffer.remaining() < bytes.length) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+            if (bytes.length > buffer.capacity()) {
+                ByteBuffer large = ByteBuffer.wrap(bytes);
+                while (large.hasRemaining()) {
+                    out.write(large);
+                }
+                return buffer;
+            }
+        }
+        buffer.put(bytes);
+        return buffer;
+    }
+
+    /**
+     * Drain the copy buffer and force the file unless durability is off
+     * @param out The file being written
+     * @param buffer The copy buffer
+     * @param durability The writer's durability mode
+     * @throws IOException If the file cannot be written
+     */
+    static void finish(FileChannel out, ByteBuffer buffer, DurabilityMode durability) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        if (durability != DurabilityMode.NONE) {
+            out.force(true);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import java.util.regex.Pattern;
+
+/**
+ * Course
+ * Course codes accepted by the attendance tracker. The ordinal is stored in the
+ * binary log, so new courses must only ever be added at the end.
+ */
+public enum Course {
+    BSIT,
+    BSCS,
+    BSIS,
+    BSCPE;
+
+    /** Number of year levels per course (1-4) */
+    public static final int YEARS = 4;
+
+    // Course code (BSIT, BSCS, BSIS, BSCpE) followed by dash and year (1-4)
+    private static final Pattern COURSE_YEAR = Pattern.compile("^(BSIT|BSCS|BSIS|BSCPE)-[1-4]$");
+
+    /**
+     * Look up a course by its code, ignoring case
+     * @param code The course code, e.g. "BSCpE"
+     * @return The matching course
+     */
+    public static Course fromCode(String code) {
+        try {
+            return Course.valueOf(code.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown course: " + code);
+        }
+    }
+
+    /**
+     * Validate course/year format, as the tracker form and the attendance server do.
+     * Examples: BSIT-1, BSCS-2, BSIS-3, BSCpE-4
+     * @param courseYear The course/year string to validate
+     * @return true if valid, false otherwise
+     */
+    public static boolean isValidCourseYear(String courseYear) {
+        // Remove spaces and convert to uppercase for validation
+        return COURSE_YEAR.matcher(courseYear.trim().toUpperCase()).matches();
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Durability Mode
+ * How far a record must reach before the attendance log writer reports it as saved
+ */
+public enum DurabilityMode {
+    /** Written to the operating system, never forced to disk */
+    NONE,
+    /** Each batch is forced to disk once, after all of its records are written */
+    BATCHED,
+    /** Every record is forced to disk on its own before the next one is written */
+    PER_RECORD;
+
+    /**
+     * Parse a mode name such as "none", "batched" or "per-record"
+     * @param value The configured value, may be null
+     * @param fallback The mode to use when no value is configured
+     * @return The matching durability mode
+     */
+    public static DurabilityMode parse(String value, DurabilityMode fallback) {
+        if (value == null || value.trim().isEmpty()) {
+            return fallback;
+        }
+        String normalized = value.trim().toUpperCase().replace('-', '_');
+        try {
+            return DurabilityMode.valueOf(normalized);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown durability mode: " + value
+                    + " (expected none, batched or per-record)");
+        }
+    }
+}
@@ -0,0 +1,174 @@
+import java.util.Arrays;
+
+/**
+ * Int Hash Set
+ * Open-addressing set of primitive ints (linear probing), used for e-signatures so
+ * large logs never box millions of Integer keys.
+ */
+public class IntHashSet {
+
+    private static final int EMPTY = 0;
+
+    private int[] slots;
+    private int size;
+    private boolean containsZero;
+
+    public IntHashSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize Number of values the set should hold without resizing
+     */
+    public IntHashSet(int expectedSize) {
+        slots = new int[tableSizeFor(expectedSize)];
+    }
+
+    /**
+     * @param value Value to add
+     * @return true if the value was not in the set yet
+     */
+    public boolean add(int value) {
+        if (value == EMPTY) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int index = mix(value) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[index] = value;
+        size++;
+        if (size * 2 > slots.length) {
+            resize(slots.length * 2);
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        if (value == EMPTY) {
+            return containsZero;
+        }
+        int mask = slots.length - 1;
+        int index = mix(value) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @param value Value to remove
+     * @return true if the value was in the set
+     */
+    public boolean remove(int value) {
+        if (value == EMPTY) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int index = mix(value) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) {
+                slots[index] = EMPTY;
+                size--;
+                reinsertAfter(index);
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The values in no particular order
+     */
+    public int[] toArray() {
+        int[] values = new int[size];
+        int count = 0;
+        if (containsZero) {
+            values[count++] = EMPTY;
+        }
+        for (int value : slots) {
+            if (value != EMPTY) {
+                values[count++] = value;
+            }
+        }
+        return values;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, EMPTY);
+        containsZero = false;
+        size = 0;
+    }
+
+    /**
+     * Close the gap left by a removal so later probes still find their values
+     */
+    private void reinsertAfter(int removed) {
+        int mask = slots.length - 1;
+        int index = (removed + 1) & mask;
+        while (slots[index] != EMPTY) {
+            int value = slots[index];
+            slots[index] = EMPTY;
+            int target = mix(value) & mask;
+            while (slots[target] != EMPTY) {
+                target = (target + 1) & mask;
+            }
+            slots[target] = value;
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        int[] old = slots;
+        slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int value : old) {
+            if (value != EMPTY) {
+                int index = mix(value) & mask;
+                while (slots[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                slots[index] = value;
+            }
+        }
+    }
+
+    static int mix(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2 && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+/**
+ * Int Int Hash Map
+ * Open-addressing map from primitive int keys to int values (linear probing), the
+ * map counterpart of {@link IntHashSet}.
+ */
+public class IntIntHashMap {
+
+    private static final int EMPTY = 0;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private boolean containsZero;
+    private int zeroValue;
+
+    public IntIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize Number of entries the map should hold without resizing
+     */
+    public IntIntHashMap(int expectedSize) {
+        keys = new int[tableSizeFor(expectedSize)];
+        values = new int[keys.length];
+    }
+
+    /**
+     * @param key The key
+     * @param value Value to store, replacing any previous value
+     */
+    public void put(int key, int value) {
+        if (key == EMPTY) {
+            if (!containsZero) {
+                containsZero = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int mask = keys.length - 1;
+        int index = IntHashSet.mix(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+        if (size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /**
+     * @param key The key
+     * @param missing Value returned when the key is absent
+     * @return The stored value, or missing
+     */
+    public int get(int key, int missing) {
+        if (key == EMPTY) {
+            return containsZero ? zeroValue : missing;
+        }
+        int mask = keys.length - 1;
+        int index = IntHashSet.mix(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return missing;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == EMPTY) {
+            return containsZero;
+        }
+        int mask = keys.length - 1;
+        int index = IntHashSet.mix(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @param key Key to remove
+     * @return true if the key was in the map
+     */
+    public boolean remove(int key) {
+        if (key == EMPTY) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int mask = keys.length - 1;
+        int index = IntHashSet.mix(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                keys[index] = EMPTY;
+                size--;
+                reinsertAfter(index);
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        containsZero = false;
+        size = 0;
+    }
+
+    /**
+     * Close the gap left by a removal so later probes still find their entries
+     */
+    private void reinsertAfter(int removed) {
+        int mask = keys.length - 1;
+        int index = (removed + 1) & mask;
+        while (keys[index] != EMPTY) {
+            int key = keys[index];
+            int value = values[index];
+            keys[index] = EMPTY;
+            int target = IntHashSet.mix(key) & mask;
+            while (keys[target] != EMPTY) {
+                target = (target + 1) & mask;
+            }
+            keys[target] = key;
+            values[target] = value;
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int index = IntHashSet.mix(oldKeys[i]) & mask;
+                while (keys[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2 && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
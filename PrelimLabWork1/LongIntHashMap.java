@@ -0,0 +1,211 @@
+import java.util.Arrays;
+
+/**
+ * Long Int Hash Map
+ * Open-addressing map from primitive long keys to int values (linear probing), the
+ * 64-bit key counterpart of {@link IntIntHashMap}.
+ */
+public class LongIntHashMap {
+
+    private static final long EMPTY = 0;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private boolean containsZero;
+    private int zeroValue;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize Number of entries the map should hold without resizing
+     */
+    public LongIntHashMap(int expectedSize) {
+        keys = new long[tableSizeFor(expectedSize)];
+        values = new int[keys.length];
+    }
+
+    /**
+     * @param key The key
+     * @param value Value to store, replacing any previous value
+     */
+    public void put(long key, int value) {
+        if (key == EMPTY) {
+            if (!containsZero) {
+                containsZero = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+        if (size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /**
+     * @param key The key
+     * @param missing Value returned when the key is absent
+     * @return The stored value, or missing
+     */
+    public int get(long key, int missing) {
+        if (key == EMPTY) {
+            return containsZero ? zeroValue : missing;
+        }
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return missing;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == EMPTY) {
+            return containsZero;
+        }
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @param key Key to remove
+     * @return true if the key was in the map
+     */
+    public boolean remove(long key) {
+        if (key == EMPTY) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                keys[index] = EMPTY;
+                size--;
+                reinsertAfter(index);
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Remove every entry with a value, by a scan of the whole table; for rare
+     * removals where only the value is known
+     * @param value Value to remove
+     * @return Number of entries removed
+     */
+    public int removeValue(int value) {
+        int removed = 0;
+        if (containsZero && zeroValue == value) {
+            containsZero = false;
+            size--;
+            removed++;
+        }
+        for (int index = 0; index < keys.length; index++) {
+            // An entry shifted into the freed slot is checked before moving on
+            while (keys[index] != EMPTY && values[index] == value) {
+                keys[index] = EMPTY;
+                size--;
+                removed++;
+                reinsertAfter(index);
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        containsZero = false;
+        size = 0;
+    }
+
+    /**
+     * Close the gap left by a removal so later probes still find their entries
+     */
+    private void reinsertAfter(int removed) {
+        int mask = keys.length - 1;
+        int index = (removed + 1) & mask;
+        while (keys[index] != EMPTY) {
+            long key = keys[index];
+            int value = values[index];
+            keys[index] = EMPTY;
+            int target = mix(key) & mask;
+            while (keys[target] != EMPTY) {
+                target = (target + 1) & mask;
+            }
+            keys[target] = key;
+            values[target] = value;
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int index = mix(oldKeys[i]) & mask;
+                while (keys[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2 && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
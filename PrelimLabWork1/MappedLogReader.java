@@ -0,0 +1,446 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Mapped Log Reader
+ * Finds record boundaries of the attendance log directly in a memory-mapped view of
+ * the file and decodes a record only when it is asked for. Files larger than one
+ * mapping window are mapped one window at a time.
+ */
+public class MappedLogReader implements Closeable {
+
+    /**
+     * Receives the span of each record, and each tombstone, as the scan finds it
+     */
+    public interface SpanConsumer {
+        void record(long offset, int length, int signature);
+
+        default void tombstone(long offset, int length, int signature) {
+        }
+    }
+
+    /** Size of one mapping window, 64 MB unless -Dattendance.mapWindowMb says otherwise */
+    static final long DEFAULT_WINDOW = Long.getLong("attendance.mapWindowMb", 64L) * 1024 * 1024;
+
+    // First bytes of the "─" separator line in UTF-8
+    private static final byte SEP_0 = (byte) 0xE2;
+    private static final byte SEP_1 = (byte) 0x94;
+    private static final byte SEP_2 = (byte) 0x80;
+
+    private static final byte[] TIME_LABEL = " | Time: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TOMBSTONE = TextRecordFormat.TOMBSTONE_PREFIX.getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final long size;
+    private final long windowSize;
+    private final boolean binary;
+
+    // Currently mapped window
+    private MappedByteBuffer window;
+    private long windowBase;
+
+    /**
+     * Open a log for reading. The file size is fixed at open time.
+     * @param file The attendance log
+     * @throws IOException If the file cannot be opened
+     */
+    public MappedLogReader(Path file) throws IOException {
+        this(file, DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param file The attendance log
+     * @param windowSize Largest region mapped at once
+     * @throws IOException If the file cannot be opened
+     */
+    public MappedLogReader(Path file, long windowSize) throws IOException {
+        this(file, windowSize, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param file The attendance log
+     * @param windowSize Largest region mapped at once
+     * @param maxSize Read no further than this, e.g. the size another reader saw
+     * @throws IOException If the file cannot be opened
+     */
+    public MappedLogReader(Path file, long windowSize, long maxSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = Math.min(channel.size(), maxSize);
+        this.windowSize = Math.max(4096, Math.min(windowSize, Integer.MAX_VALUE));
+        this.binary = size >= BinaryRecordFormat.HEADER_SIZE && hasBinaryHeader();
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Locate every live record in the log without decoding any of them.
+     * Records deleted by a tombstone are left out.
+     * @return Offset, length and signature of each live record, in file order
+     * @throws IOException If the file cannot be read or is malformed
+     */
+    public RecordSpans scan() throws IOException {
+        RecordSpans spans = new RecordSpans((int) Math.min(size / 96 + 16, 1 << 20));
+        IntHashSet deleted = new IntHashSet();
+        scan(new SpanConsumer() {
+            @Override
+            public void record(long offset, int length, int signature) {
+                spans.add(offset, length, signature);
+            }
+
+            @Override
+            public void tombstone(long offset, int length, int signature) {
+                deleted.add(signature);
+            }
+        });
+        spans.removeSignatures(deleted);
+        return spans;
+    }
+
+    /**
+     * Locate every record and tombstone in the log, handing each over as soon as it is found
+     * @param consumer Receives the spans in file order
+     * @throws IOException If the file cannot be read or is malformed
+     */
+    public void scan(SpanConsumer consumer) throws IOException {
+        scan(consumer, 0);
+    }
+
+    /**
+     * Locate the records and tombstones from a known entry boundary to the end of the log
+     * @param consumer Receives the spans in file order
+     * @param from Offset where an entry starts, e.g. the end of what an index already covers
+     * @throws IOException If the file cannot be read or is malformed
+     */
+    public void scan(SpanConsumer consumer, long from) throws IOException {
+        if (binary) {
+            scanBinary(consumer, from);
+        } else {
+            scanText(consumer, from);
+        }
+    }
+
+    /**
+     * Decode one record into the text shown in the list window
+     * @param offset Byte offset of the record
+     * @param length Length of the record in bytes
+     * @return The record line
+     * @throws IOException If the record cannot be read
+     */
+    public String decode(long offset, int length) throws IOException {
+        if (binary) {
+            return decodeRecord(offset, length).toText();
+        }
+        String text = new String(readBytes(offset, length), StandardCharsets.UTF_8);
+        return text.indexOf('\n') < 0 ? text : joinLines(text);
+    }
+
+    /**
+     * Copy the raw bytes of one record
+     * @param offset Byte offset of the record
+     * @param length Length of the record in bytes
+     * @return The record exactly as stored in the log
+     * @throws IOException If the record cannot be read
+     */
+    public byte[] readBytes(long offset, int length) throws IOException {
+        ByteBuffer buffer = map(offset, length);
+        byte[] bytes = new byte[length];
+        buffer.get((int) (offset - windowBase), bytes);
+        return bytes;
+    }
+
+    /**
+     * Decode one binary record into its fields
+     * @param offset Byte offset of the record's length prefix
+     * @param length Length of the record in bytes
+     * @return The record
+     * @throws IOException If the record cannot be read
+     */
+    public AttendanceRecord decodeRecord(long offset, int length) throws IOException {
+        if (!binary) {
+            return AttendanceRecord.parse(decode(offset, length));
+        }
+        ByteBuffer buffer = map(offset, length).duplicate();
+        buffer.position((int) (offset - windowBase));
+        buffer.limit((int) (offset - windowBase) + length);
+        return BinaryRecordFormat.decode(buffer);
+    }
+
+    /**
+     * Read the Time In of one record without decoding the rest of it
+     * @param offset Byte offset of the record
+     * @param length Length of the record in bytes
+     * @return Time In as epoch seconds, or 0 if the record has no readable time
+     * @throws IOException If the record cannot be read
+     */
+    public long epochSecond(long offset, int length) throws IOException {
+        ByteBuffer buffer = map(offset, length);
+        int at = (int) (offset - windowBase);
+        if (binary) {
+            return Integer.toUnsignedLong(buffer.getInt(at + BinaryRecordFormat.RECORD_TIME_OFFSET));
+        }
+
+        // Find " | Time: " and read the fixed-width "yyyy-MM-dd HH:mm:ss" after it
+        int end = at + length;
+        for (int i = at; i + TIME_LABEL.length + 19 <= end; i++) {
+            if (startsWith(buffer, i, end, TIME_LABEL)) {
+                int t = i + TIME_LABEL.length;
+                int year = digits(buffer, t, 4);
+                int month = digits(buffer, t + 5, 2);
+                int day = digits(buffer, t + 8, 2);
+                int hour = digits(buffer, t + 11, 2);
+                int minute = digits(buffer, t + 14, 2);
+                int second = digits(buffer, t + 17, 2);
+                if ((year | month | day | hour | minute | second) < 0 || month < 1 || month > 12
+                        || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 59) {
+                    return 0;
+                }
+                try {
+                    return java.time.LocalDate.of(year, month, day).toEpochDay() * 86400L
+                        + hour * 3600L + minute * 60L + second;
+                } catch (java.time.DateTimeException ex) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    private boolean hasBinaryHeader() throws IOException {
+        ByteBuffer header = map(0, BinaryRecordFormat.HEADER_SIZE);
+        for (int i = 0; i < BinaryRecordFormat.MAGIC.length; i++) {
+            if (header.get(i) != BinaryRecordFormat.MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Text log: a record is the non-blank content between separator lines.
+     * Lines are scanned in place; a line crossing the window end triggers a remap
+     * starting at that line. The scan maps its own windows, since consumers may decode
+     * records through this reader (and so move its window) while the scan is running.
+     */
+    private void scanText(SpanConsumer consumer, long from) throws IOException {
+        long recordStart = -1;
+        long contentEnd = -1;
+        int recordSignature = 0;
+        long position = from;
+        long base = from;
+        ByteBuffer buffer = from < size ? mapScanWindow(from) : null;
+
+        while (position < size) {
+            int start = (int) (position - base);
+            int limit = buffer.limit();
+            int newline = start;
+            while (newline < limit && buffer.get(newline) != '\n') {
+                newline++;
+            }
+            long windowEnd = base + limit;
+            if (newline == limit && windowEnd < size) {
+                if (start == 0) {
+                    throw new IOException("Record at offset " + position + " is larger than the mapping window");
+                }
+                base = position;
+                buffer = mapScanWindow(position);
+                continue;
+            }
+
+            // Trim the line to its non-whitespace content
+            int first = start;
+            while (first < newline && isWhitespace(buffer.get(first))) {
+                first++;
+            }
+            int last = newline;
+            while (last > first && isWhitespace(buffer.get(last - 1))) {
+                last--;
+            }
+
+            if (first < last) {
+                if (buffer.get(first) == SEP_0 && first + 2 < last
+                        && buffer.get(first + 1) == SEP_1 && buffer.get(first + 2) == SEP_2) {
+                    if (recordStart >= 0) {
+                        consumer.record(recordStart, (int) (contentEnd - recordStart), recordSignature);
+                        recordStart = -1;
+                    }
+                } else if (startsWith(buffer, first, last, TOMBSTONE)) {
+                    if (recordStart >= 0) {
+                        consumer.record(recordStart, (int) (contentEnd - recordStart), recordSignature);
+                        recordStart = -1;
+                    }
+                    consumer.tombstone(base + first, last - first, trailingHex(buffer, first, last));
+                } else {
+                    if (recordStart < 0) {
+                        recordStart = base + first;
+                    }
+                    contentEnd = base + last;
+                    recordSignature = trailingHex(buffer, first, last);
+                }
+            }
+            position = base + newline + 1;
+        }
+
+        if (recordStart >= 0) {
+            consumer.record(recordStart, (int) (contentEnd - recordStart), recordSignature);
+        }
+    }
+
+    /**
+     * End of the last complete entry: short of the size if the last binary record was
+     * cut short, e.g. by a crash while it was appended. The size of a text log.
+     * @return Offset just past the last complete entry
+     * @throws IOException If the file cannot be read or is malformed
+     */
+    public long completeSize() throws IOException {
+        if (!binary) {
+            return size;
+        }
+        long[] end = {BinaryRecordFormat.HEADER_SIZE};
+        scanBinary(new SpanConsumer() {
+            @Override
+            public void record(long offset, int length, int signature) {
+                end[0] = offset + length;
+            }
+
+            @Override
+            public void tombstone(long offset, int length, int signature) {
+                end[0] = offset + length;
+            }
+        }, 0);
+        return end[0];
+    }
+
+    /**
+     * Binary log: records follow the header back to back, each with a u16 body length.
+     * A last record cut short is left out, as it is still being written or never will be.
+     */
+    private void scanBinary(SpanConsumer consumer, long from) throws IOException {
+        BinaryRecordFormat.readHeader(map(0, BinaryRecordFormat.HEADER_SIZE).duplicate());
+        long position = Math.max(from, BinaryRecordFormat.HEADER_SIZE);
+        while (position < size) {
+            if (position + 2 > size) {
+                return;
+            }
+            ByteBuffer buffer = map(position, 2);
+            int length = 2 + Short.toUnsignedInt(buffer.getShort((int) (position - windowBase)));
+            if (length < 2 + 5) {
+                throw new IOException("Malformed binary attendance record at offset " + position);
+            }
+            if (position + length > size) {
+                return;
+            }
+            buffer = map(position, length);
+            int at = (int) (position - windowBase);
+            if (buffer.get(at + BinaryRecordFormat.KIND_OFFSET) == BinaryRecordFormat.KIND_TOMBSTONE) {
+                consumer.tombstone(position, length,
+                    buffer.getInt(at + BinaryRecordFormat.TOMBSTONE_SIGNATURE_OFFSET));
+            } else {
+                consumer.record(position, length, buffer.getInt(at + BinaryRecordFormat.RECORD_SIGNATURE_OFFSET));
+            }
+            position += length;
+        }
+    }
+
+    /**
+     * Make sure [offset, offset + length) is inside the mapped window, remapping if needed
+     * @return The mapped window; index it with (offset - windowBase)
+     */
+    private ByteBuffer map(long offset, int length) throws IOException {
+        if (window == null || offset < windowBase || offset + length > windowBase + window.limit()
+                || (length == 0 && offset != windowBase)) {
+            long mapSize = Math.min(windowSize, size - offset);
+            if (mapSize < length) {
+                throw new IOException("Record at offset " + offset + " runs past the end of the file");
+            }
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset, mapSize);
+            windowBase = offset;
+        }
+        return window;
+    }
+
+    /**
+     * Map a window for a scan, separate from the window records are decoded from
+     * @return The window; index it with (offset - start of the window)
+     */
+    private ByteBuffer mapScanWindow(long offset) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowSize, size - offset));
+    }
+
+    /**
+     * @return The decimal value of a run of ASCII digits, or -1 if any byte is not a digit
+     */
+    private static int digits(ByteBuffer buffer, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(from + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the e-signature that ends a record or tombstone line (up to 8 hex digits)
+     * @return The packed signature, or 0 if the line does not end in hex digits
+     */
+    private static int trailingHex(ByteBuffer buffer, int from, int to) {
+        int start = to;
+        while (start > from && to - start < 8 && Character.digit(buffer.get(start - 1), 16) >= 0) {
+            start--;
+        }
+        int value = 0;
+        for (int i = start; i < to; i++) {
+            value = (value << 4) | Character.digit(buffer.get(i), 16);
+        }
+        return value;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * Records written by old versions may span several lines; join them like the old reader did
+     */
+    private static String joinLines(String text) {
+        StringBuilder joined = new StringBuilder(text.length());
+        for (String line : text.split("\r?\n")) {
+            if (!line.trim().isEmpty()) {
+                joined.append(line);
+            }
+        }
+        return joined.toString().trim();
+    }
+}
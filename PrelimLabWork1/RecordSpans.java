@@ -0,0 +1,96 @@
+import java.util.Arrays;
+
+/**
+ * Record Spans
+ * Byte offset, length and e-signature of every record in the attendance log, kept
+ * in growable primitive arrays so millions of records cost 16 bytes each.
+ */
+public class RecordSpans {
+
+    private long[] offsets;
+    private int[] lengths;
+    private int[] signatures;
+    private int count;
+
+    public RecordSpans() {
+        this(1024);
+    }
+
+    public RecordSpans(int initialCapacity) {
+        offsets = new long[Math.max(16, initialCapacity)];
+        lengths = new int[offsets.length];
+        signatures = new int[offsets.length];
+    }
+
+    /**
+     * Add the span of one record
+     * @param offset Byte offset of the record in the log
+     * @param length Length of the record in bytes
+     * @param signature The record's packed e-signature
+     */
+    public void add(long offset, int length, int signature) {
+        if (count == offsets.length) {
+            int capacity = offsets.length + (offsets.length >> 1);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            signatures = Arrays.copyOf(signatures, capacity);
+        }
+        offsets[count] = offset;
+        lengths[count] = length;
+        signatures[count] = signature;
+        count++;
+    }
+
+    /**
+     * Remove the span at an index, shifting the later spans down
+     * @param index The span to remove
+     */
+    public void remove(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Span " + index + " of " + count);
+        }
+        System.arraycopy(offsets, index + 1, offsets, index, count - index - 1);
+        System.arraycopy(lengths, index + 1, lengths, index, count - index - 1);
+        System.arraycopy(signatures, index + 1, signatures, index, count - index - 1);
+        count--;
+    }
+
+    /**
+     * Drop every span whose signature has been deleted, in one pass
+     * @param deleted Signatures of deleted records
+     * @return Number of spans removed
+     */
+    public int removeSignatures(IntHashSet deleted) {
+        if (deleted.isEmpty()) {
+            return 0;
+        }
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (!deleted.contains(signatures[i])) {
+                offsets[kept] = offsets[i];
+                lengths[kept] = lengths[i];
+                signatures[kept] = signatures[i];
+                kept++;
+            }
+        }
+        int removed = count - kept;
+        count = kept;
+        return removed;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long offset(int index) {
+        return offsets[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    public int signature(int index) {
+        return signatures[index];
+    }
+}
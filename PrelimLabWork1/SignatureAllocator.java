@@ -0,0 +1,180 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Signature Allocator
+ * Issues e-signatures that are unique within one attendance log. A signature is a
+ * counter pushed through an invertible 32-bit mix, so every signature issued by one
+ * allocator differs from every other without any check or lock: issuing is one
+ * atomic increment. Signatures already in the log (records and tombstones) are loaded
+ * once into a primitive {@link IntHashSet} and skipped, and every signature saved
+ * while the log is open is claimed so that signatures entered elsewhere (e.g. sent
+ * by a station of the {@link AttendanceServer}) cannot be used twice either.
+ *
+ * Nothing waits for the log's signatures to load: until they have, {@link #next}
+ * issues from the sequence without checking them (a clash is about one in 4 billion
+ * per record in the log, and is refused when the record is saved), and
+ * {@link #claim} must only be called once {@link #loaded} completes.
+ */
+public class SignatureAllocator {
+
+    private static final long SIGNATURE_COUNT = 1L << 32;
+
+    // Where in the mixed sequence this allocator starts, so separate runs issue different signatures
+    private final int start = new SecureRandom().nextInt();
+    private final AtomicLong issued = new AtomicLong();
+
+    // Signatures found in the log when it was opened; never changed once loaded
+    private final CompletableFuture<IntHashSet> existing = new CompletableFuture<>();
+
+    // Signatures saved since then, usually only a few thousand; guarded by itself
+    private final IntHashSet claimed = new IntHashSet();
+
+    /**
+     * @return An allocator for a log with no signatures yet, e.g. a station that is a
+     *         client of the attendance server, which checks its signatures again
+     */
+    public static SignatureAllocator empty() {
+        SignatureAllocator allocator = new SignatureAllocator();
+        allocator.existing.complete(new IntHashSet());
+        return allocator;
+    }
+
+    /**
+     * Load the signatures of every record and tombstone in the log and its sealed segments
+     * @param file The attendance log
+     * @param index An up to date index of the log, or null to scan the log instead
+     * @param segments The log's sealed segments, or null if there are none
+     * @throws IOException If the log cannot be read; the allocator is then unusable
+     */
+    public void load(Path file, AttendanceLogIndex index, AttendanceSegments segments) throws IOException {
+        IntHashSet signatures = new IntHashSet(index != null ? (int) Math.min(index.size(), 1 << 28) : 16);
+        MappedLogReader.SpanConsumer collector = new MappedLogReader.SpanConsumer() {
+            @Override
+            public void record(long offset, int length, int signature) {
+                signatures.add(signature);
+            }
+
+            @Override
+            public void tombstone(long offset, int length, int signature) {
+                signatures.add(signature);
+            }
+        };
+        try {
+            if (segments != null) {
+                segments.scan(collector);
+            }
+            boolean indexed = false;
+            if (index != null) {
+                try {
+                    index.replay(collector);
+                    indexed = true;
+                } catch (IOException ex) {
+                    System.err.println("Attendance index unreadable, scanning the log for e-signatures: "
+                        + ex.getMessage());
+                }
+            }
+            if (!indexed && Files.exists(file)) {
+                try (MappedLogReader reader = new MappedLogReader(file)) {
+                    reader.scan(collector);
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            existing.completeExceptionally(ex);
+            throw ex;
+        }
+        existing.complete(signatures);
+    }
+
+    /**
+     * Give up on loading, e.g. because opening the log failed before the signatures were read
+     * @param cause Why the log could not be loaded
+     */
+    public void unavailable(Throwable cause) {
+        existing.completeExceptionally(cause);
+    }
+
+    /**
+     * @return Completes once the log's signatures are loaded, or fails with the load's error
+     */
+    public CompletableFuture<Void> loaded() {
+        return existing.thenApply(taken -> null);
+    }
+
+    /**
+     * @return true once the log's signatures are loaded
+     */
+    public boolean isLoaded() {
+        return existing.isDone() && !existing.isCompletedExceptionally();
+    }
+
+    /**
+     * Issue a signature no record or tombstone of the log uses, or, while the log's
+     * signatures are still loading (or failed to), one that no save has claimed. Never blocks.
+     * @return Packed e-signature
+     */
+    public int next() {
+        IntHashSet taken = isLoaded() ? existing.join() : null;
+        while (true) {
+            long count = issued.getAndIncrement();
+            if (count >= SIGNATURE_COUNT) {
+                throw new IllegalStateException("No unused e-signatures left");
+            }
+            int signature = mix(start + (int) count);
+            if (taken != null && taken.contains(signature)) {
+                continue;
+            }
+            synchronized (claimed) {
+                if (!claimed.contains(signature)) {
+                    return signature;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reserve a signature for a record about to be saved. Only valid once {@link #loaded} completed.
+     * @param signature Packed e-signature
+     * @return false if the log or an earlier save already uses it
+     * @throws IllegalStateException If the log's signatures are not loaded
+     */
+    public boolean claim(int signature) {
+        if (!isLoaded()) {
+            throw new IllegalStateException("E-signatures of the attendance log are not loaded");
+        }
+        if (existing.join().contains(signature)) {
+            return false;
+        }
+        synchronized (claimed) {
+            return claimed.add(signature);
+        }
+    }
+
+    /**
+     * Give back a claim whose record could not be saved
+     * @param signature Packed e-signature
+     */
+    public void release(int signature) {
+        synchronized (claimed) {
+            claimed.remove(signature);
+        }
+    }
+
+    /**
+     * Murmur3's 32-bit finalizer: a bijection on ints, so distinct counters never
+     * give the same signature, with neighbouring counters spread over the whole range
+     */
+    static int mix(int value) {
+        int h = value;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,51 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Text Record Format
+ * The original human-readable attendance log: one record line followed by a
+ * 70-character separator line. A deleted record is marked by a tombstone line
+ * ("Deleted Signature: XXXXXXXX") appended later in the same layout.
+ */
+public final class TextRecordFormat {
+
+    public static final String SEPARATOR = "─".repeat(70);
+    public static final String TOMBSTONE_PREFIX = "Deleted Signature: ";
+
+    private static final byte[] LINE_END = ("\n" + SEPARATOR + "\n").getBytes(StandardCharsets.UTF_8);
+
+    private TextRecordFormat() {
+    }
+
+    /**
+     * Encode one record with its separator line
+     * @param record The record to encode
+     * @return The bytes to append to the log
+     */
+    public static byte[] encode(AttendanceRecord record) {
+        return encodeLine(record.toText());
+    }
+
+    /**
+     * Encode a tombstone for a deleted record
+     * @param signature Packed e-signature of the deleted record
+     * @return The bytes to append to the log
+     */
+    public static byte[] encodeTombstone(int signature) {
+        return encodeLine(TOMBSTONE_PREFIX + AttendanceRecord.formatSignature(signature));
+    }
+
+    /**
+     * @return The newline, separator line and newline that close every entry
+     */
+    public static byte[] lineEnd() {
+        return LINE_END.clone();
+    }
+
+    private static byte[] encodeLine(String line) {
+        byte[] text = line.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[text.length + LINE_END.length];
+        System.arraycopy(text, 0, bytes, 0, text.length);
+        System.arraycopy(LINE_END, 0, bytes, text.length, LINE_END.length);
+        return bytes;
+    }
+}
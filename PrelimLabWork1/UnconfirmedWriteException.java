@@ -0,0 +1,34 @@
+import java.io.IOException;
+
+/**
+ * Unconfirmed Write Exception
+ * A record reached the attendance log but the disk did not confirm it (the force
+ * failed). It is in the log unless the machine goes down before the operating system
+ * writes it back, so it must not be treated as lost and saved again.
+ */
+public class UnconfirmedWriteException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message What happened, for the user
+     */
+    public UnconfirmedWriteException(String message) {
+        super(message);
+    }
+
+    /**
+     * @param cause The failed force
+     */
+    public UnconfirmedWriteException(IOException cause) {
+        super("Written to the attendance log, but the disk did not confirm it: " + cause.getMessage(), cause);
+    }
+
+    /**
+     * @param error A failure as a future reports it, possibly wrapped
+     * @return true if the failure is an unconfirmed write rather than a lost one
+     */
+    public static boolean isUnconfirmed(Throwable error) {
+        return error instanceof UnconfirmedWriteException || error.getCause() instanceof UnconfirmedWriteException;
+    }
+}
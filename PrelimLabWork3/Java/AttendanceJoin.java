@@ -0,0 +1,969 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Grades a cohort with the attendance the tracker recorded instead of typed-in counts.
+ *
+ * Usage: java AttendanceJoin <attendance_log> <cohort.csv|-> <output.csv|->
+ *                            [--from yyyy-MM-dd] [--to yyyy-MM-dd] [--max-keys n]
+ *
+ * The attendance log is the PrelimLabWork1 tracker's attendance_records.txt, text or
+ * binary. The tracker seals past days out of it into attendance_records.txt.segments,
+ * one segment a day, compressed into archives of 64 KB blocks after 30 days; those are
+ * read first, oldest first, then the live log, so the log is read once, front to back,
+ * counting for each student the distinct days with a check-in, each day being one
+ * session, between --from and --to if given. Segments and archive blocks whose Time In
+ * range (from manifest.csv and the block index) lies outside --from and --to are
+ * skipped without reading them. A
+ * tombstone cancels the check-in with its signature, and a later check-in with the same
+ * signature replaces the earlier one. The (student, day) pairs and the check-ins are
+ * counted in {@link LongIntHashMap}s; once they hold more than --max-keys entries
+ * (default 1M), cancelled check-ins included, the check-ins still standing and the rest
+ * of the log, tombstones too, are spilled to 64 temporary files by a hash of the
+ * signature. In each of those files the last entry of a signature decides whether its
+ * check-in counts; the ones that do are counted again by student, spilling to 64 files
+ * by a hash of the student's name if they do not fit either. Files still too large are
+ * split again by the next bits of the hash. Whatever the size of the log, memory holds
+ * at most --max-keys entries plus the final count per student.
+ *
+ * Cohort rows are those of {@link GradeBatch}, with the attendance column replaced by
+ * the student's session count (at most the policy's sessions, 0 if the student never
+ * checked in), and the output is GradeBatch's. Students are matched by name as typed
+ * into the tracker, trimmed.
+ */
+public class AttendanceJoin {
+    private static final int DEFAULT_MAX_KEYS = 1 << 20;
+
+    // Each spill level splits by the next 6 bits of the name's hash
+    private static final int FAN_OUT_BITS = 6;
+    private static final int FAN_OUT = 1 << FAN_OUT_BITS;
+    private static final int MAX_DEPTH = 32 / FAN_OUT_BITS;
+
+    // Text log entries, see TextRecordFormat and AttendanceRecord in PrelimLabWork1
+    private static final String NAME = "Name: ";
+    private static final String COURSE = " | Course: ";
+    private static final String TIME = " | Time: ";
+    private static final String SIGNATURE = " | Signature: ";
+    private static final String TOMBSTONE = "Deleted Signature: ";
+
+    // Binary log layout, see BinaryRecordFormat in PrelimLabWork1
+    private static final byte[] BINARY_MAGIC = {'A', 'T', 'R', 'B'};
+    private static final int BINARY_VERSION = 1;
+    private static final int KIND_RECORD = 0;
+    private static final int KIND_TOMBSTONE = 1;
+    private static final int RECORD_FIXED_SIZE = 10;
+
+    // Sealed segments, see AttendanceSegments in PrelimLabWork1
+    private static final String SEGMENTS_SUFFIX = ".segments";
+    private static final String MANIFEST = "manifest.csv";
+    private static final String SEGMENT_GLOB = "*.{log,arc}";
+
+    // Archive layout, see AttendanceArchive in PrelimLabWork1
+    private static final byte[] ARCHIVE_MAGIC = {'A', 'T', 'R', 'Z'};
+    private static final String ARCHIVE_SUFFIX = ".arc";
+    private static final int ARCHIVE_VERSION = 1;
+    private static final int ARCHIVE_HEADER_SIZE = 8;
+    private static final int ARCHIVE_BLOCK_ENTRY_SIZE = 32;
+    private static final int ARCHIVE_TRAILER_SIZE = 24;
+
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private final int maxKeys;
+    private final int fromDay;
+    private final int toDay;
+
+    private Path spillDirectory;
+
+    // Sessions per student once counting is done; a matched student's count is stored
+    // as -(count + 1) so the ones missing from the cohort can be told apart at the end
+    private final Map<String, Integer> sessions = new HashMap<>();
+
+    private long checkIns;
+    private long tombstones;
+    private long invalid;
+    private long spilled;
+    private long capped;
+
+    // The last date parsed, since consecutive check-ins are mostly on the same day
+    private int lastYear;
+    private int lastMonth;
+    private int lastDate;
+    private int lastEpochDay;
+
+    AttendanceJoin(int maxKeys, int fromDay, int toDay) {
+        this.maxKeys = maxKeys;
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3 || args.length % 2 == 0) {
+            usage();
+        }
+        int maxKeys = DEFAULT_MAX_KEYS;
+        int fromDay = Integer.MIN_VALUE;
+        int toDay = Integer.MAX_VALUE;
+        try {
+            for (int i = 3; i < args.length; i += 2) {
+                switch (args[i]) {
+                    case "--from":
+                        fromDay = (int) LocalDate.parse(args[i + 1]).toEpochDay();
+                        break;
+                    case "--to":
+                        toDay = (int) LocalDate.parse(args[i + 1]).toEpochDay();
+                        break;
+                    case "--max-keys":
+                        maxKeys = Integer.parseInt(args[i + 1]);
+                        break;
+                    default:
+                        usage();
+                }
+            }
+        } catch (DateTimeException | NumberFormatException e) {
+            usage();
+        }
+        if (maxKeys < 1) {
+            usage();
+        }
+
+        AttendanceJoin join = new AttendanceJoin(maxKeys, fromDay, toDay);
+        long start = System.nanoTime();
+        try {
+            join.count(Paths.get(args[0]));
+        } catch (IOException e) {
+            System.err.println("Reading the attendance log failed: " + e.getMessage());
+            System.exit(1);
+        }
+        System.err.printf("Counted %d check-ins and %d tombstones for %d students in %d ms (%d spilled to disk)%n",
+                join.checkIns, join.tombstones, join.sessions.size(),
+                (System.nanoTime() - start) / 1_000_000, join.spilled);
+
+        GradeBatch batch = new GradeBatch();
+        try (Reader in = "-".equals(args[1])
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8);
+             Writer out = "-".equals(args[2])
+                     ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                     : Files.newBufferedWriter(Paths.get(args[2]), StandardCharsets.UTF_8)) {
+            join.join(in, out, batch);
+        } catch (IOException e) {
+            System.err.println("Batch grading failed: " + e.getMessage());
+            System.exit(1);
+        }
+        System.err.printf("Graded %d students (%d invalid) in %d ms; %d capped at %d sessions, "
+                        + "%d in the log but not in the cohort%n",
+                batch.getGraded(), batch.getInvalid(), (System.nanoTime() - start) / 1_000_000,
+                join.capped, GradingEngine.getPolicy().getTotalSessions(), join.unmatched());
+        if (join.invalid > 0 || batch.getInvalid() > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java AttendanceJoin <attendance_log> <cohort.csv|-> <output.csv|-> "
+                + "[--from yyyy-MM-dd] [--to yyyy-MM-dd] [--max-keys n]");
+        System.exit(2);
+    }
+
+    // Reads the sealed segments and the live log and leaves the session count of every
+    // student in sessions
+    void count(Path log) throws IOException {
+        LogPass pass = new LogPass();
+        try {
+            for (Path segment : segments(log)) {
+                if (segment.getFileName().toString().endsWith(ARCHIVE_SUFFIX)) {
+                    readArchive(segment, pass);
+                } else {
+                    readLog(segment, pass);
+                }
+            }
+            readLog(log, pass);
+            pass.finish();
+        } finally {
+            removeSpillDirectory();
+        }
+    }
+
+    // Segments of the log, oldest first, except those the manifest puts outside the range.
+    // Segment files the manifest does not list yet (e.g. after a crash) are read as well.
+    private List<Path> segments(Path log) throws IOException {
+        Path directory = log.resolveSibling(log.getFileName() + SEGMENTS_SUFFIX);
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        // Named by their first day, so name order is time order
+        TreeMap<String, Path> found = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_GLOB)) {
+            for (Path file : files) {
+                found.put(file.getFileName().toString(), file);
+            }
+        }
+        Path manifest = directory.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                String[] fields = line.split(",", -1);
+                if (fields.length != 4 || !found.containsKey(fields[0])) {
+                    continue;
+                }
+                try {
+                    int firstDay = (int) LocalDate.parse(fields[1].substring(0, 10)).toEpochDay();
+                    int lastDay = (int) LocalDate.parse(fields[2].substring(0, 10)).toEpochDay();
+                    if (lastDay < fromDay || firstDay > toDay) {
+                        found.remove(fields[0]);
+                    }
+                } catch (DateTimeException | IndexOutOfBoundsException e) {
+                    // The header, or a range that cannot be trusted: read the segment
+                }
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    // A log or segment file, text or binary
+    private void readLog(Path file, LogPass pass) throws IOException {
+        String source = file.getFileName().toString();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            in.mark(BINARY_MAGIC.length);
+            boolean binary = Arrays.equals(in.readNBytes(BINARY_MAGIC.length), BINARY_MAGIC);
+            in.reset();
+            if (binary) {
+                readBinary(in, pass, source);
+            } else {
+                readText(in, pass, source);
+            }
+        }
+    }
+
+    // An archive, inflating one block at a time and only the blocks that overlap the range
+    private void readArchive(Path file, LogPass pass) throws IOException {
+        String source = file.getFileName().toString();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < ARCHIVE_HEADER_SIZE + ARCHIVE_TRAILER_SIZE) {
+                throw new IOException("Truncated attendance archive " + source);
+            }
+            ByteBuffer header = readAt(channel, ARCHIVE_HEADER_SIZE, 0);
+            byte[] magic = new byte[ARCHIVE_MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, ARCHIVE_MAGIC) || header.get(4) != ARCHIVE_VERSION) {
+                throw new IOException("Not an attendance archive: " + source);
+            }
+            boolean binary = header.get(5) == 1;
+
+            ByteBuffer trailer = readAt(channel, ARCHIVE_TRAILER_SIZE, size - ARCHIVE_TRAILER_SIZE);
+            long indexOffset = trailer.getLong(0);
+            int blocks = trailer.getInt(8);
+            int records = trailer.getInt(12);
+            if (blocks < 0 || records < 0 || indexOffset < ARCHIVE_HEADER_SIZE
+                    || indexOffset + (long) blocks * ARCHIVE_BLOCK_ENTRY_SIZE + records * 4L + ARCHIVE_TRAILER_SIZE != size) {
+                throw new IOException("Damaged attendance archive trailer: " + source);
+            }
+
+            ByteBuffer index = readAt(channel, blocks * ARCHIVE_BLOCK_ENTRY_SIZE, indexOffset);
+            Inflater inflater = new Inflater();
+            try {
+                for (int block = 0; block < blocks; block++) {
+                    long offset = index.getLong();
+                    int compressedLength = index.getInt();
+                    int length = index.getInt();
+                    index.getInt(); // records
+                    index.getInt();
+                    long firstDay = Integer.toUnsignedLong(index.getInt()) / SECONDS_PER_DAY;
+                    long lastDay = Integer.toUnsignedLong(index.getInt()) / SECONDS_PER_DAY;
+                    if (lastDay < fromDay || firstDay > toDay) {
+                        continue;
+                    }
+                    byte[] bytes = inflate(inflater, readAt(channel, compressedLength, offset), length,
+                            source + " block " + block);
+                    InputStream in = new ByteArrayInputStream(bytes);
+                    if (binary) {
+                        readBinaryEntries(new DataInputStream(in), pass, source + " block " + block);
+                    } else {
+                        readText(in, pass, source + " block " + block);
+                    }
+                }
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, int length, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Attendance archive ends early");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] inflate(Inflater inflater, ByteBuffer compressed, int length, String source)
+            throws IOException {
+        byte[] bytes = new byte[length];
+        inflater.reset();
+        inflater.setInput(compressed.array(), 0, compressed.limit());
+        try {
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int n = inflater.inflate(bytes, inflated, length - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != length) {
+                throw new IOException("Damaged attendance archive: " + source);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Damaged attendance archive: " + source, e);
+        }
+        return bytes;
+    }
+
+    // Grades the cohort with the counted sessions in place of its attendance column
+    void join(Reader input, Writer output, GradeBatch batch) throws IOException {
+        BufferedReader reader = new BufferedReader(input, 64 * 1024);
+        BufferedWriter writer = new BufferedWriter(output, 64 * 1024);
+        int totalSessions = GradingEngine.getPolicy().getTotalSessions();
+        batch.start(writer);
+
+        String row;
+        long lineNumber = 0;
+        while ((row = reader.readLine()) != null) {
+            lineNumber++;
+            if (row.trim().isEmpty()) {
+                continue;
+            }
+            String[] fields = row.split(",", -1);
+            if (lineNumber == 1 && isHeader(fields)) {
+                continue;
+            }
+            if (fields.length == 6) {
+                int counted = match(fields[0].trim());
+                if (counted > totalSessions) {
+                    capped++;
+                    counted = totalSessions;
+                }
+                fields[1] = Integer.toString(counted);
+            }
+            batch.add(fields, lineNumber, writer);
+        }
+        batch.finish(writer);
+    }
+
+    // Students counted in the log that no cohort row asked for
+    long unmatched() {
+        return sessions.values().stream().filter(count -> count >= 0).count();
+    }
+
+    private int match(String student) {
+        Integer count = sessions.get(student);
+        if (count == null) {
+            return 0;
+        }
+        if (count >= 0) {
+            sessions.put(student, -count - 1);
+            return count;
+        }
+        return -count - 1;
+    }
+
+    // The attendance column is replaced, so a header is told by its excused column instead
+    private static boolean isHeader(String[] fields) {
+        if (fields.length < 3 || fields[2].trim().isEmpty()) {
+            return false;
+        }
+        try {
+            Double.parseDouble(fields[2].trim());
+            return false;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private void readText(InputStream in, LogPass pass, String source) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            try {
+                if (line.startsWith(NAME)) {
+                    int courseAt = line.lastIndexOf(COURSE);
+                    int timeAt = line.lastIndexOf(TIME);
+                    int signatureAt = line.lastIndexOf(SIGNATURE);
+                    if (courseAt < 0 || timeAt < courseAt || signatureAt < timeAt) {
+                        throw new IllegalArgumentException("Not an attendance record");
+                    }
+                    int day = epochDay(line, timeAt + TIME.length());
+                    int signature = parseSignature(line.substring(signatureAt + SIGNATURE.length()));
+                    checkIn(pass, line.substring(NAME.length(), courseAt).trim(), day, signature);
+                } else if (line.startsWith(TOMBSTONE)) {
+                    delete(pass, parseSignature(line.substring(TOMBSTONE.length())));
+                } else if (!line.isEmpty() && line.charAt(0) != '─') {
+                    throw new IllegalArgumentException("Not an attendance record");
+                }
+            } catch (IllegalArgumentException e) {
+                invalid++;
+                System.err.println(source + " line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void readBinary(InputStream in, LogPass pass, String source) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        data.readFully(new byte[BINARY_MAGIC.length]);
+        int version = data.readUnsignedShort();
+        data.readUnsignedShort();
+        if (version != BINARY_VERSION) {
+            throw new IOException("Unsupported binary attendance log version: " + version);
+        }
+        readBinaryEntries(data, pass, source);
+    }
+
+    // Length-prefixed entries after the header of a binary log, or in an archive block
+    private void readBinaryEntries(DataInputStream data, LogPass pass, String source) throws IOException {
+        byte[] name = new byte[256];
+        long entry = 0;
+        while (true) {
+            int length;
+            try {
+                length = data.readUnsignedShort();
+            } catch (EOFException e) {
+                return;
+            }
+            entry++;
+            try {
+                int kind = data.readUnsignedByte();
+                if (kind == KIND_TOMBSTONE && length == 5) {
+                    delete(pass, data.readInt());
+                } else if (kind == KIND_RECORD && length >= RECORD_FIXED_SIZE) {
+                    data.readUnsignedByte(); // course and year
+                    long epochSecond = Integer.toUnsignedLong(data.readInt());
+                    int signature = data.readInt();
+                    int nameLength = length - RECORD_FIXED_SIZE;
+                    if (nameLength > name.length) {
+                        name = new byte[nameLength];
+                    }
+                    data.readFully(name, 0, nameLength);
+                    checkIn(pass, new String(name, 0, nameLength, StandardCharsets.UTF_8).trim(),
+                            (int) (epochSecond / SECONDS_PER_DAY), signature);
+                } else {
+                    throw new IOException("Entry " + entry + " of " + source + " has unknown kind " + kind);
+                }
+            } catch (EOFException e) {
+                // A check-in cut short by a crash of the tracker
+                invalid++;
+                System.err.println(source + " entry " + entry + ": truncated, ignored");
+                return;
+            }
+        }
+    }
+
+    private void checkIn(LogPass pass, String student, int day, int signature) throws IOException {
+        if (day < fromDay || day > toDay) {
+            return;
+        }
+        checkIns++;
+        pass.add(student, day, signature);
+    }
+
+    private void delete(LogPass pass, int signature) throws IOException {
+        tombstones++;
+        pass.delete(signature);
+    }
+
+    // Epoch day of the "yyyy-MM-dd" at the offset
+    private int epochDay(String line, int at) {
+        if (line.length() < at + 10 || line.charAt(at + 4) != '-' || line.charAt(at + 7) != '-') {
+            throw new IllegalArgumentException("Invalid Time In");
+        }
+        int year = digits(line, at, 4);
+        int month = digits(line, at + 5, 2);
+        int date = digits(line, at + 8, 2);
+        if (year != lastYear || month != lastMonth || date != lastDate) {
+            try {
+                lastEpochDay = (int) LocalDate.of(year, month, date).toEpochDay();
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException("Invalid Time In");
+            }
+            lastYear = year;
+            lastMonth = month;
+            lastDate = date;
+        }
+        return lastEpochDay;
+    }
+
+    private static int digits(String line, int at, int count) {
+        int value = 0;
+        for (int i = at; i < at + count; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Invalid Time In");
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int parseSignature(String signature) {
+        String hex = signature.trim();
+        if (hex.isEmpty() || hex.length() > 8) {
+            throw new IllegalArgumentException("Invalid e-signature: " + signature);
+        }
+        return Integer.parseUnsignedInt(hex, 16);
+    }
+
+    private Path spillDirectory() throws IOException {
+        if (spillDirectory == null) {
+            spillDirectory = Files.createTempDirectory("attendance-join");
+        }
+        return spillDirectory;
+    }
+
+    private void removeSpillDirectory() throws IOException {
+        if (spillDirectory == null) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(spillDirectory);
+        spillDirectory = null;
+    }
+
+    // Partition of a student at a spill level, from a well mixed hash of the name
+    private static int partition(String student, int depth) {
+        return partition(student.hashCode(), depth);
+    }
+
+    private static int partition(int hash, int depth) {
+        int h = hash;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return (h >>> (depth * FAN_OUT_BITS)) & (FAN_OUT - 1);
+    }
+
+    // Where a SessionCounter spills its check-ins
+    private interface Spill {
+        void write(String student, int day, int signature) throws IOException;
+    }
+
+    /**
+     * The pass over the log. Counts in memory until there are too many keys, then spills
+     * the check-ins still standing and every entry after them, tombstones included, to
+     * partition files by signature, which are resolved one by one when the log ends.
+     */
+    private final class LogPass {
+        private SessionCounter counter = new SessionCounter();
+        private SignaturePartitions partitions;
+
+        void add(String student, int day, int signature) throws IOException {
+            if (partitions != null) {
+                partitions.write(student, day, signature);
+                return;
+            }
+            counter.add(student, day, signature);
+            if (!counter.fits(maxKeys)) {
+                partitions = new SignaturePartitions(0);
+                counter.spill(partitions);
+                counter = null;
+            }
+        }
+
+        void delete(int signature) throws IOException {
+            if (partitions != null) {
+                partitions.tombstone(signature);
+            } else {
+                counter.delete(signature);
+            }
+        }
+
+        void finish() throws IOException {
+            if (partitions == null) {
+                counter.collect(sessions);
+                return;
+            }
+            partitions.close();
+            Pass pass = new Pass(0);
+            for (int p = 0; p < FAN_OUT; p++) {
+                partitions.resolve(p, pass);
+            }
+            pass.finish();
+        }
+    }
+
+    /**
+     * Counts check-ins that are known to stand, in memory until there are too many keys,
+     * then spills them and everything after them to partition files by student, which
+     * are counted one by one at the next level when the pass finishes.
+     */
+    private final class Pass implements Spill {
+        private final int depth;
+        private SessionCounter counter = new SessionCounter();
+        private Partitions partitions;
+
+        Pass(int depth) {
+            this.depth = depth;
+        }
+
+        @Override
+        public void write(String student, int day, int signature) throws IOException {
+            if (partitions != null) {
+                partitions.write(student, day, signature);
+                return;
+            }
+            counter.add(student, day, signature);
+            if (!counter.fits(maxKeys) && depth < MAX_DEPTH) {
+                partitions = new Partitions(depth);
+                counter.spill(partitions);
+                counter = null;
+            }
+        }
+
+        void finish() throws IOException {
+            if (partitions == null) {
+                counter.collect(sessions);
+                return;
+            }
+            partitions.close();
+            for (int p = 0; p < FAN_OUT; p++) {
+                Pass next = new Pass(depth + 1);
+                partitions.replay(p, next);
+                next.finish();
+            }
+        }
+    }
+
+    /**
+     * Spilled log entries of one level by signature: a kind byte and the signature per
+     * entry, then student and day for a check-in. Entries keep their log order, so the
+     * last entry of a signature in its file says whether a check-in of it stands.
+     */
+    private final class SignaturePartitions implements Spill {
+        private static final byte CHECK_IN = 0;
+        private static final byte TOMBSTONE = 1;
+
+        private final int depth;
+        private final Path[] files = new Path[FAN_OUT];
+        private final DataOutputStream[] outputs = new DataOutputStream[FAN_OUT];
+        private final long[] counts = new long[FAN_OUT];
+
+        SignaturePartitions(int depth) {
+            this.depth = depth;
+        }
+
+        @Override
+        public void write(String student, int day, int signature) throws IOException {
+            DataOutputStream out = output(signature);
+            out.writeByte(CHECK_IN);
+            out.writeInt(signature);
+            out.writeUTF(student);
+            out.writeInt(day);
+            spilled++;
+        }
+
+        void tombstone(int signature) throws IOException {
+            DataOutputStream out = output(signature);
+            out.writeByte(TOMBSTONE);
+            out.writeInt(signature);
+            spilled++;
+        }
+
+        private DataOutputStream output(int signature) throws IOException {
+            int p = partition(signature, depth);
+            DataOutputStream out = outputs[p];
+            if (out == null) {
+                files[p] = Files.createTempFile(spillDirectory(), "signatures" + depth + "-", ".part");
+                out = outputs[p] = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(files[p]), 64 * 1024));
+            }
+            counts[p]++;
+            return out;
+        }
+
+        void close() throws IOException {
+            for (DataOutputStream out : outputs) {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+
+        // Feeds the partition's check-ins that are the last entry of their signature to the pass
+        void resolve(int p, Pass into) throws IOException {
+            if (files[p] == null) {
+                return;
+            }
+            try {
+                if (counts[p] > maxKeys && depth < MAX_DEPTH) {
+                    SignaturePartitions next = new SignaturePartitions(depth + 1);
+                    try (DataInputStream in = open(p)) {
+                        for (long i = 0; i < counts[p]; i++) {
+                            byte kind = in.readByte();
+                            int signature = in.readInt();
+                            if (kind == CHECK_IN) {
+                                next.write(in.readUTF(), in.readInt(), signature);
+                            } else {
+                                next.tombstone(signature);
+                            }
+                        }
+                    } finally {
+                        next.close();
+                    }
+                    for (int q = 0; q < FAN_OUT; q++) {
+                        next.resolve(q, into);
+                    }
+                    return;
+                }
+
+                // Index of the last entry of each signature, then the check-ins that are one
+                LongIntHashMap last = new LongIntHashMap(1024);
+                try (DataInputStream in = open(p)) {
+                    for (int i = 0; i < counts[p]; i++) {
+                        byte kind = in.readByte();
+                        last.put(in.readInt(), i);
+                        if (kind == CHECK_IN) {
+                            in.readUTF();
+                            in.readInt();
+                        }
+                    }
+                }
+                try (DataInputStream in = open(p)) {
+                    for (int i = 0; i < counts[p]; i++) {
+                        byte kind = in.readByte();
+                        int signature = in.readInt();
+                        if (kind == CHECK_IN) {
+                            String student = in.readUTF();
+                            int day = in.readInt();
+                            if (last.get(signature, -1) == i) {
+                                into.write(student, day, signature);
+                            }
+                        }
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(files[p]);
+            }
+        }
+
+        private DataInputStream open(int p) throws IOException {
+            return new DataInputStream(new BufferedInputStream(Files.newInputStream(files[p]), 64 * 1024));
+        }
+    }
+
+    // Spilled check-ins of one level by student: student, day and signature per entry
+    private final class Partitions implements Spill {
+        private final int depth;
+        private final Path[] files = new Path[FAN_OUT];
+        private final DataOutputStream[] outputs = new DataOutputStream[FAN_OUT];
+        private final long[] counts = new long[FAN_OUT];
+
+        Partitions(int depth) {
+            this.depth = depth;
+        }
+
+        @Override
+        public void write(String student, int day, int signature) throws IOException {
+            int p = partition(student, depth);
+            DataOutputStream out = outputs[p];
+            if (out == null) {
+                files[p] = Files.createTempFile(spillDirectory(), "level" + depth + "-", ".part");
+                out = outputs[p] = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(files[p]), 64 * 1024));
+            }
+            out.writeUTF(student);
+            out.writeInt(day);
+            out.writeInt(signature);
+            counts[p]++;
+            spilled++;
+        }
+
+        void close() throws IOException {
+            for (DataOutputStream out : outputs) {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+
+        // Feeds the partition's check-ins to the pass
+        void replay(int p, Pass into) throws IOException {
+            if (files[p] == null) {
+                return;
+            }
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(files[p]), 64 * 1024))) {
+                for (long i = 0; i < counts[p]; i++) {
+                    into.write(in.readUTF(), in.readInt(), in.readInt());
+                }
+            } finally {
+                Files.deleteIfExists(files[p]);
+            }
+        }
+    }
+
+    /**
+     * Distinct days per student, with every check-in kept by signature so a tombstone
+     * can take it back. A signature names one check-in, so a second check-in with the
+     * same signature replaces the first. Cancelled check-ins keep their slot until
+     * {@link #fits} needs the room.
+     */
+    private static final class SessionCounter {
+        private final Map<String, Integer> studentIds = new HashMap<>();
+        private final List<String> students = new ArrayList<>();
+        private int[] sessions = new int[1024];
+
+        // (student << 32 | day) -> pair
+        private final LongIntHashMap pairs = new LongIntHashMap(1024);
+        private int[] pairStudents = new int[1024];
+        private int[] pairDays = new int[1024];
+        private int[] pairCheckIns = new int[1024];
+        private int pairCount;
+
+        // signature -> check-in; a cancelled check-in's pair is -1
+        private final LongIntHashMap records = new LongIntHashMap(1024);
+        private int[] recordPairs = new int[1024];
+        private int[] recordSignatures = new int[1024];
+        private int recordCount;
+        private int cancelled;
+
+        void add(String student, int day, int signature) {
+            Integer id = studentIds.get(student);
+            if (id == null) {
+                id = students.size();
+                studentIds.put(student, id);
+                students.add(student);
+                if (id == sessions.length) {
+                    sessions = Arrays.copyOf(sessions, id * 2);
+                }
+            }
+            long key = ((long) id << 32) | (day & 0xFFFFFFFFL);
+            int pair = pairs.get(key, -1);
+            if (pair < 0) {
+                pair = pairCount++;
+                if (pair == pairStudents.length) {
+                    pairStudents = Arrays.copyOf(pairStudents, pair * 2);
+                    pairDays = Arrays.copyOf(pairDays, pair * 2);
+                    pairCheckIns = Arrays.copyOf(pairCheckIns, pair * 2);
+                }
+                pairs.put(key, pair);
+                pairStudents[pair] = id;
+                pairDays[pair] = day;
+            }
+            delete(signature);
+            if (pairCheckIns[pair]++ == 0) {
+                sessions[id]++;
+            }
+
+            int record = recordCount++;
+            if (record == recordPairs.length) {
+                recordPairs = Arrays.copyOf(recordPairs, record * 2);
+                recordSignatures = Arrays.copyOf(recordSignatures, record * 2);
+            }
+            recordPairs[record] = pair;
+            recordSignatures[record] = signature;
+            records.put(signature, record);
+        }
+
+        void delete(int signature) {
+            int record = records.get(signature, -1);
+            if (record < 0) {
+                return;
+            }
+            records.remove(signature);
+            int pair = recordPairs[record];
+            recordPairs[record] = -1;
+            cancelled++;
+            if (--pairCheckIns[pair] == 0) {
+                sessions[pairStudents[pair]]--;
+            }
+        }
+
+        // Pairs and check-in slots in use, cancelled check-ins included
+        int keys() {
+            return pairs.size() + recordCount;
+        }
+
+        /**
+         * @return Whether the keys are within the limit, after dropping the slots of
+         *         cancelled check-ins if at least a quarter of them are cancelled
+         */
+        boolean fits(int maxKeys) {
+            if (keys() > maxKeys && cancelled * 4 >= recordCount) {
+                compact();
+            }
+            return keys() <= maxKeys;
+        }
+
+        // Moves the standing check-ins to the front and renumbers them
+        private void compact() {
+            int kept = 0;
+            for (int record = 0; record < recordCount; record++) {
+                if (recordPairs[record] >= 0) {
+                    recordPairs[kept] = recordPairs[record];
+                    recordSignatures[kept] = recordSignatures[record];
+                    records.put(recordSignatures[kept], kept);
+                    kept++;
+                }
+            }
+            recordCount = kept;
+            cancelled = 0;
+        }
+
+        void spill(Spill into) throws IOException {
+            for (int record = 0; record < recordCount; record++) {
+                int pair = recordPairs[record];
+                if (pair >= 0) {
+                    into.write(students.get(pairStudents[pair]), pairDays[pair], recordSignatures[record]);
+                }
+            }
+        }
+
+        void collect(Map<String, Integer> into) {
+            for (int id = 0; id < students.size(); id++) {
+                if (sessions[id] > 0) {
+                    into.put(students.get(id), sessions[id]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Ranks a graded cohort by class standing, globally and within each section.
+ *
+ * Every student becomes one primitive long sort key: the standing in millionths of a
+ * point in the high half (inverted so the best comes first) and the row in the low
+ * half, so ties keep file order. The keys are built and sorted with the parallel
+ * methods of {@link Arrays}, which run on the common fork-join pool. Ranks are
+ * competition ranks (1, 2, 2, 4) and a percentile is the share of the group whose
+ * standing is at or below the student's. Auto-failed students rank below everyone
+ * else and are left out of the percentile bands.
+ */
+public final class CohortRanking {
+    // Standings that agree to a millionth of a point tie, which absorbs floating point noise
+    static final double SCALE = 1_000_000;
+    // Graded scores start at 1 so auto-failed students sort after all of them
+    private static final int AUTO_FAILED_SCORE = 0;
+
+    // Rows per leaf of the top-k task
+    private static final int TOP_THRESHOLD = 1 << 16;
+
+    private final GradeColumns columns;
+    private final int[] sections;
+    private final int sectionCount;
+
+    private final long[] keys;
+    private final int[] rank;
+    private final int[] sectionRank;
+    private final int[] sectionSize;
+    private final int[] sectionGraded;
+    private final int[] sectionStart;
+    private final int[] bySection;
+    private int graded;
+
+    private CohortRanking(GradeColumns columns, int[] sections, int sectionCount) {
+        int size = columns.size();
+        this.columns = columns;
+        this.sections = sections;
+        this.sectionCount = sectionCount;
+        keys = new long[size];
+        rank = new int[size];
+        sectionRank = new int[size];
+        sectionSize = new int[sectionCount];
+        sectionGraded = new int[sectionCount];
+        sectionStart = new int[sectionCount + 1];
+        bySection = new int[size];
+    }
+
+    /**
+     * Ranks every student in the graded columns.
+     *
+     * @param columns      graded columns, see {@link GradeKernel}
+     * @param sections     each row's section, from 0 to sectionCount - 1
+     * @param sectionCount number of sections
+     */
+    public static CohortRanking rank(GradeColumns columns, int[] sections, int sectionCount) {
+        CohortRanking ranking = new CohortRanking(columns, sections, sectionCount);
+        ranking.sort();
+        return ranking;
+    }
+
+    /**
+     * Selects the k best students of every section and of the whole cohort without
+     * sorting the cohort: each fork-join leaf keeps a bounded heap per section and the
+     * leaves' lists are merged pairwise. Ties at the cut go to the earlier row.
+     *
+     * @return rows best first, one array per section plus the whole cohort at index sectionCount
+     */
+    public static int[][] top(GradeColumns columns, int[] sections, int sectionCount, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        long[][] best = ForkJoinPool.commonPool()
+                .invoke(new TopTask(columns, sections, sectionCount, k, 0, columns.size()));
+        int[][] rows = new int[sectionCount + 1][];
+        for (int scope = 0; scope <= sectionCount; scope++) {
+            long[] scopeKeys = best[scope];
+            rows[scope] = new int[scopeKeys.length];
+            for (int i = 0; i < scopeKeys.length; i++) {
+                rows[scope][i] = rowOf(scopeKeys[i]);
+            }
+        }
+        return rows;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public int getSectionCount() {
+        return sectionCount;
+    }
+
+    // Row of the student at the given position of the whole cohort, best first
+    public int getRow(int position) {
+        return rowOf(keys[position]);
+    }
+
+    public int getRank(int row) {
+        return rank[row];
+    }
+
+    public double getPercentile(int row) {
+        return percentile(rank[row], keys.length);
+    }
+
+    public int getSectionRank(int row) {
+        return sectionRank[row];
+    }
+
+    public double getSectionPercentile(int row) {
+        return percentile(sectionRank[row], sectionSize[sections[row]]);
+    }
+
+    public int getSectionSize(int section) {
+        return sectionSize[section];
+    }
+
+    // Row of the student at the given position of the section, best first
+    public int getSectionRow(int section, int position) {
+        return bySection[sectionStart[section] + position];
+    }
+
+    // Students that were not auto-failed; section -1 means the whole cohort
+    public int getGraded(int section) {
+        return section < 0 ? graded : sectionGraded[section];
+    }
+
+    /**
+     * Nearest-rank percentile of class standing over the students that were not
+     * auto-failed.
+     *
+     * @param section section, or -1 for the whole cohort
+     * @param p       percentile from 0 to 100
+     * @return the standing, or NaN when the group has no graded students
+     */
+    public double standingAt(int section, double p) {
+        int count = getGraded(section);
+        if (count == 0) {
+            return Double.NaN;
+        }
+        // Position counted from the lowest standing, then flipped into best-first order
+        int ascending = Math.max(0, (int) Math.ceil(p / 100.0 * count) - 1);
+        int position = count - 1 - ascending;
+        int row = section < 0 ? getRow(position) : getSectionRow(section, position);
+        return columns.getClassStanding(row);
+    }
+
+    private void sort() {
+        GradeColumns columns = this.columns;
+        Arrays.parallelSetAll(keys, row -> key(columns, row));
+        Arrays.parallelSort(keys);
+
+        // One pass in rank order gives the global ranks, the section ranks and the
+        // rows grouped by section, still in rank order within each section
+        for (int row = 0; row < keys.length; row++) {
+            sectionSize[sections[row]]++;
+        }
+        for (int section = 0; section < sectionCount; section++) {
+            sectionStart[section + 1] = sectionStart[section] + sectionSize[section];
+        }
+        int[] next = Arrays.copyOf(sectionStart, sectionCount);
+        int[] lastScore = new int[sectionCount];
+        int[] lastRank = new int[sectionCount];
+        int previousScore = 0;
+        int previousRank = 0;
+        for (int position = 0; position < keys.length; position++) {
+            long key = keys[position];
+            int row = rowOf(key);
+            int score = scoreOf(key);
+            if (position == 0 || score != previousScore) {
+                previousRank = position + 1;
+                previousScore = score;
+            }
+            rank[row] = previousRank;
+
+            int section = sections[row];
+            int sectionPosition = next[section] - sectionStart[section];
+            if (sectionPosition == 0 || score != lastScore[section]) {
+                lastRank[section] = sectionPosition + 1;
+                lastScore[section] = score;
+            }
+            sectionRank[row] = lastRank[section];
+            bySection[next[section]++] = row;
+
+            if (score != AUTO_FAILED_SCORE) {
+                graded++;
+                sectionGraded[section]++;
+            }
+        }
+    }
+
+    private static double percentile(int rank, int count) {
+        return 100.0 * (count - rank + 1) / count;
+    }
+
+    static long key(GradeColumns columns, int row) {
+        int score = columns.isAutoFailed(row)
+                ? AUTO_FAILED_SCORE
+                : (int) Math.round(columns.getClassStanding(row) * SCALE) + 1;
+        return ((long) (Integer.MAX_VALUE - score) << 32) | row;
+    }
+
+    private static int scoreOf(long key) {
+        return Integer.MAX_VALUE - (int) (key >>> 32);
+    }
+
+    private static int rowOf(long key) {
+        return (int) key;
+    }
+
+    // Returns the k smallest keys per section, plus the whole cohort last, each sorted ascending
+    private static final class TopTask extends RecursiveTask<long[][]> {
+        private static final long serialVersionUID = 1L;
+
+        private final GradeColumns columns;
+        private final int[] sections;
+        private final int sectionCount;
+        private final int k;
+        private final int from;
+        private final int to;
+
+        TopTask(GradeColumns columns, int[] sections, int sectionCount, int k, int from, int to) {
+            this.columns = columns;
+            this.sections = sections;
+            this.sectionCount = sectionCount;
+            this.k = k;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[][] compute() {
+            if (to - from <= TOP_THRESHOLD) {
+                return select();
+            }
+            int middle = (from + to) >>> 1;
+            TopTask left = new TopTask(columns, sections, sectionCount, k, from, middle);
+            left.fork();
+            long[][] right = new TopTask(columns, sections, sectionCount, k, middle, to).compute();
+            long[][] merged = left.join();
+            for (int scope = 0; scope <= sectionCount; scope++) {
+                merged[scope] = merge(merged[scope], right[scope], k);
+            }
+            return merged;
+        }
+
+        // Bounded max-heaps: the root is the worst key kept so far
+        private long[][] select() {
+            long[][] heaps = new long[sectionCount + 1][];
+            int[] sizes = new int[sectionCount + 1];
+            for (int row = from; row < to; row++) {
+                long key = key(columns, row);
+                offer(heaps, sizes, sections[row], key);
+                offer(heaps, sizes, sectionCount, key);
+            }
+            for (int scope = 0; scope <= sectionCount; scope++) {
+                heaps[scope] = heaps[scope] == null ? new long[0] : Arrays.copyOf(heaps[scope], sizes[scope]);
+                Arrays.sort(heaps[scope]);
+            }
+            return heaps;
+        }
+
+        private void offer(long[][] heaps, int[] sizes, int scope, long key) {
+            long[] heap = heaps[scope];
+            if (heap == null) {
+                heap = heaps[scope] = new long[Math.min(k, to - from)];
+            }
+            int size = sizes[scope];
+            if (size < heap.length) {
+                // Sift up
+                int i = size;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (heap[parent] >= key) {
+                        break;
+                    }
+                    heap[i] = heap[parent];
+                    i = parent;
+                }
+                heap[i] = key;
+                sizes[scope] = size + 1;
+            } else if (key < heap[0]) {
+                // Replace the root and sift down
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && heap[child + 1] > heap[child]) {
+                        child++;
+                    }
+                    if (heap[child] <= key) {
+                        break;
+                    }
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = key;
+            }
+        }
+
+        private static long[] merge(long[] a, long[] b, int k) {
+            long[] merged = new long[Math.min(k, a.length + b.length)];
+            int i = 0;
+            int j = 0;
+            for (int n = 0; n < merged.length; n++) {
+                merged[n] = j >= b.length || (i < a.length && a[i] < b[j]) ? a[i++] : b[j++];
+            }
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Distribution of a cohort's grades, gathered in one pass in fixed memory.
+ *
+ * Class standing and the exam score required to pass are each kept as a
+ * {@link Distribution}: running mean and variance plus a histogram with one bucket per
+ * hundredth of a point, the precision the calculator displays, so percentiles come
+ * out as the calculator would print them. Two statistics merge exactly, so threads
+ * or files can each fill their own and combine them at the end. Auto-failed students
+ * are counted but have no standing; difficulty bands count the NEEDS_EXAM students.
+ */
+public final class CohortStatistics {
+    private final GradingPolicy policy;
+    private long students;
+    private final long[] statuses = new long[GradeResult.Status.values().length];
+    private final long[] difficulties = new long[GradeResult.Difficulty.values().length];
+
+    private final Distribution classStanding;
+    private final Distribution requiredToPass;
+
+    public CohortStatistics() {
+        this(GradingEngine.getPolicy());
+    }
+
+    // The histograms span every standing and required exam score the policy can produce
+    public CohortStatistics(GradingPolicy policy) {
+        this.policy = policy;
+        double highest = Math.ceil(policy.classStanding(100, policy.maxLabScore));
+        classStanding = new Distribution(0, highest);
+        requiredToPass = new Distribution(
+                Math.floor(policy.requiredExam(policy.passingGrade, highest)),
+                Math.ceil(policy.requiredExam(policy.passingGrade, 0)));
+    }
+
+    // Adds every graded row of the columns, see GradeKernel
+    public void add(GradeColumns columns) {
+        checkPolicy(columns.getPolicy());
+        for (int row = 0; row < columns.size(); row++) {
+            GradeResult.Status status = columns.getStatus(row);
+            students++;
+            statuses[status.ordinal()]++;
+            if (status == GradeResult.Status.AUTO_FAILED) {
+                continue;
+            }
+            double required = columns.getRequiredExamToPass(row);
+            classStanding.add(columns.getClassStanding(row));
+            requiredToPass.add(required);
+            if (status == GradeResult.Status.NEEDS_EXAM) {
+                difficulties[GradingEngine.difficulty(required).ordinal()]++;
+            }
+        }
+    }
+
+    public void merge(CohortStatistics other) {
+        checkPolicy(other.policy);
+        students += other.students;
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] += other.statuses[i];
+        }
+        for (int i = 0; i < difficulties.length; i++) {
+            difficulties[i] += other.difficulties[i];
+        }
+        classStanding.merge(other.classStanding);
+        requiredToPass.merge(other.requiredToPass);
+    }
+
+    public GradingPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getStudents() {
+        return students;
+    }
+
+    public long getCount(GradeResult.Status status) {
+        return statuses[status.ordinal()];
+    }
+
+    public long getCount(GradeResult.Difficulty difficulty) {
+        return difficulties[difficulty.ordinal()];
+    }
+
+    public Distribution getClassStanding() {
+        return classStanding;
+    }
+
+    public Distribution getRequiredToPass() {
+        return requiredToPass;
+    }
+
+    private void checkPolicy(GradingPolicy other) {
+        if (other != policy) {
+            throw new IllegalArgumentException("Statistics of different grading policies cannot be combined");
+        }
+    }
+
+    /**
+     * Values rounded to hundredths and counted in a fixed histogram over [lowest, highest].
+     * Values outside the range land in the end buckets; min and max stay exact.
+     */
+    public static final class Distribution {
+        private static final double BUCKETS_PER_POINT = 100;
+
+        private final double lowest;
+        private final long[] histogram;
+        private long count;
+        private double mean;
+        private double squares;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        Distribution(double lowest, double highest) {
+            this.lowest = lowest;
+            histogram = new long[(int) Math.round((highest - lowest) * BUCKETS_PER_POINT) + 1];
+        }
+
+        void add(double value) {
+            // Welford's update keeps the variance accurate over millions of values
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            squares += delta * (value - mean);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            histogram[bucketOf(value)]++;
+        }
+
+        void merge(Distribution other) {
+            if (other.count == 0) {
+                return;
+            }
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            squares += other.squares + delta * delta * ((double) count * other.count / total);
+            mean += delta * other.count / total;
+            count = total;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] += other.histogram[i];
+            }
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count == 0 ? Double.NaN : mean;
+        }
+
+        // Population standard deviation
+        public double getStandardDeviation() {
+            return count == 0 ? Double.NaN : Math.sqrt(squares / count);
+        }
+
+        public double getMin() {
+            return count == 0 ? Double.NaN : min;
+        }
+
+        public double getMax() {
+            return count == 0 ? Double.NaN : max;
+        }
+
+        // Nearest-rank percentile, p from 0 to 100, to the nearest hundredth
+        public double percentile(double p) {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            long target = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= target) {
+                    double value = lowest + i / BUCKETS_PER_POINT;
+                    return Math.max(min, Math.min(max, value));
+                }
+            }
+            return max;
+        }
+
+        private int bucketOf(double value) {
+            long bucket = Math.round((value - lowest) * BUCKETS_PER_POINT);
+            return (int) Math.max(0, Math.min(histogram.length - 1, bucket));
+        }
+    }
+}
@@ -0,0 +1,212 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
+
+/**
+ * Grades a whole cohort from a CSV file without opening the calculator window.
+ *
+ * Usage: java GradeBatch <input.csv|-> <output.csv|->
+ *
+ * Input rows:  student,attendance,excused,lab1,lab2,lab3  (excused may be left empty)
+ * Output rows: student,present,excused,unexcused,effective_attendance,attendance_pct,
+ *              lab_avg,class_standing,required_to_pass,required_for_excellent,status
+ *
+ * Rows are read in blocks, graded a block at a time by {@link GradeKernel} (or by
+ * {@link GradeTable} when started with -Dgrading.table=true) and written
+ * out in their original order, so the cohort never has to fit in memory. As in the
+ * calculator, a student with too many unexcused absences (4 by default) is
+ * AUTO_FAILED without needing lab scores. A row that fails validation is written
+ * with status INVALID and reported on stderr; the rest of the file is still graded.
+ */
+public class GradeBatch {
+    public static final String OUTPUT_HEADER = "student,present,excused,unexcused,effective_attendance,"
+            + "attendance_pct,lab_avg,class_standing,required_to_pass,required_for_excellent,status";
+
+    private static final int BLOCK_SIZE = 8192;
+
+    private final DecimalFormat df = new DecimalFormat("#.##");
+    private final StringBuilder line = new StringBuilder(128);
+
+    // Current block: student names in file order and each one's row in the columns (-1 if invalid)
+    private final GradeColumns columns = new GradeColumns(BLOCK_SIZE);
+    private final String[] students = new String[BLOCK_SIZE];
+    private final int[] rows = new int[BLOCK_SIZE];
+    private int blockSize;
+
+    private long graded;
+    private long invalid;
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: java GradeBatch <input.csv|-> <output.csv|->");
+            System.exit(2);
+        }
+        GradeBatch batch = new GradeBatch();
+        long start = System.nanoTime();
+        try (Reader in = "-".equals(args[0])
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8);
+             Writer out = "-".equals(args[1])
+                     ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                     : Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            batch.run(in, out);
+        } catch (IOException e) {
+            System.err.println("Batch grading failed: " + e.getMessage());
+            System.exit(1);
+        }
+        System.err.printf("Graded %d students (%d invalid) in %d ms%n",
+                batch.graded, batch.invalid, (System.nanoTime() - start) / 1_000_000);
+        if (batch.invalid > 0) {
+            System.exit(1);
+        }
+    }
+
+    public void run(Reader input, Writer output) throws IOException {
+        BufferedReader reader = new BufferedReader(input, 64 * 1024);
+        BufferedWriter writer = new BufferedWriter(output, 64 * 1024);
+        start(writer);
+
+        String row;
+        long lineNumber = 0;
+        while ((row = reader.readLine()) != null) {
+            lineNumber++;
+            if (row.trim().isEmpty() || (lineNumber == 1 && isHeader(row))) {
+                continue;
+            }
+            add(row.split(",", -1), lineNumber, writer);
+        }
+        finish(writer);
+    }
+
+    // The pieces of run for callers that produce the input rows themselves, see AttendanceJoin
+    void start(Writer writer) throws IOException {
+        writer.write(OUTPUT_HEADER);
+        writer.write('\n');
+    }
+
+    // Adds one input row split into its fields, writing out the block once it is full
+    void add(String[] fields, long lineNumber, Writer writer) throws IOException {
+        readRow(fields, lineNumber);
+        if (blockSize == BLOCK_SIZE) {
+            writeBlock(writer);
+        }
+    }
+
+    void finish(Writer writer) throws IOException {
+        writeBlock(writer);
+        writer.flush();
+    }
+
+    public long getGraded() {
+        return graded;
+    }
+
+    public long getInvalid() {
+        return invalid;
+    }
+
+    private void readRow(String[] fields, long lineNumber) {
+        students[blockSize] = fields[0].trim();
+        try {
+            if (fields.length != 6) {
+                throw new IllegalArgumentException("Expected 6 columns but found " + fields.length);
+            }
+            int added = addRow(fields, columns);
+            rows[blockSize++] = added;
+        } catch (IllegalArgumentException e) {
+            invalid++;
+            System.err.println("Line " + lineNumber + ": " + e.getMessage());
+            rows[blockSize++] = -1;
+        }
+    }
+
+    // Validates columns 1 to 5 of an input row under the columns' policy and adds the
+    // student; returns its row in the columns
+    static int addRow(String[] fields, GradeColumns columns) {
+        GradingPolicy policy = columns.getPolicy();
+        int attendance = (int) policy.validateInput(fields[1], "Attendance");
+        int excused = fields[2].trim().isEmpty()
+                ? 0
+                : (int) policy.validateInput(fields[2], "Excused Absences");
+        if (policy.isAutoFailed(attendance, excused)) {
+            // Like the calculator, an automatic failure needs no lab scores
+            return columns.add(attendance, excused, 0, 0, 0);
+        }
+        int lab1 = (int) policy.validateInput(fields[3], "Lab Work 1");
+        int lab2 = (int) policy.validateInput(fields[4], "Lab Work 2");
+        int lab3 = (int) policy.validateInput(fields[5], "Lab Work 3");
+        return columns.add(attendance, excused, lab1, lab2, lab3);
+    }
+
+    private void writeBlock(Writer writer) throws IOException {
+        if (GradeTable.ENABLED) {
+            columns.getPolicy().table().grade(columns);
+        } else {
+            GradeKernel.grade(columns);
+        }
+        for (int i = 0; i < blockSize; i++) {
+            int row = rows[i];
+            if (row < 0) {
+                writer.write(students[i]);
+                writer.write(",,,,,,,,,,INVALID\n");
+            } else if (columns.isAutoFailed(row)) {
+                graded++;
+                writeAutoFailed(students[i], row, writer);
+            } else {
+                graded++;
+                writeResult(students[i], row, writer);
+            }
+            students[i] = null;
+        }
+        blockSize = 0;
+        columns.clear();
+    }
+
+    private void writeResult(String student, int row, Writer writer) throws IOException {
+        line.setLength(0);
+        line.append(student).append(',')
+                .append(columns.getAttendance(row)).append(',')
+                .append(columns.getExcused(row)).append(',')
+                .append(columns.getUnexcused(row)).append(',')
+                .append(columns.getEffectiveAttendance(row)).append(',')
+                .append(df.format(columns.getAttendancePercentage(row))).append(',')
+                .append(df.format(columns.getLabWorkAverage(row))).append(',')
+                .append(df.format(columns.getClassStanding(row))).append(',')
+                .append(df.format(columns.getRequiredExamToPass(row))).append(',')
+                .append(df.format(columns.getRequiredExamForExcellent(row))).append(',')
+                .append(columns.getStatus(row)).append('\n');
+        writer.append(line);
+    }
+
+    private void writeAutoFailed(String student, int row, Writer writer) throws IOException {
+        line.setLength(0);
+        line.append(student).append(',')
+                .append(columns.getAttendance(row)).append(',')
+                .append(columns.getExcused(row)).append(',')
+                .append(columns.getUnexcused(row))
+                .append(",,,,,,,").append(GradeResult.Status.AUTO_FAILED).append('\n');
+        writer.append(line);
+    }
+
+    // A first line whose attendance column is not a number is taken as a header
+    static boolean isHeader(String row) {
+        String[] fields = row.split(",", -1);
+        if (fields.length < 2) {
+            return true;
+        }
+        try {
+            Double.parseDouble(fields[1].trim());
+            return false;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+}
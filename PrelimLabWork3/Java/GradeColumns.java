@@ -0,0 +1,155 @@
+import java.util.Arrays;
+
+/**
+ * A block of students stored column by column: one primitive array per input and per
+ * result instead of one object per student. {@link GradeKernel} fills the result
+ * columns from the input columns.
+ */
+public final class GradeColumns {
+    public static final int LABS = 3;
+
+    // The policy rows are validated and graded under
+    final GradingPolicy policy;
+
+    // Inputs, validated as they are added
+    int[] attendance;
+    int[] excused;
+    final int[][] labs = new int[LABS][];
+
+    // Results
+    int[] unexcused;
+    int[] effectiveAttendance;
+    double[] attendancePercentage;
+    double[] labWorkAverage;
+    double[] classStanding;
+    double[] requiredExamToPass;
+    double[] requiredExamForExcellent;
+
+    private int size;
+
+    public GradeColumns(int capacity) {
+        this(capacity, GradingEngine.getPolicy());
+    }
+
+    public GradeColumns(int capacity, GradingPolicy policy) {
+        this.policy = policy;
+        allocate(Math.max(16, capacity));
+    }
+
+    // Adds one student and returns its row; throws IllegalArgumentException like GradingEngine.grade
+    public int add(int attendance, int excused, int lab1, int lab2, int lab3) {
+        policy.validate(attendance, excused, lab1, lab2, lab3);
+        if (size == this.attendance.length) {
+            grow(size + (size >> 1));
+        }
+        this.attendance[size] = attendance;
+        this.excused[size] = excused;
+        labs[0][size] = lab1;
+        labs[1][size] = lab2;
+        labs[2][size] = lab3;
+        return size++;
+    }
+
+    public GradingPolicy getPolicy() {
+        return policy;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int getAttendance(int row) {
+        return attendance[row];
+    }
+
+    public int getExcused(int row) {
+        return excused[row];
+    }
+
+    public int getLab(int lab, int row) {
+        return labs[lab][row];
+    }
+
+    public int getUnexcused(int row) {
+        return unexcused[row];
+    }
+
+    public int getEffectiveAttendance(int row) {
+        return effectiveAttendance[row];
+    }
+
+    public boolean isAutoFailed(int row) {
+        return unexcused[row] >= policy.autoFailUnexcused;
+    }
+
+    public double getAttendancePercentage(int row) {
+        return attendancePercentage[row];
+    }
+
+    public double getLabWorkAverage(int row) {
+        return labWorkAverage[row];
+    }
+
+    public double getClassStanding(int row) {
+        return classStanding[row];
+    }
+
+    public double getRequiredExamToPass(int row) {
+        return requiredExamToPass[row];
+    }
+
+    public double getRequiredExamForExcellent(int row) {
+        return requiredExamForExcellent[row];
+    }
+
+    // Same rules as GradeResult.getStatus
+    public GradeResult.Status getStatus(int row) {
+        if (isAutoFailed(row)) {
+            return GradeResult.Status.AUTO_FAILED;
+        }
+        if (requiredExamForExcellent[row] <= 0) {
+            return GradeResult.Status.ALREADY_EXCELLENT;
+        }
+        if (requiredExamToPass[row] <= 0) {
+            return GradeResult.Status.ALREADY_PASSING;
+        }
+        if (requiredExamToPass[row] > 100) {
+            return GradeResult.Status.NOT_ACHIEVABLE;
+        }
+        return GradeResult.Status.NEEDS_EXAM;
+    }
+
+    private void allocate(int capacity) {
+        attendance = new int[capacity];
+        excused = new int[capacity];
+        for (int lab = 0; lab < LABS; lab++) {
+            labs[lab] = new int[capacity];
+        }
+        unexcused = new int[capacity];
+        effectiveAttendance = new int[capacity];
+        attendancePercentage = new double[capacity];
+        labWorkAverage = new double[capacity];
+        classStanding = new double[capacity];
+        requiredExamToPass = new double[capacity];
+        requiredExamForExcellent = new double[capacity];
+    }
+
+    private void grow(int capacity) {
+        attendance = Arrays.copyOf(attendance, capacity);
+        excused = Arrays.copyOf(excused, capacity);
+        for (int lab = 0; lab < LABS; lab++) {
+            labs[lab] = Arrays.copyOf(labs[lab], capacity);
+        }
+        unexcused = new int[capacity];
+        effectiveAttendance = new int[capacity];
+        attendancePercentage = new double[capacity];
+        labWorkAverage = new double[capacity];
+        classStanding = new double[capacity];
+        requiredExamToPass = new double[capacity];
+        requiredExamForExcellent = new double[capacity];
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.stream.IntStream;
+
+/**
+ * Grades a whole block of students at once over {@link GradeColumns}.
+ *
+ * The loops are straight-line arithmetic over primitive arrays with no branches,
+ * calls or object access, which is the shape HotSpot's C2 compiler turns into SIMD
+ * instructions on its own. Each step is its own loop because C2 gives up on a loop
+ * that mixes int to double conversion with division, and the steps run over
+ * cache-sized tiles so the intermediate columns are still in cache for the next
+ * step. The results are bit-for-bit those of {@link GradingEngine#grade} under the
+ * columns' {@link GradingPolicy}: same operations, same order, same constants.
+ */
+public final class GradeKernel {
+    // Rows per tile; 8192 rows of the result columns fit comfortably in L2
+    static final int TILE = 8192;
+
+    private GradeKernel() {
+    }
+
+    public static void grade(GradeColumns columns) {
+        int size = columns.size();
+        for (int from = 0; from < size; from += TILE) {
+            grade(columns, from, Math.min(size, from + TILE));
+        }
+    }
+
+    // Grades the tiles in parallel on the common fork-join pool; tiles share no rows
+    public static void gradeParallel(GradeColumns columns) {
+        int size = columns.size();
+        IntStream.range(0, (size + TILE - 1) / TILE).parallel()
+                .forEach(tile -> grade(columns, tile * TILE, Math.min(size, (tile + 1) * TILE)));
+    }
+
+    // Fills the result columns of rows [from, to)
+    static void grade(GradeColumns columns, int from, int to) {
+        int[] attendance = columns.attendance;
+        int[] excused = columns.excused;
+        int[] lab1 = columns.labs[0];
+        int[] lab2 = columns.labs[1];
+        int[] lab3 = columns.labs[2];
+        int[] unexcused = columns.unexcused;
+        int[] effective = columns.effectiveAttendance;
+        double[] attendancePercentage = columns.attendancePercentage;
+        double[] labWorkAverage = columns.labWorkAverage;
+        double[] classStanding = columns.classStanding;
+        double[] requiredToPass = columns.requiredExamToPass;
+        double[] requiredForExcellent = columns.requiredExamForExcellent;
+
+        // The policy is bound into locals here, once per tile, so the loops below are
+        // the same code as with literal constants
+        GradingPolicy policy = columns.policy;
+        final int sessions = policy.totalSessions;
+        for (int i = from; i < to; i++) {
+            int present = attendance[i] + excused[i];
+            unexcused[i] = Math.max(0, sessions - present);
+            effective[i] = Math.min(sessions, present);
+        }
+
+        // Widen first, then divide, so both loops vectorize
+        for (int i = from; i < to; i++) {
+            attendancePercentage[i] = effective[i];
+        }
+        for (int i = from; i < to; i++) {
+            attendancePercentage[i] = (attendancePercentage[i] / sessions) * 100.0;
+        }
+        for (int i = from; i < to; i++) {
+            labWorkAverage[i] = (lab1[i] + lab2[i] + (double) lab3[i]) / 3.0;
+        }
+
+        final double attendanceWeight = policy.attendanceWeight;
+        final double labWeight = policy.labWeight;
+        final double standingWeight = policy.classStandingWeight;
+        final double examWeight = policy.examWeight;
+        final double passing = policy.passingGrade;
+        final double excellent = policy.excellentGrade;
+        for (int i = from; i < to; i++) {
+            double standing = (attendancePercentage[i] * attendanceWeight) + (labWorkAverage[i] * labWeight);
+            classStanding[i] = standing;
+            requiredToPass[i] = (passing - (standing * standingWeight)) / examWeight;
+            requiredForExcellent[i] = (excellent - (standing * standingWeight)) / examWeight;
+        }
+    }
+}
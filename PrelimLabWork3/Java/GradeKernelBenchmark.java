@@ -0,0 +1,62 @@
+import java.util.Random;
+
+/**
+ * Compares grading a cohort one student at a time through {@link GradingEngine#grade}
+ * with grading it column-wise through {@link GradeKernel}, and checks that both give
+ * identical results.
+ *
+ * Usage: java GradeKernelBenchmark [students] [rounds]
+ */
+public class GradeKernelBenchmark {
+    public static void main(String[] args) {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Random random = new Random(42);
+        GradeColumns columns = new GradeColumns(students);
+        for (int i = 0; i < students; i++) {
+            int attendance = random.nextInt(GradingEngine.TOTAL_SESSIONS + 1);
+            int excused = random.nextInt(GradingEngine.TOTAL_SESSIONS - attendance + 1);
+            columns.add(attendance, excused, random.nextInt(101), random.nextInt(101), random.nextInt(101));
+        }
+
+        GradeResult result = new GradeResult();
+        double checksum = 0;
+        long perStudent = Long.MAX_VALUE;
+        long kernel = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < students; i++) {
+                GradingEngine.grade(columns.getAttendance(i), columns.getExcused(i),
+                        columns.getLab(0, i), columns.getLab(1, i), columns.getLab(2, i), result);
+                checksum += result.getRequiredExamToPass();
+            }
+            perStudent = Math.min(perStudent, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            GradeKernel.grade(columns);
+            kernel = Math.min(kernel, System.nanoTime() - start);
+            checksum += columns.getRequiredExamToPass(round % students);
+        }
+
+        int mismatches = 0;
+        for (int i = 0; i < students; i++) {
+            GradingEngine.grade(columns.getAttendance(i), columns.getExcused(i),
+                    columns.getLab(0, i), columns.getLab(1, i), columns.getLab(2, i), result);
+            if (result.getClassStanding() != columns.getClassStanding(i)
+                    || result.getRequiredExamToPass() != columns.getRequiredExamToPass(i)
+                    || result.getRequiredExamForExcellent() != columns.getRequiredExamForExcellent(i)
+                    || result.getAttendancePercentage() != columns.getAttendancePercentage(i)
+                    || result.getLabWorkAverage() != columns.getLabWorkAverage(i)
+                    || result.getUnexcused() != columns.getUnexcused(i)
+                    || result.isAutoFailed() != columns.isAutoFailed(i)) {
+                mismatches++;
+            }
+        }
+
+        System.out.printf("Students:     %,d (best of %d rounds)%n", students, rounds);
+        System.out.printf("Per student:  %8.2f ms%n", perStudent / 1e6);
+        System.out.printf("Column kernel:%8.2f ms%n", kernel / 1e6);
+        System.out.printf("Mismatches:   %d (checksum %.1f)%n", mismatches, checksum);
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.Random;
+
+/**
+ * Checks that grading through a {@link GradingPolicy} costs the same as the formula
+ * with the weights written in as constants, and gives identical results.
+ *
+ * Times three ways of grading the same cohort: a copy of the {@link GradeKernel} loops
+ * with the {@link GradingEngine} constants written in, the kernel under
+ * {@link GradingPolicy#DEFAULT}, and the kernel under a different policy.
+ *
+ * Usage: java GradePolicyBenchmark [students] [rounds]
+ */
+public class GradePolicyBenchmark {
+    public static void main(String[] args) {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        GradingPolicy other = new GradingPolicy(6, 3, 100, 0.30, 0.70, 0.60, 0.40, 75, 95);
+        GradeColumns hardCoded = new GradeColumns(students, GradingPolicy.DEFAULT);
+        GradeColumns policy = new GradeColumns(students, GradingPolicy.DEFAULT);
+        GradeColumns swapped = new GradeColumns(students, other);
+        Random random = new Random(42);
+        for (int i = 0; i < students; i++) {
+            int attendance = random.nextInt(GradingEngine.TOTAL_SESSIONS + 1);
+            int excused = random.nextInt(GradingEngine.TOTAL_SESSIONS - attendance + 1);
+            int lab1 = random.nextInt(101);
+            int lab2 = random.nextInt(101);
+            int lab3 = random.nextInt(101);
+            hardCoded.add(attendance, excused, lab1, lab2, lab3);
+            policy.add(attendance, excused, lab1, lab2, lab3);
+            swapped.add(attendance, excused, lab1, lab2, lab3);
+        }
+
+        double checksum = 0;
+        long constants = Long.MAX_VALUE;
+        long defaultPolicy = Long.MAX_VALUE;
+        long otherPolicy = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int from = 0; from < students; from += GradeKernel.TILE) {
+                gradeHardCoded(hardCoded, from, Math.min(students, from + GradeKernel.TILE));
+            }
+            constants = Math.min(constants, System.nanoTime() - start);
+            checksum += hardCoded.getClassStanding(round % students);
+
+            start = System.nanoTime();
+            GradeKernel.grade(policy);
+            defaultPolicy = Math.min(defaultPolicy, System.nanoTime() - start);
+            checksum += policy.getClassStanding(round % students);
+
+            start = System.nanoTime();
+            GradeKernel.grade(swapped);
+            otherPolicy = Math.min(otherPolicy, System.nanoTime() - start);
+            checksum += swapped.getClassStanding(round % students);
+        }
+
+        int mismatches = 0;
+        for (int i = 0; i < students; i++) {
+            if (hardCoded.getClassStanding(i) != policy.getClassStanding(i)
+                    || hardCoded.getRequiredExamToPass(i) != policy.getRequiredExamToPass(i)
+                    || hardCoded.getRequiredExamForExcellent(i) != policy.getRequiredExamForExcellent(i)
+                    || hardCoded.getAttendancePercentage(i) != policy.getAttendancePercentage(i)
+                    || hardCoded.getLabWorkAverage(i) != policy.getLabWorkAverage(i)
+                    || hardCoded.getUnexcused(i) != policy.getUnexcused(i)) {
+                mismatches++;
+            }
+        }
+
+        System.out.printf("Students:        %,d (best of %d rounds)%n", students, rounds);
+        System.out.printf("Constants:       %8.2f ms%n", constants / 1e6);
+        System.out.printf("Default policy:  %8.2f ms%n", defaultPolicy / 1e6);
+        System.out.printf("Other policy:    %8.2f ms%n", otherPolicy / 1e6);
+        System.out.printf("Mismatches:      %d (checksum %.1f)%n", mismatches, checksum);
+    }
+
+    // GradeKernel.grade as it was with the weights written in
+    private static void gradeHardCoded(GradeColumns columns, int from, int to) {
+        int[] attendance = columns.attendance;
+        int[] excused = columns.excused;
+        int[] lab1 = columns.labs[0];
+        int[] lab2 = columns.labs[1];
+        int[] lab3 = columns.labs[2];
+        int[] unexcused = columns.unexcused;
+        int[] effective = columns.effectiveAttendance;
+        double[] attendancePercentage = columns.attendancePercentage;
+        double[] labWorkAverage = columns.labWorkAverage;
+        double[] classStanding = columns.classStanding;
+        double[] requiredToPass = columns.requiredExamToPass;
+        double[] requiredForExcellent = columns.requiredExamForExcellent;
+
+        for (int i = from; i < to; i++) {
+            int present = attendance[i] + excused[i];
+            unexcused[i] = Math.max(0, GradingEngine.TOTAL_SESSIONS - present);
+            effective[i] = Math.min(GradingEngine.TOTAL_SESSIONS, present);
+        }
+        for (int i = from; i < to; i++) {
+            attendancePercentage[i] = effective[i];
+        }
+        for (int i = from; i < to; i++) {
+            attendancePercentage[i] = (attendancePercentage[i] / GradingEngine.TOTAL_SESSIONS) * 100.0;
+        }
+        for (int i = from; i < to; i++) {
+            labWorkAverage[i] = (lab1[i] + lab2[i] + (double) lab3[i]) / 3.0;
+        }
+        for (int i = from; i < to; i++) {
+            double standing = (attendancePercentage[i] * GradingEngine.ATTENDANCE_WEIGHT)
+                    + (labWorkAverage[i] * GradingEngine.LAB_WEIGHT);
+            classStanding[i] = standing;
+            requiredToPass[i] = (GradingEngine.PASSING_GRADE - (standing * GradingEngine.CLASS_STANDING_WEIGHT))
+                    / GradingEngine.EXAM_WEIGHT;
+            requiredForExcellent[i] = (GradingEngine.EXCELLENT_GRADE
+                    - (standing * GradingEngine.CLASS_STANDING_WEIGHT)) / GradingEngine.EXAM_WEIGHT;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ranks a whole cohort by class standing, globally and per section.
+ *
+ * Usage: java GradeRanking <input.csv|-> <output.csv|-> [--top <k> | --bands]
+ *
+ * Input rows are those of {@link GradeBatch} with an optional section column last:
+ * student,attendance,excused,lab1,lab2,lab3[,section]
+ *
+ * Reports:
+ *   (default) student,section,class_standing,status,rank,percentile,section_rank,section_percentile
+ *             for every student, best first
+ *   --top k   scope,rank,student,class_standing: the k best of the cohort (scope ALL),
+ *             then the k best of each section
+ *   --bands   section,students,auto_failed,min,p10,p25,p50,p75,p90,max: class standing
+ *             percentiles of the cohort (ALL), then of each section
+ *
+ * The cohort is graded with {@link GradeKernel} and ranked with {@link CohortRanking},
+ * both in parallel. Invalid rows are reported on stderr and left out.
+ */
+public class GradeRanking {
+    private static final double[] BANDS = {10, 25, 50, 75, 90};
+
+    private final DecimalFormat df = new DecimalFormat("#.##");
+    private final StringBuilder line = new StringBuilder(128);
+
+    private final GradeColumns columns = new GradeColumns(1 << 16);
+    private final List<String> students = new ArrayList<>();
+    private int[] sections = new int[1 << 16];
+    private final Map<String, Integer> sectionIds = new HashMap<>();
+    private final List<String> sectionNames = new ArrayList<>();
+
+    private long invalid;
+
+    public static void main(String[] args) {
+        int top = 0;
+        boolean bands = false;
+        if (args.length == 3 && "--bands".equals(args[2])) {
+            bands = true;
+        } else if (args.length == 4 && "--top".equals(args[2])) {
+            try {
+                top = Integer.parseInt(args[3]);
+            } catch (NumberFormatException e) {
+                top = -1;
+            }
+        }
+        if ((args.length != 2 && !bands && top == 0) || top < 0) {
+            System.err.println("Usage: java GradeRanking <input.csv|-> <output.csv|-> [--top <k> | --bands]");
+            System.exit(2);
+        }
+
+        GradeRanking ranking = new GradeRanking();
+        long start = System.nanoTime();
+        try (Reader in = "-".equals(args[0])
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8);
+             Writer out = "-".equals(args[1])
+                     ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                     : Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            ranking.read(in);
+            long read = System.nanoTime();
+            GradeKernel.gradeParallel(ranking.columns);
+            BufferedWriter writer = new BufferedWriter(out, 64 * 1024);
+            if (top > 0) {
+                ranking.writeTop(top, writer);
+            } else {
+                CohortRanking ranks = CohortRanking.rank(ranking.columns, ranking.sections, ranking.sectionNames.size());
+                if (bands) {
+                    ranking.writeBands(ranks, writer);
+                } else {
+                    ranking.writeRanks(ranks, writer);
+                }
+            }
+            writer.flush();
+            System.err.printf("Ranked %d students in %d sections (%d invalid): read %d ms, graded and ranked %d ms%n",
+                    ranking.columns.size(), ranking.sectionNames.size(), ranking.invalid,
+                    (read - start) / 1_000_000, (System.nanoTime() - read) / 1_000_000);
+        } catch (IOException e) {
+            System.err.println("Ranking failed: " + e.getMessage());
+            System.exit(1);
+        }
+        if (ranking.invalid > 0) {
+            System.exit(1);
+        }
+    }
+
+    public void read(Reader input) throws IOException {
+        BufferedReader reader = new BufferedReader(input, 64 * 1024);
+        String row;
+        long lineNumber = 0;
+        while ((row = reader.readLine()) != null) {
+            lineNumber++;
+            if (row.trim().isEmpty() || (lineNumber == 1 && GradeBatch.isHeader(row))) {
+                continue;
+            }
+            String[] fields = row.split(",", -1);
+            try {
+                if (fields.length != 6 && fields.length != 7) {
+                    throw new IllegalArgumentException("Expected 6 or 7 columns but found " + fields.length);
+                }
+                int added = GradeBatch.addRow(fields, columns);
+                if (added == sections.length) {
+                    sections = Arrays.copyOf(sections, added + (added >> 1));
+                }
+                sections[added] = sectionId(fields.length == 7 ? fields[6].trim() : "");
+                students.add(fields[0].trim());
+            } catch (IllegalArgumentException e) {
+                invalid++;
+                System.err.println("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private int sectionId(String name) {
+        Integer id = sectionIds.get(name);
+        if (id == null) {
+            id = sectionNames.size();
+            sectionIds.put(name, id);
+            sectionNames.add(name);
+        }
+        return id;
+    }
+
+    private void writeRanks(CohortRanking ranks, Writer writer) throws IOException {
+        writer.write("student,section,class_standing,status,rank,percentile,section_rank,section_percentile\n");
+        for (int position = 0; position < ranks.size(); position++) {
+            int row = ranks.getRow(position);
+            line.setLength(0);
+            line.append(students.get(row)).append(',')
+                    .append(sectionNames.get(sections[row])).append(',');
+            if (!columns.isAutoFailed(row)) {
+                line.append(df.format(columns.getClassStanding(row)));
+            }
+            line.append(',').append(columns.getStatus(row)).append(',')
+                    .append(ranks.getRank(row)).append(',')
+                    .append(df.format(ranks.getPercentile(row))).append(',')
+                    .append(ranks.getSectionRank(row)).append(',')
+                    .append(df.format(ranks.getSectionPercentile(row))).append('\n');
+            writer.append(line);
+        }
+    }
+
+    private void writeTop(int k, Writer writer) throws IOException {
+        int sectionCount = sectionNames.size();
+        int[][] best = CohortRanking.top(columns, sections, sectionCount, k);
+        writer.write("scope,rank,student,class_standing\n");
+        writeTop("ALL", best[sectionCount], writer);
+        for (int section = 0; section < sectionCount; section++) {
+            writeTop(sectionNames.get(section), best[section], writer);
+        }
+    }
+
+    // The list is a prefix of the full ranking, so competition ranks within it are the real ranks
+    private void writeTop(String scope, int[] rows, Writer writer) throws IOException {
+        long previousKey = -1;
+        int rank = 0;
+        for (int i = 0; i < rows.length; i++) {
+            int row = rows[i];
+            long key = CohortRanking.key(columns, row) >>> 32;
+            if (key != previousKey) {
+                rank = i + 1;
+                previousKey = key;
+            }
+            line.setLength(0);
+            line.append(scope).append(',').append(rank).append(',')
+                    .append(students.get(row)).append(',');
+            if (!columns.isAutoFailed(row)) {
+                line.append(df.format(columns.getClassStanding(row)));
+            }
+            line.append('\n');
+            writer.append(line);
+        }
+    }
+
+    private void writeBands(CohortRanking ranks, Writer writer) throws IOException {
+        writer.write("section,students,auto_failed,min,p10,p25,p50,p75,p90,max\n");
+        writeBands("ALL", -1, ranks.size(), ranks, writer);
+        for (int section = 0; section < sectionNames.size(); section++) {
+            writeBands(sectionNames.get(section), section, ranks.getSectionSize(section), ranks, writer);
+        }
+    }
+
+    private void writeBands(String name, int section, int students, CohortRanking ranks, Writer writer)
+            throws IOException {
+        line.setLength(0);
+        line.append(name).append(',').append(students).append(',')
+                .append(students - ranks.getGraded(section));
+        if (ranks.getGraded(section) > 0) {
+            line.append(',').append(df.format(ranks.standingAt(section, 0)));
+            for (double band : BANDS) {
+                line.append(',').append(df.format(ranks.standingAt(section, band)));
+            }
+            line.append(',').append(df.format(ranks.standingAt(section, 100)));
+        } else {
+            line.append(",,,,,,,");
+        }
+        line.append('\n');
+        writer.append(line);
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Outcome of grading one student, filled in by {@link GradingEngine}.
+ */
+public final class GradeResult {
+    public enum Status {
+        AUTO_FAILED, ALREADY_EXCELLENT, ALREADY_PASSING, NEEDS_EXAM, NOT_ACHIEVABLE
+    }
+
+    // How hard a required exam score is, see GradingEngine.difficulty
+    public enum Difficulty {
+        VERY_ACHIEVABLE("Very Achievable"),
+        ACHIEVABLE("Achievable"),
+        MODERATE("Moderate Difficulty"),
+        VERY_CHALLENGING("Very Challenging");
+
+        private final String label;
+
+        Difficulty(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    GradingPolicy policy;
+    int present;
+    int excused;
+    int unexcused;
+    int effectiveAttendance;
+    int lab1;
+    int lab2;
+    int lab3;
+    boolean autoFailed;
+    double attendancePercentage;
+    double labWorkAverage;
+    double classStanding;
+    double requiredExamToPass;
+    double requiredExamForExcellent;
+
+    // The policy the result was graded under
+    public GradingPolicy getPolicy() {
+        return policy;
+    }
+
+    public int getPresent() {
+        return present;
+    }
+
+    public int getExcused() {
+        return excused;
+    }
+
+    public int getUnexcused() {
+        return unexcused;
+    }
+
+    public int getEffectiveAttendance() {
+        return effectiveAttendance;
+    }
+
+    public int getLab1() {
+        return lab1;
+    }
+
+    public int getLab2() {
+        return lab2;
+    }
+
+    public int getLab3() {
+        return lab3;
+    }
+
+    public boolean isAutoFailed() {
+        return autoFailed;
+    }
+
+    public double getAttendancePercentage() {
+        return attendancePercentage;
+    }
+
+    public double getLabWorkAverage() {
+        return labWorkAverage;
+    }
+
+    public double getClassStanding() {
+        return classStanding;
+    }
+
+    public double getRequiredExamToPass() {
+        return requiredExamToPass;
+    }
+
+    public double getRequiredExamForExcellent() {
+        return requiredExamForExcellent;
+    }
+
+    public boolean isPassAchievable() {
+        return requiredExamToPass <= 100;
+    }
+
+    public boolean isExcellentAchievable() {
+        return requiredExamForExcellent <= 100;
+    }
+
+    // Where the student stands, in the order the calculator reports it
+    public Status getStatus() {
+        if (autoFailed) {
+            return Status.AUTO_FAILED;
+        }
+        if (requiredExamForExcellent <= 0) {
+            return Status.ALREADY_EXCELLENT;
+        }
+        if (requiredExamToPass <= 0) {
+            return Status.ALREADY_PASSING;
+        }
+        if (requiredExamToPass > 100) {
+            return Status.NOT_ACHIEVABLE;
+        }
+        return Status.NEEDS_EXAM;
+    }
+}
@@ -0,0 +1,140 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Prints the grade distribution of one or more cohort files without holding them in
+ * memory.
+ *
+ * Usage: java GradeStatistics <input.csv|-> [more.csv ...]
+ *
+ * Input rows are those of {@link GradeBatch}; a seventh column such as a section is
+ * ignored. Each file is streamed on its own thread in blocks graded by
+ * {@link GradeKernel} into its own {@link CohortStatistics}, and the results are
+ * merged. Invalid rows are reported on stderr and left out.
+ */
+public class GradeStatistics {
+    private static final int BLOCK_SIZE = 8192;
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length == 0) {
+            System.err.println("Usage: java GradeStatistics <input.csv|-> [more.csv ...]");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        int threads = Math.min(args.length, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<FileStatistics>> results = new ArrayList<>();
+        for (String file : args) {
+            results.add(executor.submit(() -> read(file)));
+        }
+        executor.shutdown();
+
+        CohortStatistics total = new CohortStatistics();
+        long invalid = 0;
+        boolean failed = false;
+        for (int i = 0; i < args.length; i++) {
+            try {
+                FileStatistics result = results.get(i).get();
+                total.merge(result.statistics);
+                invalid += result.invalid;
+            } catch (ExecutionException e) {
+                System.err.println(args[i] + ": " + e.getCause().getMessage());
+                failed = true;
+            }
+        }
+        System.out.print(format(total));
+        System.err.printf("Read %d students from %d files (%d invalid) in %d ms%n",
+                total.getStudents(), args.length, invalid, (System.nanoTime() - start) / 1_000_000);
+        if (failed || invalid > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Streams one file through the kernel a block at a time
+    static FileStatistics read(String file) throws IOException {
+        FileStatistics result = new FileStatistics();
+        GradeColumns columns = new GradeColumns(BLOCK_SIZE);
+        try (Reader in = "-".equals(file)
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            BufferedReader reader = new BufferedReader(in, 64 * 1024);
+            String row;
+            long lineNumber = 0;
+            while ((row = reader.readLine()) != null) {
+                lineNumber++;
+                if (row.trim().isEmpty() || (lineNumber == 1 && GradeBatch.isHeader(row))) {
+                    continue;
+                }
+                String[] fields = row.split(",", -1);
+                try {
+                    if (fields.length != 6 && fields.length != 7) {
+                        throw new IllegalArgumentException("Expected 6 or 7 columns but found " + fields.length);
+                    }
+                    GradeBatch.addRow(fields, columns);
+                } catch (IllegalArgumentException e) {
+                    result.invalid++;
+                    System.err.println(file + " line " + lineNumber + ": " + e.getMessage());
+                }
+                if (columns.size() == BLOCK_SIZE) {
+                    flush(columns, result.statistics);
+                }
+            }
+        }
+        flush(columns, result.statistics);
+        return result;
+    }
+
+    private static void flush(GradeColumns columns, CohortStatistics statistics) {
+        GradeKernel.grade(columns);
+        statistics.add(columns);
+        columns.clear();
+    }
+
+    public static String format(CohortStatistics statistics) {
+        DecimalFormat df = new DecimalFormat("#.##");
+        StringBuilder report = new StringBuilder();
+        report.append("Students: ").append(statistics.getStudents()).append('\n');
+        for (GradeResult.Status status : GradeResult.Status.values()) {
+            report.append(String.format("  %-18s %d%n", status, statistics.getCount(status)));
+        }
+
+        report.append(String.format("%n%-18s %8s %8s %8s %8s %8s %8s %8s%n",
+                "", "mean", "stddev", "min", "p50", "p90", "p99", "max"));
+        appendDistribution(report, df, "Class standing", statistics.getClassStanding());
+        appendDistribution(report, df, "Required to pass", statistics.getRequiredToPass());
+
+        report.append("\nRequired exam difficulty (NEEDS_EXAM students):\n");
+        for (GradeResult.Difficulty difficulty : GradeResult.Difficulty.values()) {
+            report.append(String.format("  %-20s %d%n", difficulty.getLabel(), statistics.getCount(difficulty)));
+        }
+        return report.toString();
+    }
+
+    private static void appendDistribution(StringBuilder report, DecimalFormat df, String name,
+            CohortStatistics.Distribution distribution) {
+        report.append(String.format("%-18s %8s %8s %8s", name, df.format(distribution.getMean()),
+                df.format(distribution.getStandardDeviation()), df.format(distribution.getMin())));
+        for (double p : PERCENTILES) {
+            report.append(String.format(" %8s", df.format(distribution.percentile(p))));
+        }
+        report.append(String.format(" %8s%n", df.format(distribution.getMax())));
+    }
+
+    static final class FileStatistics {
+        final CohortStatistics statistics = new CohortStatistics();
+        long invalid;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Every grade a {@link GradingPolicy} can produce, worked out once.
+ *
+ * The grades depend only on the effective attendance (0 to 5 by default) and the sum
+ * of the three labs (0 to 300), so the whole domain is 6 x 301 entries. Each entry
+ * holds the class standing and both required exam scores side by side in one double
+ * array (about 43 KB, small enough to stay in cache), computed with the policy's own
+ * formulas, so a lookup returns exactly what direct evaluation would, with no floating
+ * point work. Get the table of a policy from {@link GradingPolicy#table()}.
+ *
+ * Off unless started with -Dgrading.table=true, which switches both
+ * {@link GradingEngine#grade} and the {@link GradeBatch} command line over to it.
+ */
+public final class GradeTable {
+    public static final boolean ENABLED = Boolean.getBoolean("grading.table");
+
+    private static final int STRIDE = 3;
+
+    private final GradingPolicy policy;
+    private final int labSums;
+    private final double[] percentages;
+    private final double[] averages;
+    // Per entry: class standing, required to pass, required for excellent
+    private final double[] entries;
+
+    GradeTable(GradingPolicy policy) {
+        this.policy = policy;
+        labSums = GradeColumns.LABS * policy.maxLabScore + 1;
+        percentages = new double[policy.totalSessions + 1];
+        averages = new double[labSums];
+        entries = new double[percentages.length * labSums * STRIDE];
+
+        for (int labSum = 0; labSum < labSums; labSum++) {
+            averages[labSum] = policy.labWorkAverage(labSum);
+        }
+        for (int effective = 0; effective < percentages.length; effective++) {
+            percentages[effective] = policy.attendancePercentage(effective);
+            for (int labSum = 0; labSum < labSums; labSum++) {
+                double standing = policy.classStanding(percentages[effective], averages[labSum]);
+                int entry = index(effective, labSum);
+                entries[entry] = standing;
+                entries[entry + 1] = policy.requiredExam(policy.passingGrade, standing);
+                entries[entry + 2] = policy.requiredExam(policy.excellentGrade, standing);
+            }
+        }
+    }
+
+    public double classStanding(int effectiveAttendance, int labSum) {
+        return entries[index(effectiveAttendance, labSum)];
+    }
+
+    public double requiredExamToPass(int effectiveAttendance, int labSum) {
+        return entries[index(effectiveAttendance, labSum) + 1];
+    }
+
+    public double requiredExamForExcellent(int effectiveAttendance, int labSum) {
+        return entries[index(effectiveAttendance, labSum) + 2];
+    }
+
+    // Fills the grades of a result whose inputs and effective attendance are already set
+    GradeResult fill(GradeResult into) {
+        int labSum = into.lab1 + into.lab2 + into.lab3;
+        int entry = index(into.effectiveAttendance, labSum);
+        into.attendancePercentage = percentages[into.effectiveAttendance];
+        into.labWorkAverage = averages[labSum];
+        into.classStanding = entries[entry];
+        into.requiredExamToPass = entries[entry + 1];
+        into.requiredExamForExcellent = entries[entry + 2];
+        return into;
+    }
+
+    // Same results as GradeKernel.grade, by lookup; the columns must use this table's policy
+    public void grade(GradeColumns columns) {
+        if (columns.policy != policy) {
+            throw new IllegalArgumentException("Columns were validated under a different grading policy");
+        }
+        int[] attendance = columns.attendance;
+        int[] excused = columns.excused;
+        int[] lab1 = columns.labs[0];
+        int[] lab2 = columns.labs[1];
+        int[] lab3 = columns.labs[2];
+        final int sessions = policy.totalSessions;
+        for (int i = 0; i < columns.size(); i++) {
+            int present = attendance[i] + excused[i];
+            int effective = Math.min(sessions, present);
+            int labSum = lab1[i] + lab2[i] + lab3[i];
+            int entry = index(effective, labSum);
+            columns.unexcused[i] = Math.max(0, sessions - present);
+            columns.effectiveAttendance[i] = effective;
+            columns.attendancePercentage[i] = percentages[effective];
+            columns.labWorkAverage[i] = averages[labSum];
+            columns.classStanding[i] = entries[entry];
+            columns.requiredExamToPass[i] = entries[entry + 1];
+            columns.requiredExamForExcellent[i] = entries[entry + 2];
+        }
+    }
+
+    private int index(int effectiveAttendance, int labSum) {
+        return (effectiveAttendance * labSums + labSum) * STRIDE;
+    }
+}
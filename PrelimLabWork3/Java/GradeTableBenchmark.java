@@ -0,0 +1,60 @@
+import java.util.Random;
+
+/**
+ * Compares grading a cohort by direct evaluation ({@link GradeKernel}) with grading it
+ * by lookup ({@link GradeTable}), and checks that both give identical results.
+ *
+ * Usage: java GradeTableBenchmark [students] [rounds]
+ */
+public class GradeTableBenchmark {
+    public static void main(String[] args) {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Random random = new Random(42);
+        GradeColumns direct = new GradeColumns(students);
+        GradeColumns table = new GradeColumns(students);
+        for (int i = 0; i < students; i++) {
+            int attendance = random.nextInt(GradingEngine.TOTAL_SESSIONS + 1);
+            int excused = random.nextInt(GradingEngine.TOTAL_SESSIONS - attendance + 1);
+            int lab1 = random.nextInt(101);
+            int lab2 = random.nextInt(101);
+            int lab3 = random.nextInt(101);
+            direct.add(attendance, excused, lab1, lab2, lab3);
+            table.add(attendance, excused, lab1, lab2, lab3);
+        }
+
+        double checksum = 0;
+        long kernel = Long.MAX_VALUE;
+        long lookup = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            GradeKernel.grade(direct);
+            kernel = Math.min(kernel, System.nanoTime() - start);
+            checksum += direct.getClassStanding(round % students);
+
+            start = System.nanoTime();
+            table.getPolicy().table().grade(table);
+            lookup = Math.min(lookup, System.nanoTime() - start);
+            checksum += table.getClassStanding(round % students);
+        }
+
+        int mismatches = 0;
+        for (int i = 0; i < students; i++) {
+            if (direct.getClassStanding(i) != table.getClassStanding(i)
+                    || direct.getRequiredExamToPass(i) != table.getRequiredExamToPass(i)
+                    || direct.getRequiredExamForExcellent(i) != table.getRequiredExamForExcellent(i)
+                    || direct.getAttendancePercentage(i) != table.getAttendancePercentage(i)
+                    || direct.getLabWorkAverage(i) != table.getLabWorkAverage(i)
+                    || direct.getUnexcused(i) != table.getUnexcused(i)
+                    || direct.getEffectiveAttendance(i) != table.getEffectiveAttendance(i)) {
+                mismatches++;
+            }
+        }
+
+        System.out.printf("Students:     %,d (best of %d rounds)%n", students, rounds);
+        System.out.printf("Direct kernel:%8.2f ms%n", kernel / 1e6);
+        System.out.printf("Table lookup: %8.2f ms%n", lookup / 1e6);
+        System.out.printf("Mismatches:   %d (checksum %.1f)%n", mismatches, checksum);
+    }
+}
@@ -0,0 +1,293 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The calculator's saved students: attendance, excused absences and lab scores per
+ * student, each with its grades cached in a {@link GradeResult}.
+ *
+ * A change regrades only the student it touches; nothing else in the book is looked
+ * at. Grades are worked out lazily, on the first {@link #get} after loading or after
+ * the {@link GradingEngine} policy changed, so opening a large book parses but does
+ * not grade it.
+ *
+ * On disk the book is two files in one directory:
+ *   gradebook.csv  snapshot in {@link GradeBatch} input format, so it can be graded as is
+ *   gradebook.log  changes since the snapshot, one line each:
+ *                  P,student,attendance,excused,lab1,lab2,lab3  (the student's new inputs)
+ *                  D,student                                     (student removed)
+ * Opening reads the snapshot and replays the log. Once the log holds
+ * {@link #SNAPSHOT_EVERY} changes or as many changes as the book has students,
+ * whichever is more, and on {@link #close()}, the whole book is written to a new
+ * snapshot (temp file + atomic rename) and the log is emptied, so rewriting the
+ * snapshot costs at most one logged change a student. Log lines carry a student's
+ * full inputs, so replaying a log over a snapshot that already contains it gives the
+ * same book, and a crash between the rename and the truncation loses nothing. A
+ * log that ends in a line cut short by a crash is cut back to its last whole line
+ * on open; any other malformed line fails the open, as in the snapshot.
+ */
+public final class Gradebook implements Closeable {
+    public static final String SNAPSHOT_FILE = "gradebook.csv";
+    public static final String LOG_FILE = "gradebook.log";
+    public static final int SNAPSHOT_EVERY = 1000;
+
+    private static final String SNAPSHOT_HEADER = "student,attendance,excused,lab1,lab2,lab3";
+
+    private final Path snapshot;
+    private final Path log;
+    private final FileChannel logChannel;
+    private final StringBuilder line = new StringBuilder(64);
+
+    // Insertion ordered so snapshots keep students in the order they were first saved
+    private final Map<String, GradeResult> students = new LinkedHashMap<>();
+    private int changesSinceSnapshot;
+
+    private Gradebook(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        snapshot = directory.resolve(SNAPSHOT_FILE);
+        log = directory.resolve(LOG_FILE);
+        readSnapshot();
+        long validLength = replayLog();
+        logChannel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (logChannel.size() > validLength) {
+            System.err.println("Gradebook: dropping " + (logChannel.size() - validLength)
+                    + " bytes of a line cut short at the end of " + log);
+            logChannel.truncate(validLength);
+        }
+        logChannel.position(validLength);
+    }
+
+    /**
+     * Opens the gradebook kept in the directory, creating it if needed.
+     *
+     * @throws IOException if the files cannot be read or a snapshot or log line is malformed
+     */
+    public static Gradebook open(Path directory) throws IOException {
+        return new Gradebook(directory);
+    }
+
+    public synchronized boolean contains(String student) {
+        return students.containsKey(student);
+    }
+
+    public synchronized int size() {
+        return students.size();
+    }
+
+    // Students in the order they were first saved
+    public synchronized Set<String> getStudents() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(students.keySet()));
+    }
+
+    /**
+     * The student's grades under the current policy, or null if the student is not in
+     * the book. The result is cached until the student's next change.
+     *
+     * @throws IllegalArgumentException if the saved inputs are out of range under the
+     *                                  current policy
+     */
+    public synchronized GradeResult get(String student) {
+        GradeResult result = students.get(student);
+        if (result != null && result.policy != GradingEngine.getPolicy()) {
+            GradingEngine.grade(result.present, result.excused, result.lab1, result.lab2, result.lab3, result);
+        }
+        return result;
+    }
+
+    /**
+     * Saves a student's inputs and regrades that student alone.
+     *
+     * @throws IllegalArgumentException if the name or an input is invalid; the book is unchanged
+     * @throws IOException              if the change cannot be logged; the book is unchanged.
+     *                                  Once logged the change is saved, and a snapshot that
+     *                                  fails afterwards is only reported on standard error
+     */
+    public synchronized GradeResult put(String student, int attendance, int excused, int lab1, int lab2, int lab3)
+            throws IOException {
+        checkName(student);
+        GradeResult graded = GradingEngine.grade(attendance, excused, lab1, lab2, lab3, new GradeResult());
+        append(line(student, attendance, excused, lab1, lab2, lab3).insert(0, "P,"));
+        students.put(student, graded);
+        snapshotIfDue();
+        return graded;
+    }
+
+    // Saves attendance only, keeping the saved lab scores (0 for a new student), as
+    // the calculator does for an automatic failure
+    public synchronized GradeResult putAttendance(String student, int attendance, int excused) throws IOException {
+        GradeResult saved = students.get(student);
+        return saved == null
+                ? put(student, attendance, excused, 0, 0, 0)
+                : put(student, attendance, excused, saved.lab1, saved.lab2, saved.lab3);
+    }
+
+    public synchronized boolean remove(String student) throws IOException {
+        if (!students.containsKey(student)) {
+            return false;
+        }
+        line.setLength(0);
+        append(line.append("D,").append(student));
+        students.remove(student);
+        snapshotIfDue();
+        return true;
+    }
+
+    // Writes every student to a new snapshot and empties the log
+    public synchronized void snapshot() throws IOException {
+        Path temp = snapshot.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(SNAPSHOT_HEADER);
+            writer.write('\n');
+            for (Map.Entry<String, GradeResult> entry : students.entrySet()) {
+                GradeResult r = entry.getValue();
+                writer.append(line(entry.getKey(), r.present, r.excused, r.lab1, r.lab2, r.lab3));
+                writer.write('\n');
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logChannel.truncate(0);
+        logChannel.position(0);
+        changesSinceSnapshot = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!logChannel.isOpen()) {
+            return;
+        }
+        try {
+            if (changesSinceSnapshot > 0) {
+                snapshot();
+            }
+        } finally {
+            logChannel.close();
+        }
+    }
+
+    // The change is already logged, so a failed snapshot loses nothing; the next change tries again
+    private void snapshotIfDue() {
+        if (++changesSinceSnapshot >= Math.max(SNAPSHOT_EVERY, students.size())) {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                System.err.println("Gradebook: snapshot failed, changes stay in " + log + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void append(StringBuilder record) throws IOException {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(record.append('\n').toString());
+        long start = logChannel.position();
+        try {
+            while (bytes.hasRemaining()) {
+                logChannel.write(bytes);
+            }
+        } catch (IOException e) {
+            // Take back a partly written line so the next one does not run into it
+            try {
+                logChannel.truncate(start);
+                logChannel.position(start);
+            } catch (IOException ignored) {
+                // The book in memory is unchanged either way
+            }
+            throw e;
+        }
+    }
+
+    private StringBuilder line(String student, int attendance, int excused, int lab1, int lab2, int lab3) {
+        line.setLength(0);
+        return line.append(student).append(',').append(attendance).append(',').append(excused)
+                .append(',').append(lab1).append(',').append(lab2).append(',').append(lab3);
+    }
+
+    private void readSnapshot() throws IOException {
+        if (!Files.exists(snapshot)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(snapshot, StandardCharsets.UTF_8)) {
+            String row;
+            long lineNumber = 0;
+            while ((row = reader.readLine()) != null) {
+                lineNumber++;
+                if (row.isEmpty() || (lineNumber == 1 && GradeBatch.isHeader(row))) {
+                    continue;
+                }
+                if (!load(row.split(",", -1), 0)) {
+                    throw new IOException(snapshot + " line " + lineNumber + " is malformed");
+                }
+            }
+        }
+    }
+
+    // Replays the complete log lines and returns the length they cover; a last line
+    // without its line break was cut short by a crash and is left out
+    private long replayLog() throws IOException {
+        if (!Files.exists(log)) {
+            return 0;
+        }
+        byte[] bytes = Files.readAllBytes(log);
+        int start = 0;
+        long lineNumber = 0;
+        for (int end = 0; end < bytes.length; end++) {
+            if (bytes[end] != '\n') {
+                continue;
+            }
+            lineNumber++;
+            String[] fields = new String(bytes, start, end - start, StandardCharsets.UTF_8).split(",", -1);
+            if (fields.length == 2 && "D".equals(fields[0])) {
+                students.remove(fields[1]);
+            } else if (!"P".equals(fields[0]) || !load(fields, 1)) {
+                throw new IOException(log + " line " + lineNumber + " is malformed");
+            }
+            changesSinceSnapshot++;
+            start = end + 1;
+        }
+        return start;
+    }
+
+    // Stores the inputs at fields[from..from+5] ungraded; false if they are not numbers
+    private boolean load(String[] fields, int from) {
+        if (fields.length != from + 6 || fields[from].isEmpty()) {
+            return false;
+        }
+        GradeResult result = new GradeResult();
+        try {
+            result.present = Integer.parseInt(fields[from + 1]);
+            result.excused = Integer.parseInt(fields[from + 2]);
+            result.lab1 = Integer.parseInt(fields[from + 3]);
+            result.lab2 = Integer.parseInt(fields[from + 4]);
+            result.lab3 = Integer.parseInt(fields[from + 5]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        // No policy yet, so the first get grades it
+        students.put(fields[from], result);
+        return true;
+    }
+
+    private static void checkName(String student) {
+        if (student == null || student.trim().isEmpty()) {
+            throw new IllegalArgumentException("Student cannot be empty!");
+        }
+        if (!student.equals(student.trim()) || student.indexOf(',') >= 0
+                || student.indexOf('\n') >= 0 || student.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Student cannot contain commas, line breaks or surrounding spaces!");
+        }
+    }
+}
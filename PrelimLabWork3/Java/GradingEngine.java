@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Prelim grading rules without any UI: attendance, excused absences and three lab
+ * scores in, a {@link GradeResult} out. Used by the calculator window and by the
+ * {@link GradeBatch} command line.
+ *
+ * The numbers come from a {@link GradingPolicy}. The constants below are the built-in
+ * one; start with -Dgrading.policy=&lt;file&gt; to use a policy file instead, and call
+ * {@link #reloadPolicy()} to pick up edits to it while running.
+ */
+public final class GradingEngine {
+    public static final int TOTAL_SESSIONS = 5;
+    public static final int AUTO_FAIL_UNEXCUSED = 4;
+    public static final int MAX_LAB_SCORE = 100;
+
+    public static final double PASSING_GRADE = 75;
+    public static final double EXCELLENT_GRADE = 100;
+
+    // Prelim grade = 70% class standing + 30% exam; class standing = 40% attendance + 60% labs
+    public static final double CLASS_STANDING_WEIGHT = 0.70;
+    public static final double EXAM_WEIGHT = 0.30;
+    public static final double ATTENDANCE_WEIGHT = 0.40;
+    public static final double LAB_WEIGHT = 0.60;
+
+    private static final Path POLICY_FILE = System.getProperty("grading.policy") == null
+            ? null
+            : Paths.get(System.getProperty("grading.policy"));
+
+    // Modification time of the policy file when it was last loaded, guarded by the class
+    private static FileTime policyModified;
+    private static volatile GradingPolicy policy = initialPolicy();
+
+    private GradingEngine() {
+    }
+
+    public static GradingPolicy getPolicy() {
+        return policy;
+    }
+
+    // Swaps the policy for every grade computed from now on
+    public static void setPolicy(GradingPolicy newPolicy) {
+        if (newPolicy == null) {
+            throw new IllegalArgumentException("policy cannot be null");
+        }
+        policy = newPolicy;
+    }
+
+    /**
+     * Loads the -Dgrading.policy file again if it changed since it was last loaded.
+     *
+     * @return true if a new policy is now in use
+     * @throws IOException              if the file cannot be read; the old policy stays
+     * @throws IllegalArgumentException if the file is not a valid policy; the old policy stays
+     */
+    public static synchronized boolean reloadPolicy() throws IOException {
+        if (POLICY_FILE == null) {
+            return false;
+        }
+        FileTime modified = Files.getLastModifiedTime(POLICY_FILE);
+        if (modified.equals(policyModified)) {
+            return false;
+        }
+        policy = GradingPolicy.load(POLICY_FILE);
+        policyModified = modified;
+        return true;
+    }
+
+    public static GradeResult grade(int attendance, int excused, int lab1, int lab2, int lab3) {
+        return grade(attendance, excused, lab1, lab2, lab3, new GradeResult());
+    }
+
+    // Fills and returns the given result so a batch can reuse one instance for every row
+    public static GradeResult grade(int attendance, int excused, int lab1, int lab2, int lab3, GradeResult into) {
+        return policy.grade(attendance, excused, lab1, lab2, lab3, into);
+    }
+
+    // Throws IllegalArgumentException with the calculator's messages for out of range inputs
+    public static void validate(int attendance, int excused, int lab1, int lab2, int lab3) {
+        policy.validate(attendance, excused, lab1, lab2, lab3);
+    }
+
+    public static int unexcusedAbsences(int attendance, int excused) {
+        return policy.unexcusedAbsences(attendance, excused);
+    }
+
+    // Too many unexcused absences fail the student regardless of the other scores
+    public static boolean isAutoFailed(int attendance, int excused) {
+        return policy.isAutoFailed(attendance, excused);
+    }
+
+    public static double attendancePercentage(int effectiveAttendance) {
+        return policy.attendancePercentage(effectiveAttendance);
+    }
+
+    public static double labWorkAverage(int labSum) {
+        return policy.labWorkAverage(labSum);
+    }
+
+    public static double classStanding(double attendancePercentage, double labWorkAverage) {
+        return policy.classStanding(attendancePercentage, labWorkAverage);
+    }
+
+    public static double requiredExam(double targetGrade, double classStanding) {
+        return policy.requiredExam(targetGrade, classStanding);
+    }
+
+    public static GradeResult.Difficulty difficulty(double requiredScore) {
+        if (requiredScore <= 30) {
+            return GradeResult.Difficulty.VERY_ACHIEVABLE;
+        } else if (requiredScore <= 50) {
+            return GradeResult.Difficulty.ACHIEVABLE;
+        } else if (requiredScore <= 75) {
+            return GradeResult.Difficulty.MODERATE;
+        } else {
+            return GradeResult.Difficulty.VERY_CHALLENGING;
+        }
+    }
+
+    public static double validateInput(String input, String fieldName) {
+        return policy.validateInput(input, fieldName);
+    }
+
+    // A policy file that cannot be loaded stops the program rather than grading with the wrong numbers
+    private static GradingPolicy initialPolicy() {
+        if (POLICY_FILE == null) {
+            return GradingPolicy.DEFAULT;
+        }
+        try {
+            policyModified = Files.getLastModifiedTime(POLICY_FILE);
+            return GradingPolicy.load(POLICY_FILE);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("Cannot load grading policy " + POLICY_FILE + ": " + e.getMessage(), e);
+        }
+    }
+}
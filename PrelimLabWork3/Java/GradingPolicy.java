@@ -0,0 +1,309 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The numbers the prelim grade is computed from: sessions, the auto-fail rule, the
+ * lab score range, the four weights and the two target grades.
+ *
+ * A policy is parsed and checked once into final fields and never changes. The
+ * evaluators bind it once per block, not once per student: {@link GradeKernel} copies
+ * the fields into locals before its loops, and {@link #table()} bakes every grade the
+ * policy can produce into a {@link GradeTable}. {@link GradingEngine} holds the
+ * policy in use and can swap it at runtime.
+ *
+ * File format (Java properties; missing keys keep the default):
+ *   sessions.total=5
+ *   sessions.autoFailUnexcused=4
+ *   lab.maxScore=100
+ *   weight.attendance=0.40
+ *   weight.labWork=0.60
+ *   weight.classStanding=0.70
+ *   weight.exam=0.30
+ *   target.passing=75
+ *   target.excellent=100
+ */
+public final class GradingPolicy {
+    public static final GradingPolicy DEFAULT = new GradingPolicy(
+            GradingEngine.TOTAL_SESSIONS, GradingEngine.AUTO_FAIL_UNEXCUSED, GradingEngine.MAX_LAB_SCORE,
+            GradingEngine.ATTENDANCE_WEIGHT, GradingEngine.LAB_WEIGHT,
+            GradingEngine.CLASS_STANDING_WEIGHT, GradingEngine.EXAM_WEIGHT,
+            GradingEngine.PASSING_GRADE, GradingEngine.EXCELLENT_GRADE);
+
+    // Bounds that keep the lookup table of a policy to a few megabytes
+    private static final int MAX_SESSIONS = 100;
+    private static final int MAX_LAB_LIMIT = 1000;
+    private static final double WEIGHT_TOLERANCE = 1e-9;
+
+    private static final String[] KEYS = {
+            "sessions.total", "sessions.autoFailUnexcused", "lab.maxScore",
+            "weight.attendance", "weight.labWork", "weight.classStanding", "weight.exam",
+            "target.passing", "target.excellent"};
+
+    final int totalSessions;
+    final int autoFailUnexcused;
+    final int maxLabScore;
+    final double attendanceWeight;
+    final double labWeight;
+    final double classStandingWeight;
+    final double examWeight;
+    final double passingGrade;
+    final double excellentGrade;
+
+    private GradeTable table;
+
+    /**
+     * Creates a policy after checking that it makes sense.
+     *
+     * @throws IllegalArgumentException if a value is out of range or a pair of weights
+     *                                  does not add up to 1
+     */
+    public GradingPolicy(int totalSessions, int autoFailUnexcused, int maxLabScore,
+            double attendanceWeight, double labWeight, double classStandingWeight, double examWeight,
+            double passingGrade, double excellentGrade) {
+        if (totalSessions < 1 || totalSessions > MAX_SESSIONS) {
+            throw new IllegalArgumentException("sessions.total must be between 1 and " + MAX_SESSIONS);
+        }
+        if (autoFailUnexcused < 1 || autoFailUnexcused > totalSessions) {
+            throw new IllegalArgumentException("sessions.autoFailUnexcused must be between 1 and " + totalSessions);
+        }
+        if (maxLabScore < 1 || maxLabScore > MAX_LAB_LIMIT) {
+            throw new IllegalArgumentException("lab.maxScore must be between 1 and " + MAX_LAB_LIMIT);
+        }
+        checkWeight("weight.attendance", attendanceWeight);
+        checkWeight("weight.labWork", labWeight);
+        checkWeight("weight.classStanding", classStandingWeight);
+        checkWeight("weight.exam", examWeight);
+        if (Math.abs(attendanceWeight + labWeight - 1) > WEIGHT_TOLERANCE) {
+            throw new IllegalArgumentException("weight.attendance and weight.labWork must add up to 1");
+        }
+        if (Math.abs(classStandingWeight + examWeight - 1) > WEIGHT_TOLERANCE) {
+            throw new IllegalArgumentException("weight.classStanding and weight.exam must add up to 1");
+        }
+        if (examWeight == 0) {
+            throw new IllegalArgumentException("weight.exam must be more than 0");
+        }
+        if (!Double.isFinite(passingGrade) || !Double.isFinite(excellentGrade) || passingGrade > excellentGrade) {
+            throw new IllegalArgumentException("target.passing must be a number no higher than target.excellent");
+        }
+        this.totalSessions = totalSessions;
+        this.autoFailUnexcused = autoFailUnexcused;
+        this.maxLabScore = maxLabScore;
+        this.attendanceWeight = attendanceWeight;
+        this.labWeight = labWeight;
+        this.classStandingWeight = classStandingWeight;
+        this.examWeight = examWeight;
+        this.passingGrade = passingGrade;
+        this.excellentGrade = excellentGrade;
+    }
+
+    public static GradingPolicy load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return parse(properties);
+    }
+
+    // Unknown keys are rejected so a misspelt key cannot silently keep its default
+    public static GradingPolicy parse(Properties properties) {
+        Set<String> known = new HashSet<>(Arrays.asList(KEYS));
+        for (String key : properties.stringPropertyNames()) {
+            if (!known.contains(key)) {
+                throw new IllegalArgumentException("Unknown grading policy key: " + key);
+            }
+        }
+        GradingPolicy d = DEFAULT;
+        return new GradingPolicy(
+                intValue(properties, "sessions.total", d.totalSessions),
+                intValue(properties, "sessions.autoFailUnexcused", d.autoFailUnexcused),
+                intValue(properties, "lab.maxScore", d.maxLabScore),
+                doubleValue(properties, "weight.attendance", d.attendanceWeight),
+                doubleValue(properties, "weight.labWork", d.labWeight),
+                doubleValue(properties, "weight.classStanding", d.classStandingWeight),
+                doubleValue(properties, "weight.exam", d.examWeight),
+                doubleValue(properties, "target.passing", d.passingGrade),
+                doubleValue(properties, "target.excellent", d.excellentGrade));
+    }
+
+    public int getTotalSessions() {
+        return totalSessions;
+    }
+
+    public int getAutoFailUnexcused() {
+        return autoFailUnexcused;
+    }
+
+    public int getMaxLabScore() {
+        return maxLabScore;
+    }
+
+    public double getAttendanceWeight() {
+        return attendanceWeight;
+    }
+
+    public double getLabWeight() {
+        return labWeight;
+    }
+
+    public double getClassStandingWeight() {
+        return classStandingWeight;
+    }
+
+    public double getExamWeight() {
+        return examWeight;
+    }
+
+    public double getPassingGrade() {
+        return passingGrade;
+    }
+
+    public double getExcellentGrade() {
+        return excellentGrade;
+    }
+
+    // Fills and returns the given result; see GradingEngine.grade
+    public GradeResult grade(int attendance, int excused, int lab1, int lab2, int lab3, GradeResult into) {
+        validate(attendance, excused, lab1, lab2, lab3);
+
+        into.policy = this;
+        into.present = attendance;
+        into.excused = excused;
+        into.unexcused = unexcusedAbsences(attendance, excused);
+        into.lab1 = lab1;
+        into.lab2 = lab2;
+        into.lab3 = lab3;
+        into.autoFailed = into.unexcused >= autoFailUnexcused;
+
+        into.effectiveAttendance = Math.min(totalSessions, attendance + excused);
+        if (GradeTable.ENABLED) {
+            return table().fill(into);
+        }
+        into.attendancePercentage = attendancePercentage(into.effectiveAttendance);
+        into.labWorkAverage = labWorkAverage(lab1 + lab2 + lab3);
+        into.classStanding = classStanding(into.attendancePercentage, into.labWorkAverage);
+        into.requiredExamToPass = requiredExam(passingGrade, into.classStanding);
+        into.requiredExamForExcellent = requiredExam(excellentGrade, into.classStanding);
+        return into;
+    }
+
+    // Throws IllegalArgumentException with the calculator's messages for out of range inputs
+    public void validate(int attendance, int excused, int lab1, int lab2, int lab3) {
+        checkAttendance(attendance, excused);
+        checkLab(lab1, "Lab Work 1");
+        checkLab(lab2, "Lab Work 2");
+        checkLab(lab3, "Lab Work 3");
+    }
+
+    public boolean isAutoFailed(int attendance, int excused) {
+        checkAttendance(attendance, excused);
+        return unexcusedAbsences(attendance, excused) >= autoFailUnexcused;
+    }
+
+    public double validateInput(String input, String fieldName) {
+        if (input == null || input.trim().isEmpty()) {
+            throw new IllegalArgumentException(fieldName + " cannot be empty!");
+        }
+        try {
+            if ("Attendance".equals(fieldName)) {
+                double value = Double.parseDouble(input.trim());
+                if (value < 0 || value > totalSessions) {
+                    throw new IllegalArgumentException(fieldName + " must be between 0 and " + totalSessions + "!");
+                }
+                return value;
+            } else {
+                // Lab work: must be whole numbers
+                int value = Integer.parseInt(input.trim());
+                if (value < 0 || value > maxLabScore) {
+                    throw new IllegalArgumentException(fieldName + " must be between 0 and " + maxLabScore + "!");
+                }
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(fieldName + " must be a valid whole number!");
+        }
+    }
+
+    public int unexcusedAbsences(int attendance, int excused) {
+        return Math.max(0, totalSessions - attendance - excused);
+    }
+
+    public double attendancePercentage(int effectiveAttendance) {
+        return (effectiveAttendance / (double) totalSessions) * 100.0;
+    }
+
+    // The sum of the three labs is exact in an int, so this equals (lab1 + lab2 + lab3) / 3.0 term by term
+    public double labWorkAverage(int labSum) {
+        return labSum / 3.0;
+    }
+
+    public double classStanding(double attendancePercentage, double labWorkAverage) {
+        return (attendancePercentage * attendanceWeight) + (labWorkAverage * labWeight);
+    }
+
+    public double requiredExam(double targetGrade, double classStanding) {
+        return (targetGrade - (classStanding * classStandingWeight)) / examWeight;
+    }
+
+    // Every grade of this policy, worked out on first use
+    public GradeTable table() {
+        GradeTable built = table;
+        if (built == null) {
+            // A race only builds the same immutable table twice
+            table = built = new GradeTable(this);
+        }
+        return built;
+    }
+
+    private void checkAttendance(int attendance, int excused) {
+        if (attendance < 0 || attendance > totalSessions) {
+            throw new IllegalArgumentException("Attendance must be between 0 and " + totalSessions + "!");
+        }
+        int missingSessions = totalSessions - attendance;
+        if (excused < 0 || excused > missingSessions) {
+            throw new IllegalArgumentException("Excused Absences must be between 0 and " + missingSessions + "!");
+        }
+    }
+
+    private void checkLab(int score, String fieldName) {
+        if (score < 0 || score > maxLabScore) {
+            throw new IllegalArgumentException(fieldName + " must be between 0 and " + maxLabScore + "!");
+        }
+    }
+
+    private static void checkWeight(String key, double weight) {
+        if (!(weight >= 0 && weight <= 1)) {
+            throw new IllegalArgumentException(key + " must be between 0 and 1");
+        }
+    }
+
+    private static int intValue(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a whole number");
+        }
+    }
+
+    private static double doubleValue(Properties properties, String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a number");
+        }
+    }
+}
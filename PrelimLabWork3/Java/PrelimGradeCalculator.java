@@ -1,13 +1,26 @@
 import javax.swing.*;
 import javax.swing.text.*;
 import java.awt.*;
-import java.text.DecimalFormat;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Paths;
 
 public class PrelimGradeCalculator extends JFrame {
+    // Where students are saved between runs, see Gradebook
+    private static final String GRADEBOOK_DIR = System.getProperty("gradebook.dir", "gradebook");
+
+    private JTextField studentField;
     private JTextField attendanceField, labWork1Field, labWork2Field, labWork3Field;
     private JTextArea resultArea;
     private JButton submitButton, clearButton;
-    private final DecimalFormat df = new DecimalFormat("#.##");
+    private JLabel noteLabel;
+    private final ReportCardRenderer renderer = new ReportCardRenderer();
+    private Gradebook gradebook;
+    // Student whose saved inputs are in the fields, so leaving the name field again keeps edits
+    private String loadedStudent;
 
     // Color scheme
     private final Color neonPurple = new Color(138, 43, 226);
@@ -25,6 +38,14 @@ public class PrelimGradeCalculator extends JFrame {
         setLocationRelativeTo(null);
         setResizable(false);
 
+        openGradebook();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                closeGradebook();
+            }
+        });
+
         // Main panel
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new BorderLayout(15, 15));
@@ -40,20 +61,32 @@ public class PrelimGradeCalculator extends JFrame {
         titlePanel.add(titleLabel);
 
         // Input Panel
-        JPanel inputPanel = new JPanel(new GridLayout(5, 2, 10, 12));
+        JPanel inputPanel = new JPanel(new GridLayout(6, 2, 10, 12));
         inputPanel.setBackground(whiteBg);
         inputPanel.setBorder(BorderFactory.createCompoundBorder(
                 BorderFactory.createLineBorder(maroon, 3),
                 BorderFactory.createEmptyBorder(12, 12, 12, 12)
         ));
 
-        JLabel noteLabel = new JLabel("📝 Attendance (0-5), Lab Work (0-100)");
+        noteLabel = new JLabel(policyNote());
         noteLabel.setFont(new Font("Arial", Font.BOLD, 12));
         noteLabel.setForeground(neonPurple);
 
         inputPanel.add(noteLabel);
         inputPanel.add(new JLabel(""));
 
+        inputPanel.add(createLabel("Student:"));
+        studentField = createTextField();
+        studentField.setToolTipText("Saved students are filled in when you enter their name");
+        studentField.addActionListener(e -> loadStudent());
+        studentField.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                loadStudent();
+            }
+        });
+        inputPanel.add(studentField);
+
         inputPanel.add(createLabel("Attendance:"));
         attendanceField = createNumberField(true);
         inputPanel.add(attendanceField);
@@ -130,7 +163,7 @@ public class PrelimGradeCalculator extends JFrame {
         return createNumberField(false);
     }
 
-    private JTextField createNumberField(boolean isAttendance) {
+    private JTextField createTextField() {
         JTextField textField = new JTextField();
         textField.setFont(new Font("Arial", Font.PLAIN, 14));
         textField.setBackground(Color.WHITE);
@@ -140,6 +173,11 @@ public class PrelimGradeCalculator extends JFrame {
                 BorderFactory.createLineBorder(maroon, 2),
                 BorderFactory.createEmptyBorder(5, 10, 5, 10)
         ));
+        return textField;
+    }
+
+    private JTextField createNumberField(boolean isAttendance) {
+        JTextField textField = createTextField();
 
         ((AbstractDocument) textField.getDocument()).setDocumentFilter(new DocumentFilter() {
             @Override
@@ -183,7 +221,7 @@ public class PrelimGradeCalculator extends JFrame {
 
                     try {
                         int value = Integer.parseInt(newText);
-                        return value >= 0 && value <= 5;
+                        return value >= 0 && value <= GradingEngine.getPolicy().getTotalSessions();
                     } catch (NumberFormatException e) {
                         return false;
                     }
@@ -204,7 +242,7 @@ public class PrelimGradeCalculator extends JFrame {
 
                     try {
                         int value = Integer.parseInt(newText);
-                        return value >= 0 && value <= 100;
+                        return value >= 0 && value <= GradingEngine.getPolicy().getMaxLabScore();
                     } catch (NumberFormatException e) {
                         return false;
                     }
@@ -266,8 +304,20 @@ public class PrelimGradeCalculator extends JFrame {
     }
 
     private void calculateGrades() {
+        // Pick up edits to the -Dgrading.policy file before grading
+        try {
+            if (GradingEngine.reloadPolicy()) {
+                noteLabel.setText(policyNote());
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Grading policy not reloaded, keeping the current one:\n" + e.getMessage(),
+                    "⚠️ Grading Policy", JOptionPane.WARNING_MESSAGE);
+        }
+
         try {
-            final int totalSessions = 5;
+            final int totalSessions = GradingEngine.getPolicy().getTotalSessions();
+            final String student = studentField.getText().trim();
+            GradeResult saved = savedStudent(student);
 
             // 1) Get attendance (PRESENT sessions)
             int attendanceCount = (int) validateInput(attendanceField.getText(), "Attendance");
@@ -286,96 +336,31 @@ public class PrelimGradeCalculator extends JFrame {
                 );
 
                 if (resp == JOptionPane.YES_OPTION) {
-                    Integer chosen = promptExcusedAbsences(missingSessions);
+                    // Same attendance as saved, so start from the excused absences given before
+                    int previous = saved != null && saved.getPresent() == attendanceCount
+                            ? Math.min(saved.getExcused(), missingSessions) : 0;
+                    Integer chosen = promptExcusedAbsences(missingSessions, previous);
                     excusedAbsences = (chosen != null) ? chosen : 0; // cancel -> 0
                 }
             }
 
-            // 3) Compute unexcused and check auto-fail rule (4+ unexcused absences)
-            int unexcusedAbsences = Math.max(0, totalSessions - attendanceCount - excusedAbsences);
-            if (unexcusedAbsences >= 4) {
-                StringBuilder result = new StringBuilder();
-                result.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n");
-                result.append("  ❌ AUTOMATIC FAILURE\n");
-                result.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n\n");
-                result.append(String.format("  Present:            %d/%d\n", attendanceCount, totalSessions));
-                result.append(String.format("  Excused Absences:   %d\n", excusedAbsences));
-                result.append(String.format("  Unexcused Absences: %d\n\n", unexcusedAbsences));
-                result.append("  You have 4 or more UNEXCUSED absences.\n");
-                result.append("  You are automatically FAILED.\n\n");
-                result.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n");
-                resultArea.setText(result.toString());
+            // 3) Check auto-fail rule (4+ unexcused absences) before asking for lab scores
+            if (GradingEngine.isAutoFailed(attendanceCount, excusedAbsences)) {
+                // Like the batch path, an automatic failure needs no lab scores
+                GradeResult failed = gradeAndSave(student, attendanceCount, excusedAbsences, null);
+                resultArea.setText(renderer.renderText(failed));
                 return;
             }
 
-            // 4) Effective attendance (present + excused, capped)
-            int effectiveAttendance = Math.min(totalSessions, attendanceCount + excusedAbsences);
-            double attendancePercentage = (effectiveAttendance / (double) totalSessions) * 100.0;
-
-            // 5) Lab inputs
-            double labWork1 = validateInput(labWork1Field.getText(), "Lab Work 1");
-            double labWork2 = validateInput(labWork2Field.getText(), "Lab Work 2");
-            double labWork3 = validateInput(labWork3Field.getText(), "Lab Work 3");
-
-            // Calculations
-            double labWorkAverage = (labWork1 + labWork2 + labWork3) / 3.0;
-            double classStanding = (attendancePercentage * 0.40) + (labWorkAverage * 0.60);
-            double requiredExamToPass = (75 - (classStanding * 0.70)) / 0.30;
-            double requiredExamForExcellent = (100 - (classStanding * 0.70)) / 0.30;
-
-            // Display results
-            StringBuilder result = new StringBuilder();
-            result.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n");
-            result.append("  📊 YOUR GRADES\n");
-            result.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n");
-            result.append(String.format("  Present:            %d/%d\n", attendanceCount, totalSessions));
-            result.append(String.format("  Excused Absences:   %d\n", excusedAbsences));
-            result.append(String.format("  Unexcused Absences: %d\n", unexcusedAbsences));
-            result.append(String.format("  Effective Attend.:  %d/%d\n", effectiveAttendance, totalSessions));
-            result.append(String.format("  Attendance %%:      %s\n", df.format(attendancePercentage)));
-            result.append(String.format("  Lab Work 1:        %s\n", df.format(labWork1)));
-            result.append(String.format("  Lab Work 2:        %s\n", df.format(labWork2)));
-            result.append(String.format("  Lab Work 3:        %s\n", df.format(labWork3)));
-            result.append(String.format("  Lab Work Avg:      %s\n", df.format(labWorkAverage)));
-            result.append(String.format("  Class Standing:    %s\n", df.format(classStanding)));
-            result.append("\n━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n");
-            result.append("  🎯 REQUIRED PRELIM EXAM SCORES\n");
-            result.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n\n");
-
-            if (requiredExamToPass > 100 && requiredExamForExcellent > 100) {
-                result.append("  ❌ GOAL NOT ACHIEVABLE\n\n");
-                result.append("  Your current grades are too low to achieve\n");
-                result.append("  a passing or excellent score, even with a\n");
-                result.append("  perfect exam.\n\n");
-                result.append("  💪 Don't give up! Try again next year\n");
-                result.append("  with better preparation.\n");
-            } else {
-                result.append("  To PASS (75):\n");
-                if (requiredExamToPass <= 0) {
-                    result.append("    ✅ Already Passing!\n");
-                } else if (requiredExamToPass > 100) {
-                    result.append("    ❌ Score not achievable\n");
-                } else {
-                    result.append(String.format("    📝 Need: %s %s\n",
-                            df.format(requiredExamToPass), getDifficultyAssessment(requiredExamToPass)));
-                }
-
-                result.append("\n");
-
-                result.append("  For EXCELLENT (100):\n");
-                if (requiredExamForExcellent <= 0) {
-                    result.append("    ⭐ Already Excellent!\n");
-                } else if (requiredExamForExcellent > 100) {
-                    result.append("    ❌ Score not achievable\n");
-                } else {
-                    result.append(String.format("    📝 Need: %s %s\n",
-                            df.format(requiredExamForExcellent), getDifficultyAssessment(requiredExamForExcellent)));
-                }
-            }
-
-            result.append("\n━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n");
+            // 4) Lab inputs
+            int labWork1 = (int) validateInput(labWork1Field.getText(), "Lab Work 1");
+            int labWork2 = (int) validateInput(labWork2Field.getText(), "Lab Work 2");
+            int labWork3 = (int) validateInput(labWork3Field.getText(), "Lab Work 3");
 
-            resultArea.setText(result.toString());
+            // Calculations and display
+            GradeResult grade = gradeAndSave(student, attendanceCount, excusedAbsences,
+                    new int[]{labWork1, labWork2, labWork3});
+            resultArea.setText(renderer.renderText(grade));
 
         } catch (IllegalArgumentException e) {
             JOptionPane.showMessageDialog(this, e.getMessage(),
@@ -383,45 +368,89 @@ public class PrelimGradeCalculator extends JFrame {
         }
     }
 
-    private String getDifficultyAssessment(double requiredScore) {
-        if (requiredScore <= 30) {
-            return "✅ (Very Achievable!)";
-        } else if (requiredScore <= 50) {
-            return "✅ (Achievable)";
-        } else if (requiredScore <= 75) {
-            return "⚠️ (Moderate Difficulty)";
-        } else {
-            return "❌ (Very Challenging)";
+    // Grades the inputs and saves them under the student's name, if one is given; with
+    // labs null the student's saved lab scores are kept
+    private GradeResult gradeAndSave(String student, int attendance, int excused, int[] labs) {
+        if (gradebook != null && !student.isEmpty()) {
+            try {
+                GradeResult result = labs == null
+                        ? gradebook.putAttendance(student, attendance, excused)
+                        : gradebook.put(student, attendance, excused, labs[0], labs[1], labs[2]);
+                loadedStudent = student;
+                return result;
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "Student not saved:\n" + e.getMessage(),
+                        "⚠️ Gradebook", JOptionPane.WARNING_MESSAGE);
+            }
         }
+        return labs == null
+                ? GradingEngine.grade(attendance, excused, 0, 0, 0)
+                : GradingEngine.grade(attendance, excused, labs[0], labs[1], labs[2]);
     }
 
-    private double validateInput(String input, String fieldName) {
-        if (input == null || input.trim().isEmpty()) {
-            throw new IllegalArgumentException(fieldName + " cannot be empty!");
+    // The saved grades of the student, or null if not saved or no longer valid under the policy
+    private GradeResult savedStudent(String student) {
+        if (gradebook == null || student.isEmpty()) {
+            return null;
         }
         try {
-            if ("Attendance".equals(fieldName)) {
-                double value = Double.parseDouble(input.trim());
-                if (value < 0 || value > 5) {
-                    throw new IllegalArgumentException(fieldName + " must be between 0 and 5!");
-                }
-                return value;
-            } else {
-                // Lab work: must be whole numbers
-                int value = Integer.parseInt(input.trim());
-                if (value < 0 || value > 100) {
-                    throw new IllegalArgumentException(fieldName + " must be between 0 and 100!");
-                }
-                return value;
-            }
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException(fieldName + " must be a valid whole number!");
+            return gradebook.get(student);
+        } catch (IllegalArgumentException e) {
+            return null;
         }
     }
 
+    // Fills in a saved student's inputs and card when a new name is entered
+    private void loadStudent() {
+        String student = studentField.getText().trim();
+        if (student.equals(loadedStudent)) {
+            return;
+        }
+        loadedStudent = student;
+        GradeResult saved = savedStudent(student);
+        if (saved == null) {
+            return;
+        }
+        attendanceField.setText(String.valueOf(saved.getPresent()));
+        labWork1Field.setText(String.valueOf(saved.getLab1()));
+        labWork2Field.setText(String.valueOf(saved.getLab2()));
+        labWork3Field.setText(String.valueOf(saved.getLab3()));
+        resultArea.setText(renderer.renderText(saved));
+    }
+
+    private void openGradebook() {
+        try {
+            gradebook = Gradebook.open(Paths.get(GRADEBOOK_DIR));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Gradebook not opened, students will not be saved:\n" + e.getMessage(),
+                    "⚠️ Gradebook", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    private void closeGradebook() {
+        if (gradebook == null) {
+            return;
+        }
+        try {
+            gradebook.close();
+        } catch (IOException e) {
+            // The log still holds every change, so the next start replays it
+            System.err.println("Gradebook snapshot failed: " + e.getMessage());
+        }
+    }
+
+    private String policyNote() {
+        GradingPolicy policy = GradingEngine.getPolicy();
+        return "📝 Attendance (0-" + policy.getTotalSessions() + "), Lab Work (0-" + policy.getMaxLabScore() + ")";
+    }
+
+    private double validateInput(String input, String fieldName) {
+        return GradingEngine.validateInput(input, fieldName);
+    }
+
     // Spinner-based dialog to choose excused absences within allowed range
-    private Integer promptExcusedAbsences(int missingSessions) {
-        SpinnerNumberModel model = new SpinnerNumberModel(0, 0, missingSessions, 1);
+    private Integer promptExcusedAbsences(int missingSessions, int initial) {
+        SpinnerNumberModel model = new SpinnerNumberModel(initial, 0, missingSessions, 1);
         JSpinner spinner = new JSpinner(model);
         JSpinner.NumberEditor editor = new JSpinner.NumberEditor(spinner, "#");
         spinner.setEditor(editor);
@@ -466,12 +495,15 @@ public class PrelimGradeCalculator extends JFrame {
     }
 
     private void clearFields() {
+        // Saved students stay in the gradebook; entering the name again brings them back
+        studentField.setText("");
+        loadedStudent = null;
         attendanceField.setText("");
         labWork1Field.setText("");
         labWork2Field.setText("");
         labWork3Field.setText("");
         resultArea.setText("");
-        attendanceField.requestFocus();
+        studentField.requestFocus();
     }
 
     public static void main(String[] args) {
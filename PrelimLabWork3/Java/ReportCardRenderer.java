@@ -0,0 +1,256 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the calculator's report card as UTF-8 straight into a byte buffer.
+ *
+ * The fixed text of the card is encoded once into byte arrays, and numbers are
+ * written digit by digit with the same result as DecimalFormat("#.##"), so rendering
+ * a card allocates nothing. The few lines that quote the {@link GradingPolicy} are
+ * encoded again only when a card of a different policy comes along. An instance
+ * keeps scratch space and must stay on one thread; give each worker its own. The
+ * calculator window renders through {@link #renderText} so both show exactly the
+ * same card.
+ */
+public final class ReportCardRenderer {
+    // Upper bound of one card in bytes, not counting the student line
+    public static final int MAX_CARD_BYTES = 2048;
+
+    private static final String RULE_TEXT = "━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n";
+
+    private static final byte[] RULE = utf8(RULE_TEXT);
+    private static final byte[] STUDENT = utf8("  Student: ");
+    private static final byte[] AUTO_FAILED_TITLE = utf8("  ❌ AUTOMATIC FAILURE\n");
+    private static final byte[] GRADES_TITLE = utf8("  📊 YOUR GRADES\n");
+    private static final byte[] PRESENT = utf8("  Present:            ");
+    private static final byte[] EXCUSED = utf8("  Excused Absences:   ");
+    private static final byte[] UNEXCUSED = utf8("  Unexcused Absences: ");
+    private static final byte[] EFFECTIVE = utf8("  Effective Attend.:  ");
+    private static final byte[] PERCENTAGE = utf8("  Attendance %:      ");
+    private static final byte[][] LABS = {
+            utf8("  Lab Work 1:        "), utf8("  Lab Work 2:        "), utf8("  Lab Work 3:        ")};
+    private static final byte[] LAB_AVERAGE = utf8("  Lab Work Avg:      ");
+    private static final byte[] STANDING = utf8("  Class Standing:    ");
+    private static final byte[] EXAM_TITLE = utf8("\n" + RULE_TEXT + "  🎯 REQUIRED PRELIM EXAM SCORES\n" + RULE_TEXT + "\n");
+    private static final byte[] NOT_ACHIEVABLE = utf8("  ❌ GOAL NOT ACHIEVABLE\n\n"
+            + "  Your current grades are too low to achieve\n"
+            + "  a passing or excellent score, even with a\n"
+            + "  perfect exam.\n\n"
+            + "  💪 Don't give up! Try again next year\n"
+            + "  with better preparation.\n");
+    private static final byte[] ALREADY_PASSING = utf8("    ✅ Already Passing!\n");
+    private static final byte[] ALREADY_EXCELLENT = utf8("    ⭐ Already Excellent!\n");
+    private static final byte[] SCORE_NOT_ACHIEVABLE = utf8("    ❌ Score not achievable\n");
+    private static final byte[] NEED = utf8("    📝 Need: ");
+    private static final byte[][] DIFFICULTIES = {
+            utf8(" ✅ (Very Achievable!)\n"), utf8(" ✅ (Achievable)\n"),
+            utf8(" ⚠️ (Moderate Difficulty)\n"), utf8(" ❌ (Very Challenging)\n")};
+    private static final byte[] LAST_RULE = utf8("\n" + RULE_TEXT);
+
+    // Digits are written backwards into this and then copied out
+    private final byte[] digits = new byte[24];
+
+    // The parts of the card that quote the policy, rebuilt only when the policy changes
+    private GradingPolicy templatePolicy;
+    private byte[] autoFailedText;
+    private byte[] toPass;
+    private byte[] forExcellent;
+
+    public void render(GradeResult result, ByteBuffer out) {
+        bind(result.getPolicy());
+        if (result.isAutoFailed()) {
+            renderAutoFailed(result.getPresent(), result.getExcused(), result.getUnexcused(), out);
+            return;
+        }
+        render(result.getPresent(), result.getExcused(), result.getUnexcused(), result.getEffectiveAttendance(),
+                result.getAttendancePercentage(), result.getLab1(), result.getLab2(), result.getLab3(),
+                result.getLabWorkAverage(), result.getClassStanding(),
+                result.getRequiredExamToPass(), result.getRequiredExamForExcellent(), out);
+    }
+
+    // Renders one graded row, see GradeKernel
+    public void render(GradeColumns columns, int row, ByteBuffer out) {
+        bind(columns.getPolicy());
+        if (columns.isAutoFailed(row)) {
+            renderAutoFailed(columns.getAttendance(row), columns.getExcused(row), columns.getUnexcused(row), out);
+            return;
+        }
+        render(columns.getAttendance(row), columns.getExcused(row), columns.getUnexcused(row),
+                columns.getEffectiveAttendance(row), columns.getAttendancePercentage(row),
+                columns.getLab(0, row), columns.getLab(1, row), columns.getLab(2, row),
+                columns.getLabWorkAverage(row), columns.getClassStanding(row),
+                columns.getRequiredExamToPass(row), columns.getRequiredExamForExcellent(row), out);
+    }
+
+    // "  Student: name" line for cards written in bulk; needs up to 3 bytes per char of room
+    public void renderStudent(CharSequence name, ByteBuffer out) {
+        out.put(STUDENT);
+        putUtf8(name, out);
+        out.put((byte) '\n');
+    }
+
+    // The card as a String, for the calculator window
+    public String renderText(GradeResult result) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_CARD_BYTES);
+        render(result, buffer);
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+
+    private void renderAutoFailed(int present, int excused, int unexcused, ByteBuffer out) {
+        out.put(RULE).put(AUTO_FAILED_TITLE).put(RULE).put((byte) '\n');
+        out.put(PRESENT);
+        putInt(present, out);
+        out.put((byte) '/');
+        putInt(templatePolicy.totalSessions, out);
+        out.put((byte) '\n').put(EXCUSED);
+        putInt(excused, out);
+        out.put((byte) '\n').put(UNEXCUSED);
+        putInt(unexcused, out);
+        out.put((byte) '\n').put((byte) '\n');
+        out.put(autoFailedText).put(RULE);
+    }
+
+    private void render(int present, int excused, int unexcused, int effective, double percentage,
+            int lab1, int lab2, int lab3, double average, double standing,
+            double requiredToPass, double requiredForExcellent, ByteBuffer out) {
+        out.put(RULE).put(GRADES_TITLE).put(RULE);
+        out.put(PRESENT);
+        putInt(present, out);
+        out.put((byte) '/');
+        putInt(templatePolicy.totalSessions, out);
+        out.put((byte) '\n').put(EXCUSED);
+        putInt(excused, out);
+        out.put((byte) '\n').put(UNEXCUSED);
+        putInt(unexcused, out);
+        out.put((byte) '\n').put(EFFECTIVE);
+        putInt(effective, out);
+        out.put((byte) '/');
+        putInt(templatePolicy.totalSessions, out);
+        out.put((byte) '\n').put(PERCENTAGE);
+        putDecimal(percentage, out);
+        out.put((byte) '\n').put(LABS[0]);
+        putInt(lab1, out);
+        out.put((byte) '\n').put(LABS[1]);
+        putInt(lab2, out);
+        out.put((byte) '\n').put(LABS[2]);
+        putInt(lab3, out);
+        out.put((byte) '\n').put(LAB_AVERAGE);
+        putDecimal(average, out);
+        out.put((byte) '\n').put(STANDING);
+        putDecimal(standing, out);
+        out.put((byte) '\n').put(EXAM_TITLE);
+
+        if (requiredToPass > 100 && requiredForExcellent > 100) {
+            out.put(NOT_ACHIEVABLE);
+        } else {
+            out.put(toPass);
+            putRequired(requiredToPass, ALREADY_PASSING, out);
+            out.put(forExcellent);
+            putRequired(requiredForExcellent, ALREADY_EXCELLENT, out);
+        }
+        out.put(LAST_RULE);
+    }
+
+    private void bind(GradingPolicy policy) {
+        if (policy == templatePolicy) {
+            return;
+        }
+        autoFailedText = utf8("  You have " + policy.autoFailUnexcused + " or more UNEXCUSED absences.\n"
+                + "  You are automatically FAILED.\n\n");
+        toPass = utf8("  To PASS (" + decimal(policy.passingGrade) + "):\n");
+        forExcellent = utf8("\n  For EXCELLENT (" + decimal(policy.excellentGrade) + "):\n");
+        templatePolicy = policy;
+    }
+
+    private String decimal(double value) {
+        ByteBuffer buffer = ByteBuffer.allocate(digits.length + 8);
+        putDecimal(value, buffer);
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+    }
+
+    private void putRequired(double required, byte[] alreadyThere, ByteBuffer out) {
+        if (required <= 0) {
+            out.put(alreadyThere);
+        } else if (required > 100) {
+            out.put(SCORE_NOT_ACHIEVABLE);
+        } else {
+            out.put(NEED);
+            putDecimal(required, out);
+            out.put(DIFFICULTIES[GradingEngine.difficulty(required).ordinal()]);
+        }
+    }
+
+    private void putInt(long value, ByteBuffer out) {
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        out.put(digits, start, digits.length - start);
+    }
+
+    /**
+     * Writes the value as DecimalFormat("#.##") would: at most two decimals, rounded
+     * half-even on the exact binary value, no trailing zeros, and "-0" for negative
+     * values that round to zero.
+     */
+    void putDecimal(double value, ByteBuffer out) {
+        boolean negative = value < 0 || (value == 0 && 1 / value < 0);
+        double magnitude = Math.abs(value);
+        double scaled = magnitude * 100;
+        long hundredths = (long) scaled;
+        double fraction = scaled - hundredths;
+        if (Math.abs(fraction - 0.5) < 1e-6 || magnitude >= 1e15) {
+            // Too close to a tie to trust the scaled double (or too large for a long);
+            // settle it exactly, which only happens for a handful of values
+            hundredths = new BigDecimal(magnitude).setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValue();
+        } else if (fraction > 0.5) {
+            hundredths++;
+        }
+        if (negative) {
+            out.put((byte) '-');
+        }
+        putInt(hundredths / 100, out);
+        int cents = (int) (hundredths % 100);
+        if (cents != 0) {
+            out.put((byte) '.').put((byte) ('0' + cents / 10));
+            if (cents % 10 != 0) {
+                out.put((byte) ('0' + cents % 10));
+            }
+        }
+    }
+
+    private static void putUtf8(CharSequence text, ByteBuffer out) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6))).put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                out.put((byte) (0xF0 | (codePoint >> 18)))
+                        .put((byte) (0x80 | ((codePoint >> 12) & 0x3F)))
+                        .put((byte) (0x80 | ((codePoint >> 6) & 0x3F)))
+                        .put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)))
+                        .put((byte) (0x80 | ((c >> 6) & 0x3F)))
+                        .put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,163 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the calculator's report card for every student of a cohort file.
+ *
+ * Usage: java ReportCards <input.csv|-> <output.txt|->
+ *        java ReportCards <input.csv|-> <directory> --split
+ *
+ * Input rows are those of {@link GradeBatch}; a seventh column such as a section is
+ * ignored. Without --split every card goes into one file, each headed by the
+ * student's name; with --split each student gets <student>.txt in the directory
+ * (a repeated name overwrites the earlier card). Cards are rendered by
+ * {@link ReportCardRenderer} into one reused direct buffer and written through file
+ * channels. Invalid rows are reported on stderr and skipped.
+ */
+public class ReportCards {
+    private static final int BLOCK_SIZE = 8192;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final ReportCardRenderer renderer = new ReportCardRenderer();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final GradeColumns columns = new GradeColumns(BLOCK_SIZE);
+    private final String[] students = new String[BLOCK_SIZE];
+
+    // Either one channel for all cards or a directory for one file per card
+    private final WritableByteChannel channel;
+    private final Path directory;
+
+    private long written;
+    private long invalid;
+
+    private ReportCards(WritableByteChannel channel, Path directory) {
+        this.channel = channel;
+        this.directory = directory;
+    }
+
+    public static void main(String[] args) {
+        boolean split = args.length == 3 && "--split".equals(args[2]);
+        if (args.length != 2 && !split) {
+            System.err.println("Usage: java ReportCards <input.csv|-> <output.txt|-> | <input.csv|-> <directory> --split");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        ReportCards cards = null;
+        try (Reader in = "-".equals(args[0])
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            if (split) {
+                cards = new ReportCards(null, Files.createDirectories(Paths.get(args[1])));
+                cards.run(in);
+            } else {
+                try (WritableByteChannel out = "-".equals(args[1])
+                        ? Channels.newChannel(System.out)
+                        : FileChannel.open(Paths.get(args[1]), StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    cards = new ReportCards(out, null);
+                    cards.run(in);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Writing report cards failed: " + e.getMessage());
+            System.exit(1);
+        }
+        System.err.printf("Wrote %d report cards (%d invalid) in %d ms%n",
+                cards.written, cards.invalid, (System.nanoTime() - start) / 1_000_000);
+        if (cards.invalid > 0) {
+            System.exit(1);
+        }
+    }
+
+    private void run(Reader input) throws IOException {
+        BufferedReader reader = new BufferedReader(input, 64 * 1024);
+        String row;
+        long lineNumber = 0;
+        while ((row = reader.readLine()) != null) {
+            lineNumber++;
+            if (row.trim().isEmpty() || (lineNumber == 1 && GradeBatch.isHeader(row))) {
+                continue;
+            }
+            String[] fields = row.split(",", -1);
+            try {
+                if (fields.length != 6 && fields.length != 7) {
+                    throw new IllegalArgumentException("Expected 6 or 7 columns but found " + fields.length);
+                }
+                int added = GradeBatch.addRow(fields, columns);
+                students[added] = fields[0].trim();
+            } catch (IllegalArgumentException e) {
+                invalid++;
+                System.err.println("Line " + lineNumber + ": " + e.getMessage());
+            }
+            if (columns.size() == BLOCK_SIZE) {
+                writeBlock();
+            }
+        }
+        writeBlock();
+        if (channel != null) {
+            drain(channel);
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        GradeKernel.grade(columns);
+        for (int row = 0; row < columns.size(); row++) {
+            if (directory != null) {
+                writeFile(students[row], row);
+            } else {
+                // A name takes at most 3 bytes per char in UTF-8
+                if (buffer.remaining() < ReportCardRenderer.MAX_CARD_BYTES + 3 * students[row].length() + 16) {
+                    drain(channel);
+                }
+                renderer.renderStudent(students[row], buffer);
+                renderer.render(columns, row, buffer);
+                buffer.put((byte) '\n');
+            }
+            students[row] = null;
+            written++;
+        }
+        columns.clear();
+    }
+
+    private void writeFile(String student, int row) throws IOException {
+        buffer.clear();
+        renderer.render(columns, row, buffer);
+        try (FileChannel file = FileChannel.open(directory.resolve(fileName(student)), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            drain(file);
+        }
+    }
+
+    private void drain(WritableByteChannel target) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Keeps ASCII letters, digits, '-', '_' and '.' so a name cannot leave the directory and
+    // works under any file system encoding
+    static String fileName(String student) {
+        StringBuilder name = new StringBuilder(student.length() + 4);
+        for (int i = 0; i < student.length(); i++) {
+            char c = student.charAt(i);
+            name.append((c < 0x80 && Character.isLetterOrDigit(c)) || c == '-' || c == '_' || (c == '.' && i > 0) ? c : '_');
+        }
+        if (name.length() == 0) {
+            name.append('_');
+        }
+        return name.append(".txt").toString();
+    }
+}